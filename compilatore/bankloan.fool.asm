@@ -54,71 +54,23 @@ add
 shp
 push 50000
 push 40000
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -3
-add
+push 1073741821
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -5
-add
+push 2
+label12:
+new
+push 1073741819
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 33
+label13:
+new
 push 20000
 push 5000
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -3
-add
+push 1073741821
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 2
+label14:
+new
 lfp
 lfp
 push -7
@@ -128,44 +80,26 @@ lfp
 push -6
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label15:
+main:
 lfp
 push -8
 add
 lw
 push -1
-beq label10
-push 0
-b label11
-label10:
-push 1
-label11:
-push 1
-beq label8
+beq label16
 lfp
 lfp
 push -8
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
-b label9
-label8:
+vcall 0
+label18:
+b label17
+label16:
 push 0
-label9:
+label17:
 print
 halt
 
@@ -226,36 +160,17 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label2:
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
-add
-bleq label2
-push 0
-b label3
-label2:
-push 1
+vcall 1
 label3:
-push 1
-beq label0
+add
+bleq label0
 push -1
 b label1
 label0:
@@ -265,31 +180,13 @@ lw
 push -1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+vcall 0
+label4:
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
 push 1
-add
-shp
+label5:
+new
 label1:
 stm
 sra
@@ -309,77 +206,34 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label8:
 bleq label6
-push 0
+push -1
 b label7
 label6:
-push 1
-label7:
-push 1
-beq label4
-push -1
-b label5
-label4:
 lfp
 lfp
 lw
 push -1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label9:
 lfp
 lfp
 lw
 push -1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -3
-add
+vcall 1
+label10:
+push 1073741821
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-label5:
+push 2
+label11:
+new
+label7:
 stm
 sra
 pop
@@ -387,4 +241,18 @@ pop
 sfp
 ltm
 lra
-js
\ No newline at end of file
+js
+
+gcmap label2 2 0 1
+gcmap label3 2 0 1
+gcmap label4 2 0 1
+gcmap label5 2 0 1
+gcmap label8 2 0 1
+gcmap label9 2 0 1
+gcmap label10 2 0 1
+gcmap label11 2 0 1
+gcmap label12 0
+gcmap label13 0 -6
+gcmap label14 0 -6
+gcmap label15 0 -6 -7
+gcmap label18 0 -6 -7 -8
\ No newline at end of file
@@ -1,4 +1,4 @@
-// Generated from /Users/mattia/Desktop/Università/Magistrale/LiCoMo/progetto-lcmc/compilatore/src/svm/SVM.g4 by ANTLR 4.13.2
+// Generated from /Users/mattia/Desktop/Università/Magistrale/LiCoMo/progetto-lcmc/compilatore/src/svm/SVM.g4 by ANTLR 4.13.2
 package svm;
 
 import java.util.*;
@@ -23,7 +23,9 @@ public class SVMParser extends Parser {
 		PUSH=1, POP=2, ADD=3, SUB=4, MULT=5, DIV=6, STOREW=7, LOADW=8, BRANCH=9, 
 		BRANCHEQ=10, BRANCHLESSEQ=11, JS=12, LOADRA=13, STORERA=14, LOADTM=15, 
 		STORETM=16, LOADFP=17, STOREFP=18, COPYFP=19, LOADHP=20, STOREHP=21, PRINT=22, 
-		HALT=23, COL=24, LABEL=25, INTEGER=26, COMMENT=27, WHITESP=28, ERR=29;
+		HALT=23, NEW=24, VCALL=25, GCMAP=26, LFP_PUSH_ADD_LW=27, POP_SFP_LTM_LRA=28, 
+		LTM_LTM_PUSH_ADD=29, PUSH_SUB_LFP_LW=30, STM_SRA_POP=31, LW_JS=32, COL=33, 
+		LABEL=34, INTEGER=35, COMMENT=36, WHITESP=37, ERR=38;
 	public static final int
 		RULE_assembly = 0, RULE_instruction = 1;
 	private static String[] makeRuleNames() {
@@ -38,6 +40,8 @@ public class SVMParser extends Parser {
 			null, "'push'", "'pop'", "'add'", "'sub'", "'mult'", "'div'", "'sw'", 
 			"'lw'", "'b'", "'beq'", "'bleq'", "'js'", "'lra'", "'sra'", "'ltm'", 
 			"'stm'", "'lfp'", "'sfp'", "'cfp'", "'lhp'", "'shp'", "'print'", "'halt'", 
+			"'new'", "'vcall'", "'gcmap'", "'lfp_push_add_lw'", "'pop_sfp_ltm_lra'", 
+			"'ltm_ltm_push_add'", "'push_sub_lfp_lw'", "'stm_sra_pop'", "'lw_js'", 
 			"':'"
 		};
 	}
@@ -47,7 +51,9 @@ public class SVMParser extends Parser {
 			null, "PUSH", "POP", "ADD", "SUB", "MULT", "DIV", "STOREW", "LOADW", 
 			"BRANCH", "BRANCHEQ", "BRANCHLESSEQ", "JS", "LOADRA", "STORERA", "LOADTM", 
 			"STORETM", "LOADFP", "STOREFP", "COPYFP", "LOADHP", "STOREHP", "PRINT", 
-			"HALT", "COL", "LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
+			"HALT", "NEW", "VCALL", "GCMAP", "LFP_PUSH_ADD_LW", "POP_SFP_LTM_LRA", 
+			"LTM_LTM_PUSH_ADD", "PUSH_SUB_LFP_LW", "STM_SRA_POP", "LW_JS", "COL", 
+			"LABEL", "INTEGER", "COMMENT", "WHITESP", "ERR"
 		};
 	}
 	private static final String[] _SYMBOLIC_NAMES = makeSymbolicNames();
@@ -101,6 +107,10 @@ public class SVMParser extends Parser {
 	private int i = 0;
 	private Map<String,Integer> labelDef = new HashMap<>();
 	private Map<Integer,String> labelRef = new HashMap<>();
+	private Map<String,int[]> frameMapDef = new HashMap<>();
+	public int[][] frameMaps; // frame map of each safepoint address, see GarbageCollector
+	public int address(String label) { Integer a = labelDef.get(label); return a == null ? -1 : a; } // -1 if undefined
+	public Map<String,Integer> labels() { return Collections.unmodifiableMap(labelDef); } // label -> address
 
 	public SVMParser(TokenStream input) {
 		super(input);
@@ -145,7 +155,7 @@ public class SVMParser extends Parser {
 			setState(7);
 			_errHandler.sync(this);
 			_la = _input.LA(1);
-			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & 50331646L) != 0)) {
+			while ((((_la) & ~0x3f) == 0 && ((1L << _la) & 25769803774L) != 0)) {
 				{
 				{
 				setState(4);
@@ -160,6 +170,9 @@ public class SVMParser extends Parser {
 			match(EOF);
 			 for (Integer j: labelRef.keySet()) 
 											code[j]=labelDef.get(labelRef.get(j)); 
+										  frameMaps = new int[i+1][];
+										  for (String l: frameMapDef.keySet())
+											frameMaps[labelDef.get(l)]=frameMapDef.get(l);
 										
 			}
 		}
@@ -178,32 +191,49 @@ public class SVMParser extends Parser {
 	public static class InstructionContext extends ParserRuleContext {
 		public Token n;
 		public Token l;
+		public Token INTEGER;
+		public List<Token> m = new ArrayList<Token>();
+		public TerminalNode LOADFP() { return getToken(SVMParser.LOADFP, 0); }
 		public TerminalNode PUSH() { return getToken(SVMParser.PUSH, 0); }
-		public TerminalNode INTEGER() { return getToken(SVMParser.INTEGER, 0); }
-		public TerminalNode LABEL() { return getToken(SVMParser.LABEL, 0); }
-		public TerminalNode POP() { return getToken(SVMParser.POP, 0); }
 		public TerminalNode ADD() { return getToken(SVMParser.ADD, 0); }
+		public TerminalNode LOADW() { return getToken(SVMParser.LOADW, 0); }
+		public List<TerminalNode> INTEGER() { return getTokens(SVMParser.INTEGER); }
+		public TerminalNode INTEGER(int i) {
+			return getToken(SVMParser.INTEGER, i);
+		}
+		public TerminalNode LFP_PUSH_ADD_LW() { return getToken(SVMParser.LFP_PUSH_ADD_LW, 0); }
+		public TerminalNode POP() { return getToken(SVMParser.POP, 0); }
+		public TerminalNode STOREFP() { return getToken(SVMParser.STOREFP, 0); }
+		public List<TerminalNode> LOADTM() { return getTokens(SVMParser.LOADTM); }
+		public TerminalNode LOADTM(int i) {
+			return getToken(SVMParser.LOADTM, i);
+		}
+		public TerminalNode LOADRA() { return getToken(SVMParser.LOADRA, 0); }
+		public TerminalNode POP_SFP_LTM_LRA() { return getToken(SVMParser.POP_SFP_LTM_LRA, 0); }
+		public TerminalNode LTM_LTM_PUSH_ADD() { return getToken(SVMParser.LTM_LTM_PUSH_ADD, 0); }
 		public TerminalNode SUB() { return getToken(SVMParser.SUB, 0); }
+		public TerminalNode PUSH_SUB_LFP_LW() { return getToken(SVMParser.PUSH_SUB_LFP_LW, 0); }
+		public TerminalNode STORETM() { return getToken(SVMParser.STORETM, 0); }
+		public TerminalNode STORERA() { return getToken(SVMParser.STORERA, 0); }
+		public TerminalNode STM_SRA_POP() { return getToken(SVMParser.STM_SRA_POP, 0); }
+		public TerminalNode JS() { return getToken(SVMParser.JS, 0); }
+		public TerminalNode LW_JS() { return getToken(SVMParser.LW_JS, 0); }
+		public TerminalNode LABEL() { return getToken(SVMParser.LABEL, 0); }
 		public TerminalNode MULT() { return getToken(SVMParser.MULT, 0); }
 		public TerminalNode DIV() { return getToken(SVMParser.DIV, 0); }
 		public TerminalNode STOREW() { return getToken(SVMParser.STOREW, 0); }
-		public TerminalNode LOADW() { return getToken(SVMParser.LOADW, 0); }
 		public TerminalNode COL() { return getToken(SVMParser.COL, 0); }
 		public TerminalNode BRANCH() { return getToken(SVMParser.BRANCH, 0); }
 		public TerminalNode BRANCHEQ() { return getToken(SVMParser.BRANCHEQ, 0); }
 		public TerminalNode BRANCHLESSEQ() { return getToken(SVMParser.BRANCHLESSEQ, 0); }
-		public TerminalNode JS() { return getToken(SVMParser.JS, 0); }
-		public TerminalNode LOADRA() { return getToken(SVMParser.LOADRA, 0); }
-		public TerminalNode STORERA() { return getToken(SVMParser.STORERA, 0); }
-		public TerminalNode LOADTM() { return getToken(SVMParser.LOADTM, 0); }
-		public TerminalNode STORETM() { return getToken(SVMParser.STORETM, 0); }
-		public TerminalNode LOADFP() { return getToken(SVMParser.LOADFP, 0); }
-		public TerminalNode STOREFP() { return getToken(SVMParser.STOREFP, 0); }
 		public TerminalNode COPYFP() { return getToken(SVMParser.COPYFP, 0); }
 		public TerminalNode LOADHP() { return getToken(SVMParser.LOADHP, 0); }
 		public TerminalNode STOREHP() { return getToken(SVMParser.STOREHP, 0); }
 		public TerminalNode PRINT() { return getToken(SVMParser.PRINT, 0); }
 		public TerminalNode HALT() { return getToken(SVMParser.HALT, 0); }
+		public TerminalNode NEW() { return getToken(SVMParser.NEW, 0); }
+		public TerminalNode VCALL() { return getToken(SVMParser.VCALL, 0); }
+		public TerminalNode GCMAP() { return getToken(SVMParser.GCMAP, 0); }
 		public InstructionContext(ParserRuleContext parent, int invokingState) {
 			super(parent, invokingState);
 		}
@@ -226,227 +256,419 @@ public class SVMParser extends Parser {
 	public final InstructionContext instruction() throws RecognitionException {
 		InstructionContext _localctx = new InstructionContext(_ctx, getState());
 		enterRule(_localctx, 2, RULE_instruction);
+		 if (i+2 > code.length) code = Arrays.copyOf(code, 2*code.length); 
+		int _la;
 		try {
-			setState(69);
+			setState(127);
 			_errHandler.sync(this);
-			switch ( getInterpreter().adaptivePredict(_input,1,_ctx) ) {
+			switch ( getInterpreter().adaptivePredict(_input,2,_ctx) ) {
 			case 1:
 				enterOuterAlt(_localctx, 1);
 				{
 				setState(13);
-				match(PUSH);
+				match(LOADFP);
 				setState(14);
+				match(PUSH);
+				setState(15);
 				((InstructionContext)_localctx).n = match(INTEGER);
-				code[i++] = PUSH; 
-							              code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				setState(16);
+				match(ADD);
+				setState(17);
+				match(LOADW);
+				code[i++] = LFP_PUSH_ADD_LW;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
 				}
 				break;
 			case 2:
 				enterOuterAlt(_localctx, 2);
 				{
-				setState(16);
+				setState(19);
+				match(LFP_PUSH_ADD_LW);
+				setState(20);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = LFP_PUSH_ADD_LW;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 3:
+				enterOuterAlt(_localctx, 3);
+				{
+				setState(22);
+				match(POP);
+				setState(23);
+				match(STOREFP);
+				setState(24);
+				match(LOADTM);
+				setState(25);
+				match(LOADRA);
+				code[i++] = POP_SFP_LTM_LRA;
+				}
+				break;
+			case 4:
+				enterOuterAlt(_localctx, 4);
+				{
+				setState(27);
+				match(POP_SFP_LTM_LRA);
+				code[i++] = POP_SFP_LTM_LRA;
+				}
+				break;
+			case 5:
+				enterOuterAlt(_localctx, 5);
+				{
+				setState(29);
+				match(LOADTM);
+				setState(30);
+				match(LOADTM);
+				setState(31);
 				match(PUSH);
-				setState(17);
+				setState(32);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				setState(33);
+				match(ADD);
+				code[i++] = LTM_LTM_PUSH_ADD;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 6:
+				enterOuterAlt(_localctx, 6);
+				{
+				setState(35);
+				match(LTM_LTM_PUSH_ADD);
+				setState(36);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = LTM_LTM_PUSH_ADD;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 7:
+				enterOuterAlt(_localctx, 7);
+				{
+				setState(38);
+				match(PUSH);
+				setState(39);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				setState(40);
+				match(SUB);
+				setState(41);
+				match(LOADFP);
+				setState(42);
+				match(LOADW);
+				code[i++] = PUSH_SUB_LFP_LW;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 8:
+				enterOuterAlt(_localctx, 8);
+				{
+				setState(44);
+				match(PUSH_SUB_LFP_LW);
+				setState(45);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = PUSH_SUB_LFP_LW;
+				                          code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 9:
+				enterOuterAlt(_localctx, 9);
+				{
+				setState(47);
+				match(STORETM);
+				setState(48);
+				match(STORERA);
+				setState(49);
+				match(POP);
+				code[i++] = STM_SRA_POP;
+				}
+				break;
+			case 10:
+				enterOuterAlt(_localctx, 10);
+				{
+				setState(51);
+				match(STM_SRA_POP);
+				code[i++] = STM_SRA_POP;
+				}
+				break;
+			case 11:
+				enterOuterAlt(_localctx, 11);
+				{
+				setState(53);
+				match(LOADW);
+				setState(54);
+				match(JS);
+				code[i++] = LW_JS;
+				}
+				break;
+			case 12:
+				enterOuterAlt(_localctx, 12);
+				{
+				setState(56);
+				match(LW_JS);
+				code[i++] = LW_JS;
+				}
+				break;
+			case 13:
+				enterOuterAlt(_localctx, 13);
+				{
+				setState(58);
+				match(PUSH);
+				setState(59);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = PUSH; 
+							              code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 14:
+				enterOuterAlt(_localctx, 14);
+				{
+				setState(61);
+				match(PUSH);
+				setState(62);
 				((InstructionContext)_localctx).l = match(LABEL);
 				code[i++] = PUSH; 
 					    		             labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
-			case 3:
-				enterOuterAlt(_localctx, 3);
+			case 15:
+				enterOuterAlt(_localctx, 15);
 				{
-				setState(19);
+				setState(64);
 				match(POP);
 				code[i++] = POP;
 				}
 				break;
-			case 4:
-				enterOuterAlt(_localctx, 4);
+			case 16:
+				enterOuterAlt(_localctx, 16);
 				{
-				setState(21);
+				setState(66);
 				match(ADD);
 				code[i++] = ADD;
 				}
 				break;
-			case 5:
-				enterOuterAlt(_localctx, 5);
+			case 17:
+				enterOuterAlt(_localctx, 17);
 				{
-				setState(23);
+				setState(68);
 				match(SUB);
 				code[i++] = SUB;
 				}
 				break;
-			case 6:
-				enterOuterAlt(_localctx, 6);
+			case 18:
+				enterOuterAlt(_localctx, 18);
 				{
-				setState(25);
+				setState(70);
 				match(MULT);
 				code[i++] = MULT;
 				}
 				break;
-			case 7:
-				enterOuterAlt(_localctx, 7);
+			case 19:
+				enterOuterAlt(_localctx, 19);
 				{
-				setState(27);
+				setState(72);
 				match(DIV);
 				code[i++] = DIV;
 				}
 				break;
-			case 8:
-				enterOuterAlt(_localctx, 8);
+			case 20:
+				enterOuterAlt(_localctx, 20);
 				{
-				setState(29);
+				setState(74);
 				match(STOREW);
 				code[i++] = STOREW;
 				}
 				break;
-			case 9:
-				enterOuterAlt(_localctx, 9);
+			case 21:
+				enterOuterAlt(_localctx, 21);
 				{
-				setState(31);
+				setState(76);
 				match(LOADW);
 				code[i++] = LOADW;
 				}
 				break;
-			case 10:
-				enterOuterAlt(_localctx, 10);
+			case 22:
+				enterOuterAlt(_localctx, 22);
 				{
-				setState(33);
+				setState(78);
 				((InstructionContext)_localctx).l = match(LABEL);
-				setState(34);
+				setState(79);
 				match(COL);
 				labelDef.put((((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null),i);
 				}
 				break;
-			case 11:
-				enterOuterAlt(_localctx, 11);
+			case 23:
+				enterOuterAlt(_localctx, 23);
 				{
-				setState(36);
+				setState(81);
 				match(BRANCH);
-				setState(37);
+				setState(82);
 				((InstructionContext)_localctx).l = match(LABEL);
 				code[i++] = BRANCH;
 				                       labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
-			case 12:
-				enterOuterAlt(_localctx, 12);
+			case 24:
+				enterOuterAlt(_localctx, 24);
 				{
-				setState(39);
+				setState(84);
 				match(BRANCHEQ);
-				setState(40);
+				setState(85);
 				((InstructionContext)_localctx).l = match(LABEL);
 				code[i++] = BRANCHEQ;
 				                        labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
-			case 13:
-				enterOuterAlt(_localctx, 13);
+			case 25:
+				enterOuterAlt(_localctx, 25);
 				{
-				setState(42);
+				setState(87);
 				match(BRANCHLESSEQ);
-				setState(43);
+				setState(88);
 				((InstructionContext)_localctx).l = match(LABEL);
 				code[i++] = BRANCHLESSEQ;
 				                          labelRef.put(i++,(((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null));
 				}
 				break;
-			case 14:
-				enterOuterAlt(_localctx, 14);
+			case 26:
+				enterOuterAlt(_localctx, 26);
 				{
-				setState(45);
+				setState(90);
 				match(JS);
 				code[i++] = JS;
 				}
 				break;
-			case 15:
-				enterOuterAlt(_localctx, 15);
+			case 27:
+				enterOuterAlt(_localctx, 27);
 				{
-				setState(47);
+				setState(92);
 				match(LOADRA);
 				code[i++] = LOADRA;
 				}
 				break;
-			case 16:
-				enterOuterAlt(_localctx, 16);
+			case 28:
+				enterOuterAlt(_localctx, 28);
 				{
-				setState(49);
+				setState(94);
 				match(STORERA);
 				code[i++] = STORERA;
 				}
 				break;
-			case 17:
-				enterOuterAlt(_localctx, 17);
+			case 29:
+				enterOuterAlt(_localctx, 29);
 				{
-				setState(51);
+				setState(96);
 				match(LOADTM);
 				code[i++] = LOADTM;
 				}
 				break;
-			case 18:
-				enterOuterAlt(_localctx, 18);
+			case 30:
+				enterOuterAlt(_localctx, 30);
 				{
-				setState(53);
+				setState(98);
 				match(STORETM);
 				code[i++] = STORETM;
 				}
 				break;
-			case 19:
-				enterOuterAlt(_localctx, 19);
+			case 31:
+				enterOuterAlt(_localctx, 31);
 				{
-				setState(55);
+				setState(100);
 				match(LOADFP);
 				code[i++] = LOADFP;
 				}
 				break;
-			case 20:
-				enterOuterAlt(_localctx, 20);
+			case 32:
+				enterOuterAlt(_localctx, 32);
 				{
-				setState(57);
+				setState(102);
 				match(STOREFP);
 				code[i++] = STOREFP;
 				}
 				break;
-			case 21:
-				enterOuterAlt(_localctx, 21);
+			case 33:
+				enterOuterAlt(_localctx, 33);
 				{
-				setState(59);
+				setState(104);
 				match(COPYFP);
 				code[i++] = COPYFP;
 				}
 				break;
-			case 22:
-				enterOuterAlt(_localctx, 22);
+			case 34:
+				enterOuterAlt(_localctx, 34);
 				{
-				setState(61);
+				setState(106);
 				match(LOADHP);
 				code[i++] = LOADHP;
 				}
 				break;
-			case 23:
-				enterOuterAlt(_localctx, 23);
+			case 35:
+				enterOuterAlt(_localctx, 35);
 				{
-				setState(63);
+				setState(108);
 				match(STOREHP);
 				code[i++] = STOREHP;
 				}
 				break;
-			case 24:
-				enterOuterAlt(_localctx, 24);
+			case 36:
+				enterOuterAlt(_localctx, 36);
 				{
-				setState(65);
+				setState(110);
 				match(PRINT);
 				code[i++] = PRINT;
 				}
 				break;
-			case 25:
-				enterOuterAlt(_localctx, 25);
+			case 37:
+				enterOuterAlt(_localctx, 37);
 				{
-				setState(67);
+				setState(112);
 				match(HALT);
 				code[i++] = HALT;
 				}
 				break;
+			case 38:
+				enterOuterAlt(_localctx, 38);
+				{
+				setState(114);
+				match(NEW);
+				code[i++] = NEW;
+				}
+				break;
+			case 39:
+				enterOuterAlt(_localctx, 39);
+				{
+				setState(116);
+				match(VCALL);
+				setState(117);
+				((InstructionContext)_localctx).n = match(INTEGER);
+				code[i++] = VCALL;
+					                     code[i++] = Integer.parseInt((((InstructionContext)_localctx).n!=null?((InstructionContext)_localctx).n.getText():null));
+				}
+				break;
+			case 40:
+				enterOuterAlt(_localctx, 40);
+				{
+				setState(119);
+				match(GCMAP);
+				setState(120);
+				((InstructionContext)_localctx).l = match(LABEL);
+				setState(122); 
+				_errHandler.sync(this);
+				_la = _input.LA(1);
+				do {
+					{
+					{
+					setState(121);
+					((InstructionContext)_localctx).INTEGER = match(INTEGER);
+					((InstructionContext)_localctx).m.add(((InstructionContext)_localctx).INTEGER);
+					}
+					}
+					setState(124); 
+					_errHandler.sync(this);
+					_la = _input.LA(1);
+				} while ( _la==INTEGER );
+				int[] map = new int[((InstructionContext)_localctx).m.size()];
+					                     for (int k = 0; k < map.length; k++) map[k] = Integer.parseInt(((InstructionContext)_localctx).m.get(k).getText());
+					                     frameMapDef.put((((InstructionContext)_localctx).l!=null?((InstructionContext)_localctx).l.getText():null),map);
+				}
+				break;
 			}
 		}
 		catch (RecognitionException re) {
@@ -461,7 +683,7 @@ public class SVMParser extends Parser {
 	}
 
 	public static final String _serializedATN =
-		"\u0004\u0001\u001dH\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
+		"\u0004\u0001&\u0082\u0002\u0000\u0007\u0000\u0002\u0001\u0007\u0001\u0001"+
 		"\u0000\u0005\u0000\u0006\b\u0000\n\u0000\f\u0000\t\t\u0000\u0001\u0000"+
 		"\u0001\u0000\u0001\u0000\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
@@ -472,48 +694,91 @@ public class SVMParser extends Parser {
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
 		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
-		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0003\u0001F\b\u0001"+
-		"\u0001\u0001\u0000\u0000\u0002\u0000\u0002\u0000\u0000^\u0000\u0007\u0001"+
-		"\u0000\u0000\u0000\u0002E\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002"+
-		"\u0001\u0000\u0005\u0004\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000"+
-		"\u0000\u0007\u0005\u0001\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000"+
-		"\b\n\u0001\u0000\u0000\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005"+
-		"\u0000\u0000\u0001\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001"+
-		"\u0000\u0000\u0000\r\u000e\u0005\u0001\u0000\u0000\u000e\u000f\u0005\u001a"+
-		"\u0000\u0000\u000fF\u0006\u0001\uffff\uffff\u0000\u0010\u0011\u0005\u0001"+
-		"\u0000\u0000\u0011\u0012\u0005\u0019\u0000\u0000\u0012F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0013\u0014\u0005\u0002\u0000\u0000\u0014F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0015\u0016\u0005\u0003\u0000\u0000\u0016F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0017\u0018\u0005\u0004\u0000\u0000\u0018F\u0006\u0001\uffff"+
-		"\uffff\u0000\u0019\u001a\u0005\u0005\u0000\u0000\u001aF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001b\u001c\u0005\u0006\u0000\u0000\u001cF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001d\u001e\u0005\u0007\u0000\u0000\u001eF\u0006\u0001\uffff"+
-		"\uffff\u0000\u001f \u0005\b\u0000\u0000 F\u0006\u0001\uffff\uffff\u0000"+
-		"!\"\u0005\u0019\u0000\u0000\"#\u0005\u0018\u0000\u0000#F\u0006\u0001\uffff"+
-		"\uffff\u0000$%\u0005\t\u0000\u0000%&\u0005\u0019\u0000\u0000&F\u0006\u0001"+
-		"\uffff\uffff\u0000\'(\u0005\n\u0000\u0000()\u0005\u0019\u0000\u0000)F"+
-		"\u0006\u0001\uffff\uffff\u0000*+\u0005\u000b\u0000\u0000+,\u0005\u0019"+
-		"\u0000\u0000,F\u0006\u0001\uffff\uffff\u0000-.\u0005\f\u0000\u0000.F\u0006"+
-		"\u0001\uffff\uffff\u0000/0\u0005\r\u0000\u00000F\u0006\u0001\uffff\uffff"+
-		"\u000012\u0005\u000e\u0000\u00002F\u0006\u0001\uffff\uffff\u000034\u0005"+
-		"\u000f\u0000\u00004F\u0006\u0001\uffff\uffff\u000056\u0005\u0010\u0000"+
-		"\u00006F\u0006\u0001\uffff\uffff\u000078\u0005\u0011\u0000\u00008F\u0006"+
-		"\u0001\uffff\uffff\u00009:\u0005\u0012\u0000\u0000:F\u0006\u0001\uffff"+
-		"\uffff\u0000;<\u0005\u0013\u0000\u0000<F\u0006\u0001\uffff\uffff\u0000"+
-		"=>\u0005\u0014\u0000\u0000>F\u0006\u0001\uffff\uffff\u0000?@\u0005\u0015"+
-		"\u0000\u0000@F\u0006\u0001\uffff\uffff\u0000AB\u0005\u0016\u0000\u0000"+
-		"BF\u0006\u0001\uffff\uffff\u0000CD\u0005\u0017\u0000\u0000DF\u0006\u0001"+
-		"\uffff\uffff\u0000E\r\u0001\u0000\u0000\u0000E\u0010\u0001\u0000\u0000"+
-		"\u0000E\u0013\u0001\u0000\u0000\u0000E\u0015\u0001\u0000\u0000\u0000E"+
-		"\u0017\u0001\u0000\u0000\u0000E\u0019\u0001\u0000\u0000\u0000E\u001b\u0001"+
-		"\u0000\u0000\u0000E\u001d\u0001\u0000\u0000\u0000E\u001f\u0001\u0000\u0000"+
-		"\u0000E!\u0001\u0000\u0000\u0000E$\u0001\u0000\u0000\u0000E\'\u0001\u0000"+
-		"\u0000\u0000E*\u0001\u0000\u0000\u0000E-\u0001\u0000\u0000\u0000E/\u0001"+
-		"\u0000\u0000\u0000E1\u0001\u0000\u0000\u0000E3\u0001\u0000\u0000\u0000"+
-		"E5\u0001\u0000\u0000\u0000E7\u0001\u0000\u0000\u0000E9\u0001\u0000\u0000"+
-		"\u0000E;\u0001\u0000\u0000\u0000E=\u0001\u0000\u0000\u0000E?\u0001\u0000"+
-		"\u0000\u0000EA\u0001\u0000\u0000\u0000EC\u0001\u0000\u0000\u0000F\u0003"+
-		"\u0001\u0000\u0000\u0000\u0002\u0007E";
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001\u0001"+
+		"\u0001\u0001\u0001\u0001\u0001\u0001\u0004\u0001{\b\u0001\u000b\u0001"+
+		"\f\u0001|\u0001\u0001\u0003\u0001\u0080\b\u0001\u0001\u0001\u0000\u0000"+
+		"\u0002\u0000\u0002\u0000\u0000\u00a8\u0000\u0007\u0001\u0000\u0000\u0000"+
+		"\u0002\u007f\u0001\u0000\u0000\u0000\u0004\u0006\u0003\u0002\u0001\u0000"+
+		"\u0005\u0004\u0001\u0000\u0000\u0000\u0006\t\u0001\u0000\u0000\u0000\u0007"+
+		"\u0005\u0001\u0000\u0000\u0000\u0007\b\u0001\u0000\u0000\u0000\b\n\u0001"+
+		"\u0000\u0000\u0000\t\u0007\u0001\u0000\u0000\u0000\n\u000b\u0005\u0000"+
+		"\u0000\u0001\u000b\f\u0006\u0000\uffff\uffff\u0000\f\u0001\u0001\u0000"+
+		"\u0000\u0000\r\u000e\u0005\u0011\u0000\u0000\u000e\u000f\u0005\u0001\u0000"+
+		"\u0000\u000f\u0010\u0005#\u0000\u0000\u0010\u0011\u0005\u0003\u0000\u0000"+
+		"\u0011\u0012\u0005\b\u0000\u0000\u0012\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"\u0013\u0014\u0005\u001b\u0000\u0000\u0014\u0015\u0005#\u0000\u0000\u0015"+
+		"\u0080\u0006\u0001\uffff\uffff\u0000\u0016\u0017\u0005\u0002\u0000\u0000"+
+		"\u0017\u0018\u0005\u0012\u0000\u0000\u0018\u0019\u0005\u000f\u0000\u0000"+
+		"\u0019\u001a\u0005\r\u0000\u0000\u001a\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"\u001b\u001c\u0005\u001c\u0000\u0000\u001c\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000\u001d\u001e\u0005\u000f\u0000\u0000\u001e\u001f\u0005\u000f\u0000"+
+		"\u0000\u001f \u0005\u0001\u0000\u0000 !\u0005#\u0000\u0000!\"\u0005\u0003"+
+		"\u0000\u0000\"\u0080\u0006\u0001\uffff\uffff\u0000#$\u0005\u001d\u0000"+
+		"\u0000$%\u0005#\u0000\u0000%\u0080\u0006\u0001\uffff\uffff\u0000&\'\u0005"+
+		"\u0001\u0000\u0000\'(\u0005#\u0000\u0000()\u0005\u0004\u0000\u0000)*\u0005"+
+		"\u0011\u0000\u0000*+\u0005\b\u0000\u0000+\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000,-\u0005\u001e\u0000\u0000-.\u0005#\u0000\u0000.\u0080\u0006\u0001"+
+		"\uffff\uffff\u0000/0\u0005\u0010\u0000\u000001\u0005\u000e\u0000\u0000"+
+		"12\u0005\u0002\u0000\u00002\u0080\u0006\u0001\uffff\uffff\u000034\u0005"+
+		"\u001f\u0000\u00004\u0080\u0006\u0001\uffff\uffff\u000056\u0005\b\u0000"+
+		"\u000067\u0005\f\u0000\u00007\u0080\u0006\u0001\uffff\uffff\u000089\u0005"+
+		" \u0000\u00009\u0080\u0006\u0001\uffff\uffff\u0000:;\u0005\u0001\u0000"+
+		"\u0000;<\u0005#\u0000\u0000<\u0080\u0006\u0001\uffff\uffff\u0000=>\u0005"+
+		"\u0001\u0000\u0000>?\u0005\"\u0000\u0000?\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000@A\u0005\u0002\u0000\u0000A\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"BC\u0005\u0003\u0000\u0000C\u0080\u0006\u0001\uffff\uffff\u0000DE\u0005"+
+		"\u0004\u0000\u0000E\u0080\u0006\u0001\uffff\uffff\u0000FG\u0005\u0005"+
+		"\u0000\u0000G\u0080\u0006\u0001\uffff\uffff\u0000HI\u0005\u0006\u0000"+
+		"\u0000I\u0080\u0006\u0001\uffff\uffff\u0000JK\u0005\u0007\u0000\u0000"+
+		"K\u0080\u0006\u0001\uffff\uffff\u0000LM\u0005\b\u0000\u0000M\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000NO\u0005\"\u0000\u0000OP\u0005!\u0000\u0000P\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000QR\u0005\t\u0000\u0000RS\u0005\"\u0000\u0000"+
+		"S\u0080\u0006\u0001\uffff\uffff\u0000TU\u0005\n\u0000\u0000UV\u0005\""+
+		"\u0000\u0000V\u0080\u0006\u0001\uffff\uffff\u0000WX\u0005\u000b\u0000"+
+		"\u0000XY\u0005\"\u0000\u0000Y\u0080\u0006\u0001\uffff\uffff\u0000Z[\u0005"+
+		"\f\u0000\u0000[\u0080\u0006\u0001\uffff\uffff\u0000\\]\u0005\r\u0000\u0000"+
+		"]\u0080\u0006\u0001\uffff\uffff\u0000^_\u0005\u000e\u0000\u0000_\u0080"+
+		"\u0006\u0001\uffff\uffff\u0000`a\u0005\u000f\u0000\u0000a\u0080\u0006"+
+		"\u0001\uffff\uffff\u0000bc\u0005\u0010\u0000\u0000c\u0080\u0006\u0001"+
+		"\uffff\uffff\u0000de\u0005\u0011\u0000\u0000e\u0080\u0006\u0001\uffff"+
+		"\uffff\u0000fg\u0005\u0012\u0000\u0000g\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000hi\u0005\u0013\u0000\u0000i\u0080\u0006\u0001\uffff\uffff\u0000"+
+		"jk\u0005\u0014\u0000\u0000k\u0080\u0006\u0001\uffff\uffff\u0000lm\u0005"+
+		"\u0015\u0000\u0000m\u0080\u0006\u0001\uffff\uffff\u0000no\u0005\u0016"+
+		"\u0000\u0000o\u0080\u0006\u0001\uffff\uffff\u0000pq\u0005\u0017\u0000"+
+		"\u0000q\u0080\u0006\u0001\uffff\uffff\u0000rs\u0005\u0018\u0000\u0000"+
+		"s\u0080\u0006\u0001\uffff\uffff\u0000tu\u0005\u0019\u0000\u0000uv\u0005"+
+		"#\u0000\u0000v\u0080\u0006\u0001\uffff\uffff\u0000wx\u0005\u001a\u0000"+
+		"\u0000xz\u0005\"\u0000\u0000y{\u0005#\u0000\u0000zy\u0001\u0000\u0000"+
+		"\u0000{|\u0001\u0000\u0000\u0000|z\u0001\u0000\u0000\u0000|}\u0001\u0000"+
+		"\u0000\u0000}~\u0001\u0000\u0000\u0000~\u0080\u0006\u0001\uffff\uffff"+
+		"\u0000\u007f\r\u0001\u0000\u0000\u0000\u007f\u0013\u0001\u0000\u0000\u0000"+
+		"\u007f\u0016\u0001\u0000\u0000\u0000\u007f\u001b\u0001\u0000\u0000\u0000"+
+		"\u007f\u001d\u0001\u0000\u0000\u0000\u007f#\u0001\u0000\u0000\u0000\u007f"+
+		"&\u0001\u0000\u0000\u0000\u007f,\u0001\u0000\u0000\u0000\u007f/\u0001"+
+		"\u0000\u0000\u0000\u007f3\u0001\u0000\u0000\u0000\u007f5\u0001\u0000\u0000"+
+		"\u0000\u007f8\u0001\u0000\u0000\u0000\u007f:\u0001\u0000\u0000\u0000\u007f"+
+		"=\u0001\u0000\u0000\u0000\u007f@\u0001\u0000\u0000\u0000\u007fB\u0001"+
+		"\u0000\u0000\u0000\u007fD\u0001\u0000\u0000\u0000\u007fF\u0001\u0000\u0000"+
+		"\u0000\u007fH\u0001\u0000\u0000\u0000\u007fJ\u0001\u0000\u0000\u0000\u007f"+
+		"L\u0001\u0000\u0000\u0000\u007fN\u0001\u0000\u0000\u0000\u007fQ\u0001"+
+		"\u0000\u0000\u0000\u007fT\u0001\u0000\u0000\u0000\u007fW\u0001\u0000\u0000"+
+		"\u0000\u007fZ\u0001\u0000\u0000\u0000\u007f\\\u0001\u0000\u0000\u0000"+
+		"\u007f^\u0001\u0000\u0000\u0000\u007f`\u0001\u0000\u0000\u0000\u007fb"+
+		"\u0001\u0000\u0000\u0000\u007fd\u0001\u0000\u0000\u0000\u007ff\u0001\u0000"+
+		"\u0000\u0000\u007fh\u0001\u0000\u0000\u0000\u007fj\u0001\u0000\u0000\u0000"+
+		"\u007fl\u0001\u0000\u0000\u0000\u007fn\u0001\u0000\u0000\u0000\u007fp"+
+		"\u0001\u0000\u0000\u0000\u007fr\u0001\u0000\u0000\u0000\u007ft\u0001\u0000"+
+		"\u0000\u0000\u007fw\u0001\u0000\u0000\u0000\u0080\u0003\u0001\u0000\u0000"+
+		"\u0000\u0003\u0007|\u007f";
 	public static final ATN _ATN =
 		new ATNDeserializer().deserialize(_serializedATN.toCharArray());
 	static {
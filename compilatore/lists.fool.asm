@@ -0,0 +1,276 @@
+push 0
+lhp
+push function0
+lhp
+sw
+lhp
+push 1
+add
+shp
+push function1
+lhp
+sw
+lhp
+push 1
+add
+shp
+push function2
+push function3
+push function4
+main:
+lfp
+lfp
+push -1
+push 300
+lfp
+stm
+ltm
+ltm
+push -3
+add
+lw
+js
+label15:
+push 2000
+lfp
+stm
+ltm
+ltm
+push -5
+add
+lw
+js
+label16:
+print
+halt
+
+function0:
+cfp
+lra
+lfp
+lw
+push -1
+add
+lw
+stm
+sra
+pop
+sfp
+ltm
+lra
+js
+
+function1:
+cfp
+lra
+lfp
+lw
+push -2
+add
+lw
+stm
+sra
+pop
+sfp
+ltm
+lra
+js
+
+function2:
+cfp
+lra
+lfp
+push 1
+add
+lw
+push 0
+beq label0
+lfp
+lfp
+push 1
+add
+lw
+lfp
+push 2
+add
+lw
+push 1073741822
+lw
+push 66
+label2:
+new
+lfp
+push 1
+add
+lw
+push 1
+sub
+lfp
+lw
+stm
+ltm
+ltm
+push -3
+add
+lw
+js
+label3:
+b label1
+label0:
+lfp
+push 2
+add
+lw
+label1:
+stm
+sra
+pop
+pop
+pop
+sfp
+ltm
+lra
+js
+
+function3:
+cfp
+lra
+lfp
+push 1
+add
+lw
+push -1
+beq label4
+lfp
+lfp
+push 1
+add
+lw
+vcall 0
+label6:
+lfp
+lfp
+lfp
+push 1
+add
+lw
+vcall 1
+label7:
+lfp
+lw
+stm
+ltm
+ltm
+push -4
+add
+lw
+js
+label8:
+add
+b label5
+label4:
+push 0
+label5:
+stm
+sra
+pop
+pop
+sfp
+ltm
+lra
+js
+
+function4:
+cfp
+lra
+lfp
+push 1
+add
+lw
+push 0
+beq label9
+lfp
+lfp
+push -1
+push 100
+lfp
+lw
+stm
+ltm
+ltm
+push -3
+add
+lw
+js
+label11:
+lfp
+lw
+stm
+ltm
+ltm
+push -4
+add
+lw
+js
+label12:
+lfp
+lfp
+push 2
+add
+lw
+lfp
+push 1
+add
+lw
+push 1
+sub
+lfp
+lw
+stm
+ltm
+ltm
+push -5
+add
+lw
+js
+label13:
+add
+b label10
+label9:
+lfp
+lfp
+push 2
+add
+lw
+lfp
+lw
+stm
+ltm
+ltm
+push -4
+add
+lw
+js
+label14:
+label10:
+stm
+sra
+pop
+pop
+pop
+sfp
+ltm
+lra
+js
+
+gcmap label2 3 2 -4
+gcmap label3 3 2
+gcmap label6 2 1
+gcmap label7 2 1
+gcmap label8 2 1
+gcmap label11 3 2
+gcmap label12 3 2
+gcmap label13 3 2
+gcmap label14 3 2
+gcmap label15 0
+gcmap label16 0
\ No newline at end of file
@@ -0,0 +1,89 @@
+push 0
+push function0
+main:
+lfp
+push 1
+lfp
+stm
+ltm
+ltm
+push -2
+add
+lw
+js
+label12:
+lfp
+push 0
+lfp
+stm
+ltm
+ltm
+push -2
+add
+lw
+js
+label13:
+push 1000
+mult
+add
+print
+halt
+
+function0:
+cfp
+lra
+lfp
+push 1
+add
+lw
+push 1
+beq label0
+push 0
+b label1
+label0:
+push 1
+label1:
+lfp
+push 1
+add
+lw
+push 1
+beq label6
+b label4
+label6:
+push 0
+b label5
+label4:
+push 10
+label5:
+add
+lfp
+push 1
+add
+lw
+push 1
+beq label10
+push 5
+b label11
+label10:
+push 2
+label11:
+push 7
+beq label8
+push 0
+b label9
+label8:
+push 100
+label9:
+add
+stm
+sra
+pop
+pop
+sfp
+ltm
+lra
+js
+
+gcmap label12 0
+gcmap label13 0
\ No newline at end of file
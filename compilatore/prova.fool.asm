@@ -1,8 +1,7 @@
 push 0
-push 5
-push 2
-add
+push 7
 push function1
+main:
 lfp
 push 1
 lfp
@@ -13,15 +12,13 @@ push -3
 add
 lw
 js
+label6:
 push 1
 beq label4
 push 10
 b label5
 label4:
-lfp
-push -2
-add
-lw
+push 7
 label5:
 print
 halt
@@ -34,19 +31,7 @@ push 2
 add
 lw
 lfp
-push 3
-lfp
-lw
-lw
-push -2
-add
-lw
-beq label0
 push 0
-b label1
-label0:
-push 1
-label1:
 lfp
 lw
 lw
@@ -57,6 +42,7 @@ push -3
 add
 lw
 js
+label0:
 stm
 pop
 sra
@@ -77,10 +63,10 @@ push 1
 add
 lw
 push 1
-beq label2
+beq label1
 push 0
-b label3
-label2:
+b label2
+label1:
 lfp
 push 3
 push 2
@@ -93,6 +79,7 @@ add
 lw
 js
 label3:
+label2:
 stm
 pop
 sra
@@ -101,4 +88,8 @@ pop
 sfp
 ltm
 lra
-js
\ No newline at end of file
+js
+
+gcmap label0 3
+gcmap label3 2
+gcmap label6 0
\ No newline at end of file
@@ -1,5 +1,6 @@
 push 0
 push function0
+main:
 lfp
 push 5
 push 3
@@ -11,6 +12,7 @@ push -2
 add
 lw
 js
+label0:
 print
 halt
 
@@ -34,4 +36,6 @@ pop
 sfp
 ltm
 lra
-js
\ No newline at end of file
+js
+
+gcmap label0 0
\ No newline at end of file
@@ -25,144 +25,37 @@ push 3
 push 2
 push 5
 push -1
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 66
+label44:
+new
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 66
+label45:
+new
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 66
+label46:
+new
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 66
+label47:
+new
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 66
+label48:
+new
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 66
+label49:
+new
+main:
 lfp
 lfp
 lfp
@@ -177,6 +70,7 @@ push -6
 add
 lw
 js
+label50:
 lfp
 stm
 ltm
@@ -185,6 +79,7 @@ push -3
 add
 lw
 js
+label51:
 halt
 
 function0:
@@ -230,29 +125,11 @@ lfp
 push 1
 add
 lw
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 66
+label0:
+new
 stm
 sra
 pop
@@ -272,28 +149,15 @@ push 1
 add
 lw
 push -1
-beq label2
-push 0
-b label3
-label2:
-push 1
-label3:
-push 1
-beq label0
+beq label1
 lfp
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label3:
 print
 lfp
 lfp
@@ -301,14 +165,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label4:
 lfp
 lw
 stm
@@ -318,6 +176,7 @@ push -3
 add
 lw
 js
+label5:
 lfp
 stm
 ltm
@@ -326,10 +185,11 @@ push -2
 add
 lw
 js
-b label1
-label0:
-push -1
+label6:
+b label2
 label1:
+push -1
+label2:
 stm
 pop
 sra
@@ -348,27 +208,14 @@ push 1
 add
 lw
 push -1
-beq label6
-push 0
-b label7
-label6:
-push 1
-label7:
-push 1
-beq label4
+beq label7
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label9:
 lfp
 lfp
 push 2
@@ -379,14 +226,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label10:
 lfp
 lw
 stm
@@ -396,36 +237,19 @@ push -4
 add
 lw
 js
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+label11:
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
-b label5
-label4:
+push 66
+label12:
+new
+b label8
+label7:
 lfp
 push 2
 add
 lw
-label5:
+label8:
 stm
 sra
 pop
@@ -445,25 +269,24 @@ push 3
 add
 lw
 push 1
-beq label8
+beq label13
 lfp
 push 1
 add
 lw
 push 0
-beq label10
+beq label15
 push 0
-b label11
-label10:
+b label14
+label15:
 push 1
-label11:
-b label9
-label8:
+b label14
+label13:
 lfp
 push 1
 add
 lw
-label9:
+label14:
 stm
 sra
 pop
@@ -482,38 +305,25 @@ push 1
 add
 lw
 push -1
-beq label14
-push 0
-b label15
-label14:
-push 1
-label15:
-push 1
-beq label12
+beq label17
 lfp
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label23:
 lfp
 push 2
 add
 lw
-bleq label18
+bleq label21
 push 0
-b label19
-label18:
+b label22
+label21:
 push 1
-label19:
+label22:
 lfp
 stm
 ltm
@@ -522,8 +332,9 @@ push -2
 add
 lw
 js
+label24:
 push 1
-beq label16
+beq label19
 lfp
 lfp
 push 3
@@ -538,14 +349,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label25:
 lfp
 lw
 stm
@@ -555,21 +360,16 @@ push -5
 add
 lw
 js
-b label17
-label16:
+label26:
+b label18
+label19:
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 0
-add
-lw
-js
+vcall 0
+label27:
 lfp
 lfp
 push 3
@@ -584,14 +384,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label28:
 lfp
 lw
 stm
@@ -601,34 +395,16 @@ push -5
 add
 lw
 js
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+label29:
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 66
+label30:
+new
+b label18
 label17:
-b label13
-label12:
 push -1
-label13:
+label18:
 stm
 pop
 sra
@@ -649,44 +425,24 @@ push 1
 add
 lw
 push -1
-beq label22
-push 0
-b label23
-label22:
-push 1
-label23:
-push 1
-beq label20
+beq label31
 lfp
 lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
+vcall 0
+label33:
+b label32
+label31:
 push 0
-add
-lw
-js
-b label21
-label20:
-push 0
-label21:
+label32:
 lfp
 push 1
 add
 lw
 push -1
-beq label26
-push 0
-b label27
-label26:
-push 1
-label27:
-push 1
-beq label24
+beq label34
 lfp
 lfp
 push -2
@@ -704,14 +460,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label36:
 lfp
 lw
 stm
@@ -721,6 +471,7 @@ push -5
 add
 lw
 js
+label37:
 lfp
 lw
 stm
@@ -730,29 +481,12 @@ push -6
 add
 lw
 js
-lhp
-sw
-lhp
-push 1
-add
-shp
-lhp
-sw
-lhp
-push 1
-add
-shp
-push 10000
-push -2
-add
+label38:
+push 1073741822
 lw
-lhp
-sw
-lhp
-lhp
-push 1
-add
-shp
+push 66
+label39:
+new
 lfp
 lfp
 push 1
@@ -765,14 +499,8 @@ lfp
 push 1
 add
 lw
-stm
-ltm
-ltm
-lw
-push 1
-add
-lw
-js
+vcall 1
+label40:
 lfp
 lw
 stm
@@ -782,6 +510,7 @@ push -5
 add
 lw
 js
+label41:
 lfp
 lw
 stm
@@ -791,6 +520,7 @@ push -6
 add
 lw
 js
+label42:
 lfp
 lw
 stm
@@ -800,10 +530,11 @@ push -4
 add
 lw
 js
-b label25
-label24:
+label43:
+b label35
+label34:
 push -1
-label25:
+label35:
 stm
 pop
 sra
@@ -812,4 +543,39 @@ pop
 sfp
 ltm
 lra
-js
\ No newline at end of file
+js
+
+gcmap label0 3 1 -3
+gcmap label3 2 1
+gcmap label4 2 1
+gcmap label5 2 1
+gcmap label6 2 1
+gcmap label9 3 1 2
+gcmap label10 3 1 2 -4
+gcmap label11 3 1 2
+gcmap label12 3 1 2 -3
+gcmap label23 4 1
+gcmap label24 4 1
+gcmap label25 4 1
+gcmap label26 4 1
+gcmap label27 4 1
+gcmap label28 4 1
+gcmap label29 4 1
+gcmap label30 4 1 -4
+gcmap label33 2 1
+gcmap label36 2 1
+gcmap label37 2 1
+gcmap label38 2 1
+gcmap label39 2 1 -5
+gcmap label40 2 1 -4
+gcmap label41 2 1 -4
+gcmap label42 2 1 -4
+gcmap label43 2 1
+gcmap label44 0 -13
+gcmap label45 0 -12
+gcmap label46 0 -11
+gcmap label47 0 -10
+gcmap label48 0 -9
+gcmap label49 0 -8
+gcmap label50 0 -7
+gcmap label51 0 -7
\ No newline at end of file
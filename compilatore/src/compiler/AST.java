@@ -56,6 +56,7 @@ public class AST {
 	public static class VarNode extends DecNode {
 		final String id;
 		final Node exp;
+		STentry entry;
 		VarNode(String i, TypeNode t, Node v) {id = i; type = t; exp = v;}
 
 		@Override
@@ -0,0 +1,81 @@
+package compiler;
+
+import java.io.*;
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import compiler.exc.*;
+import svm.*;
+import rvm.*;
+
+// Compiles FOOL programs with both backends (stack SVM and register machine)
+// and times each execution engine on the same programs (see svm.Benchmark),
+// after checking that all engines print the same output.
+// usage: java compiler.BackendBenchmark [-n runs] file.fool ...
+public class BackendBenchmark {
+
+    private static final String[] ENGINES = {"svm cpu", "svm cpuPredecoded", "rvm cpu"};
+
+    private static Node frontEnd(String fileName) throws IOException {
+        FOOLLexer lexer = new FOOLLexer(CharStreams.fromFileName(fileName));
+        FOOLParser parser = new FOOLParser(new CommonTokenStream(lexer));
+        Node ast = new ASTGenerationSTVisitor().visit(parser.prog());
+        SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor();
+        symtableVisitor.visit(ast);
+        TypeCheckEASTVisitor typeChecker = new TypeCheckEASTVisitor();
+        try {
+            typeChecker.visit(ast);
+        } catch (IncomplException | TypeException e) {} // after symbol table errors, or counted in typeErrors
+        if (lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+typeChecker.typeErrors > 0)
+            throw new IllegalArgumentException("Front-end errors in "+fileName);
+        return ast;
+    }
+
+    private static String output(Runnable engine) {
+        PrintStream out = System.out;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(bytes));
+        try {
+            engine.run();
+        } finally {
+            System.setOut(out);
+        }
+        return bytes.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int runs = 20000;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-n")) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        for (int f = first; f < args.length; f++) {
+            Node ast = frontEnd(args[f]);
+            CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor();
+            codeGenerator.visit(ast);
+            int[] stackCode = codeGenerator.code().assemble().getCode();
+            int[] decoded = Predecoder.decode(stackCode);
+            int[] registerCode = rvm.Assembler.assemble(new RegisterCodeGenerationASTVisitor().visit(ast));
+            Runnable[] engines = {
+                () -> new ExecuteVM(stackCode).cpu(),
+                () -> new ExecuteVM(stackCode, decoded).cpuPredecoded(),
+                () -> new ExecuteRVM(registerCode).cpu()
+            };
+            String expected = output(engines[0]);
+            for (int e = 1; e < engines.length; e++)
+                if (!output(engines[e]).equals(expected))
+                    throw new IllegalStateException(ENGINES[e]+" output differs from "+ENGINES[0]+" on "+args[f]);
+            PrintStream out = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+            double[] ns;
+            try {
+                ns = svm.Benchmark.measure(engines, runs);
+            } finally {
+                System.setOut(out);
+            }
+            for (int e = 0; e < ENGINES.length; e++)
+                System.out.printf("%-24s %-18s %10.0f ns/run  x%.2f%n", args[f], ENGINES[e], ns[e], ns[0]/ns[e]);
+        }
+    }
+
+}
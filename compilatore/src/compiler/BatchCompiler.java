@@ -0,0 +1,137 @@
+package compiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import compiler.exc.*;
+import svm.*;
+
+// Compiles many FOOL programs at once on a work-stealing pool (ForkJoinPool),
+// each with FOOLCompiler.build(): compilations share no state, so they need no
+// lock. The batch is split in halves down to single programs, and idle threads
+// steal the halves still to do. Reports the throughput with one thread and with
+// the whole pool, per core; the programs failing to compile are listed with
+// their errors, and with -o each program is written to dir/name.svmo (see
+// svm.ObjectFile).
+// usage: java compiler.BatchCompiler [-threads n] [-copies n] [-o dir] file.fool|dir ...
+//   -threads: threads of the pool (default: available processors)
+//   -copies:  times each program is compiled in a round, for bigger batches (default 1)
+public class BatchCompiler {
+
+    private static final int ROUNDS = 5;
+
+    private static final class Source {
+        final Path file;
+        final String text;
+        final int lines;
+
+        Source(Path file) throws IOException {
+            this.file = file;
+            text = Files.readString(file, StandardCharsets.ISO_8859_1);
+            lines = (int) text.lines().count();
+        }
+    }
+
+    private final List<Source> sources;
+    private final int copies;
+    private final Path outDir;
+    private final Map<Path, String> failures = new ConcurrentHashMap<>(); // file -> errors
+
+    private BatchCompiler(List<Source> sources, int copies, Path outDir) {
+        this.sources = sources;
+        this.copies = copies;
+        this.outDir = outDir;
+    }
+
+    // compiles jobs [from, to), job j being a copy of sources.get(j % sources.size())
+    private final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from, to;
+
+        Batch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to-from > 1) {
+                int middle = (from+to) >>> 1;
+                invokeAll(new Batch(from, middle), new Batch(middle, to));
+                return;
+            }
+            Source source = sources.get(from % sources.size());
+            try {
+                ObjectFile object = FOOLCompiler.build(source.text);
+                if (outDir != null && from < sources.size()) {
+                    String name = source.file.getFileName().toString().replaceFirst("\\.fool$", "");
+                    object.write(outDir.resolve(name+".svmo"));
+                }
+            } catch (CompilationException e) {
+                failures.put(source.file, e.getMessage());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // nanoseconds to compile the whole batch on a pool of the given threads (best of ROUNDS, after a warm-up)
+    private long time(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long best = Long.MAX_VALUE;
+            for (int r = 0; r <= ROUNDS; r++) {
+                long start = System.nanoTime();
+                pool.invoke(new Batch(0, sources.size()*copies));
+                if (r > 0) best = Math.min(best, System.nanoTime()-start);
+            }
+            return best;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static List<Path> foolFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) return List.of(path);
+        try (Stream<Path> files = Files.walk(path)) {
+            return files.filter(f -> f.toString().endsWith(".fool")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors(), copies = 1;
+        Path outDir = null;
+        List<Source> sources = new ArrayList<>();
+        for (int a = 0; a < args.length; a++)
+            switch (args[a]) {
+                case "-threads": threads = Integer.parseInt(args[++a]); break;
+                case "-copies": copies = Integer.parseInt(args[++a]); break;
+                case "-o": outDir = Files.createDirectories(Path.of(args[++a])); break;
+                default: for (Path f : foolFiles(Path.of(args[a]))) sources.add(new Source(f));
+            }
+        if (sources.isEmpty() || threads < 1 || copies < 1) {
+            System.out.println("usage: BatchCompiler [-threads n] [-copies n] [-o dir] file.fool|dir ...");
+            return;
+        }
+        BatchCompiler batch = new BatchCompiler(sources, copies, outDir);
+        long sequential = batch.time(1);
+        long parallel = threads == 1 ? sequential : batch.time(threads);
+        for (Source s : sources)
+            if (batch.failures.containsKey(s.file)) System.out.println(s.file+": "+batch.failures.get(s.file));
+        int programs = sources.size()*copies;
+        long lines = 0;
+        for (Source s : sources) lines += (long) s.lines*copies;
+        System.out.printf("%d programs (%d files, %d failed), %d lines per round%n",
+            programs, sources.size(), batch.failures.size(), lines);
+        System.out.printf("%8s %12s %14s %14s %16s %8s%n", "threads", "time", "programs/s", "lines/s", "lines/s/thread", "speedup");
+        for (int t : threads == 1 ? new int[] {1} : new int[] {1, threads}) {
+            long ns = t == 1 ? sequential : parallel;
+            System.out.printf("%8d %9.1f ms %14.0f %14.0f %16.0f %7.2fx%n",
+                t, ns/1e6, programs*1e9/ns, lines*1e9/ns, lines*1e9/ns/t, (double) sequential/ns);
+        }
+    }
+
+}
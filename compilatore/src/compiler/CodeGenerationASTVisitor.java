@@ -3,347 +3,428 @@ package compiler;
 import compiler.AST.*;
 import compiler.lib.*;
 import compiler.exc.*;
+import svm.Code;
 import svm.ExecuteVM;
+import svm.GarbageCollector;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import static compiler.lib.FOOLlib.*;
+import static svm.SVMParser.*;
 
-public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidException> {
+// Emits the code of each node into the buffer of the code being generated, in
+// the order it runs: every instruction is written once, in time linear in the
+// size of the program. The body of each function or method gets a buffer of its
+// own (its nested functions are visited while it is being generated), which is
+// appended to the code of the functions when complete. Call code() for the
+// result of visiting the program.
+public class CodeGenerationASTVisitor extends BaseASTVisitor<Void, VoidException> {
 
     private List<List<String>> dispatchTables = new ArrayList<>();
 
+    private Code code = new Code(); // being generated: the main code, or the body of a function
+    private Code functionCode = new Code(); // of all the functions and methods, after the main code
+
+    // frame maps for the garbage collector (see svm.GarbageCollector), one per
+    // safepoint: a "new" or the return address of a call
+    private Code frameMaps = new Code();
+    private int frameCL = 0; // offset of the Control Link in the current frame, 0 in the global frame
+    private List<Integer> frameRefs = new ArrayList<>(); // offsets of the parameters (and Access Link) holding references
+    private List<Boolean> slots = new ArrayList<>(); // declarations and pending values below the Return Address: true for references
+
+    // FOOL name and line of the function or method at each function label, e.g. for svm.Profiler
+    private Map<String, String> functions = new LinkedHashMap<>();
+    private String classId; // class of the methods being visited
+
+    // labels are numbered per visitor, i.e. per compilation: compilations can run in parallel
+    private int labCount = 0;
+    private int funlabCount = 0;
+
+    private String freshLabel() {
+        return "label"+(labCount++);
+    }
+
+    private String freshFunLabel() {
+        return "function"+(funlabCount++);
+    }
+
     CodeGenerationASTVisitor() {}
     CodeGenerationASTVisitor(boolean debug) {super(false,debug);} //enables print for debugging
 
+    private static boolean isReference(TypeNode t) {
+        return t instanceof RefTypeNode || t instanceof EmptyTypeNode;
+    }
+
+    // whether the value of the (type checked) expression e is an object pointer or null
+    private static boolean isReference(Node e) {
+        if (e instanceof NewNode || e instanceof EmptyNode) return true;
+        if (e instanceof IdNode) return isReference(((IdNode) e).entry.type);
+        if (e instanceof CallNode) return isReference(((ArrowTypeNode) ((CallNode) e).entry.type).ret);
+        if (e instanceof ClassCallNode) return isReference(((ArrowTypeNode) ((ClassCallNode) e).methodEntry.type).ret);
+        if (e instanceof IfNode) return isReference(((IfNode) e).th) || isReference(((IfNode) e).el);
+        if (e instanceof PrintNode) return isReference(((PrintNode) e).exp);
+        return false;
+    }
+
+    // code for e, whose value stays on the stack while the code that follows runs
+    private void pending(Node e) {
+        visit(e);
+        slots.add(isReference(e));
+    }
+
+    private void release(int n) {
+        for (int i = 0; i < n; i++) slots.remove(slots.size()-1);
+    }
+
+    // code for l then r, l pending while r is evaluated
+    private void operands(Node l, Node r) {
+        pending(l);
+        visit(r);
+        release(1);
+    }
+
+    private void declarations(List<DecNode> declist) {
+        for (DecNode dec : declist) {
+            visit(dec);
+            slots.add(dec instanceof VarNode && isReference(dec.getType()));
+        }
+    }
+
+    // starts the frame of a function or method: its slots are described from here on
+    private void frame(List<ParNode> parlist, boolean method) {
+        frameCL = parlist.size()+1;
+        frameRefs = new ArrayList<>();
+        if (method) frameRefs.add(0); // Access Link: the object
+        for (int i = 0; i < parlist.size(); i++)
+            if (isReference(parlist.get(i).getType())) frameRefs.add(i+1);
+        slots = new ArrayList<>();
+    }
+
+    // label for a safepoint, to be defined where the references in the current
+    // frame are those recorded now
+    private String safepoint() {
+        String label = freshLabel();
+        List<Integer> map = new ArrayList<>();
+        map.add(frameCL);
+        map.addAll(frameRefs);
+        for (int j = 0; j < slots.size(); j++)
+            if (slots.get(j)) map.add(-2-j);
+        frameMaps.frameMap(label, map.stream().mapToInt(Integer::intValue).toArray());
+        return label;
+    }
+
+    public Map<String, String> functions() {
+        return functions;
+    }
+
+    // the program generated by visiting it
+    public Code code() {
+        return code;
+    }
+
+
 	@Override
-	public String visitNode(ProgLetInNode n) {
+	public Void visitNode(ProgLetInNode n) {
 		if (print) printNode(n);
-		String declCode = null;
-		for (Node dec : n.declist) declCode=nlJoin(declCode,visit(dec));
-		return nlJoin(
-			"push 0",
-			declCode, // generate code for declarations (allocation)
-			visit(n.exp),
-			"halt",
-			getCode()
-		);
+		code.push(0);
+		declarations(n.declist); // generate code for declarations (allocation)
+		code.label("main"); // initialisation done (see svm.Checkpoint)
+		visit(n.exp);
+		code.emit(HALT)
+			.append(functionCode)
+			.append(frameMaps);
+		return null;
 	}
 
 	@Override
-	public String visitNode(ProgNode n) {
+	public Void visitNode(ProgNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-			visit(n.exp),
-			"halt"
-		);
+		visit(n.exp);
+		code.emit(HALT)
+			.append(frameMaps);
+		return null;
+	}
+
+	// generates the code of a function or method (whose frame is already set) into
+	// a buffer of its own, then appends it to the code of the functions: returns its label
+	private String function(List<DecNode> declist, Node exp, int parameters) {
+		Code outer = code;
+		code = new Code();
+		code.emit(COPYFP) // set $fp to $sp value
+			.emit(LOADRA); // load $ra value
+		declarations(declist); // generate code for local declarations (they use the new $fp!!!)
+		visit(exp); // generate code for function body expression
+		code.emit(STORETM); // set $tm to popped value (function result)
+		for (int i = 0; i < declist.size(); i++) code.emit(POP); // remove local declarations from stack
+		code.emit(STORERA) // set $ra to popped value
+			.emit(POP); // remove Access Link from stack
+		for (int i = 0; i < parameters; i++) code.emit(POP); // remove parameters from stack
+		code.emit(STOREFP) // set $fp to popped value (Control Link)
+			.emit(LOADTM) // load $tm value (function result)
+			.emit(LOADRA) // load $ra value
+			.emit(JS); // jump to popped address
+		String label = freshFunLabel();
+		functionCode.label(label).append(code);
+		code = outer;
+		return label;
 	}
 
 	@Override
-	public String visitNode(FunNode n) {
+	public Void visitNode(FunNode n) {
 		if (print) printNode(n,n.id);
-		String declCode = null, popDecl = null, popParl = null;
-		for (Node dec : n.declist) {
-			declCode = nlJoin(declCode,visit(dec));
-			popDecl = nlJoin(popDecl,"pop");
-		}
-		for (int i=0;i<n.parlist.size();i++) popParl = nlJoin(popParl,"pop");
-		String funl = freshFunLabel();
-		putCode(
-			nlJoin(
-				funl+":",
-				"cfp", // set $fp to $sp value
-				"lra", // load $ra value
-				declCode, // generate code for local declarations (they use the new $fp!!!)
-				visit(n.exp), // generate code for function body expression
-				"stm", // set $tm to popped value (function result)
-				popDecl, // remove local declarations from stack
-				"sra", // set $ra to popped value
-				"pop", // remove Access Link from stack
-				popParl, // remove parameters from stack
-				"sfp", // set $fp to popped value (Control Link)
-				"ltm", // load $tm value (function result)
-				"lra", // load $ra value
-				"js"  // jump to popped address
-			)
-		);
-		return "push "+funl;
+		int outerCL = frameCL;
+		List<Integer> outerRefs = frameRefs;
+		List<Boolean> outerSlots = slots;
+		frame(n.parlist, false);
+		String funl = function(n.declist, n.exp, n.parlist.size());
+		frameCL = outerCL;
+		frameRefs = outerRefs;
+		slots = outerSlots;
+		functions.put(funl, n.id+":"+n.getLine());
+		code.push(funl);
+		return null;
 	}
 
 	@Override
-	public String visitNode(VarNode n) {
+	public Void visitNode(VarNode n) {
 		if (print) printNode(n,n.id);
-		return visit(n.exp);
+		visit(n.exp);
+		return null;
 	}
 
 	@Override
-	public String visitNode(PrintNode n) {
+	public Void visitNode(PrintNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-			visit(n.exp),
-			"print"
-		);
+		visit(n.exp);
+		code.emit(PRINT);
+		return null;
 	}
 
 	@Override
-	public String visitNode(IfNode n) {
+	public Void visitNode(IfNode n) {
 		if (print) printNode(n);
 	 	String l1 = freshLabel();
 	 	String l2 = freshLabel();
-		return nlJoin(
-			visit(n.cond),
-			"push 1",
-			"beq "+l1,
-			visit(n.el),
-			"b "+l2,
-			l1+":",
-			visit(n.th),
-			l2+":"
-		);
+		branch(n.cond, true, l1);
+		visit(n.el);
+		code.emit(BRANCH, l2)
+			.label(l1);
+		visit(n.th);
+		code.label(l2);
+		return null;
+	}
+
+	// code that jumps to target if the condition c evaluates to when, and falls
+	// through otherwise: comparisons branch on their operands and logical
+	// operators become chains of jumps, without materialising any boolean
+	private void branch(Node c, boolean when, String target) {
+		if (c instanceof BoolNode b) {
+			if (b.val == when) code.emit(BRANCH, target);
+		} else if (c instanceof NotNode not) {
+			branch(not.exp, !when, target);
+		} else if (c instanceof AndNode || c instanceof OrNode) {
+			boolean and = c instanceof AndNode;
+			Node l = and ? ((AndNode) c).left : ((OrNode) c).left;
+			Node r = and ? ((AndNode) c).right : ((OrNode) c).right;
+			if (when != and) { // either operand decides alone: false for "and", true for "or"
+				branch(l, when, target);
+				branch(r, when, target);
+			} else { // r decides, unless l skips it
+				String skip = freshLabel();
+				branch(l, !when, skip);
+				branch(r, when, target);
+				code.label(skip);
+			}
+		} else if (c instanceof EqualNode e) {
+			compare(BRANCHEQ, e.left, e.right, when, target);
+		} else if (c instanceof LessEqualNode le) {
+			compare(BRANCHLESSEQ, le.left, le.right, when, target);
+		} else if (c instanceof GreaterEqualNode ge) {
+			compare(BRANCHLESSEQ, ge.right, ge.left, when, target);
+		} else { // a boolean value
+			visit(c);
+			code.push(when ? 1 : 0)
+				.emit(BRANCHEQ, target);
+		}
+	}
+
+	// jumps to target if the branch op on the two operands is taken (when), or not taken
+	private void compare(int op, Node l, Node r, boolean when, String target) {
+		operands(l, r);
+		if (when) {
+			code.emit(op, target);
+			return;
+		}
+		String skip = freshLabel();
+		code.emit(op, skip)
+			.emit(BRANCH, target)
+			.label(skip);
+	}
+
+	// 1 if the condition c holds, 0 otherwise
+	private void condition(Node c) {
+		String l1 = freshLabel();
+		String l2 = freshLabel();
+		branch(c, true, l1);
+		code.push(0)
+			.emit(BRANCH, l2)
+			.label(l1)
+			.push(1)
+			.label(l2);
 	}
 
 	@Override
-	public String visitNode(EqualNode n) {
+	public Void visitNode(EqualNode n) {
 		if (print) printNode(n);
-	 	String l1 = freshLabel();
-	 	String l2 = freshLabel();
-		return nlJoin(
-			visit(n.left),
-			visit(n.right),
-			"beq "+l1,
-			"push 0",
-			"b "+l2,
-			l1+":",
-			"push 1",
-			l2+":"
-		);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(LessEqualNode n) {
+	public Void visitNode(LessEqualNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"bleq "+l1,
-				"push 0",
-				"b "+l2,
-				l1+":",
-				"push 1",
-				l2+":"
-		);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(GreaterEqualNode n) {
+	public Void visitNode(GreaterEqualNode n) {
 		if (print) printNode(n);
-		String l1 = freshLabel();
-		String l2 = freshLabel();
-		return nlJoin(
-				visit(n.right),
-				visit(n.left),
-				"bleq "+l1,
-				"push 0",
-				"b "+l2,
-				l1+":",
-				"push 1",
-				l2+":"
-		);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(AndNode n) {
+	public Void visitNode(AndNode n) {
 		if (print) printNode(n);
-		String lFalse = freshLabel();
-		String lEnd = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				"push 0",
-				"beq "+lFalse,
-				visit(n.right),
-				"push 0",
-				"beq "+lFalse,
-				"push 1",
-				"b "+lEnd,
-				lFalse+":",
-				"push 0",
-				lEnd+":"
-		);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(OrNode n) {
+	public Void visitNode(OrNode n) {
 		if (print) printNode(n);
-		String lTrue = freshLabel();
-		String lEnd = freshLabel();
-		return nlJoin(
-				visit(n.left),
-				"push 1",
-				"beq "+lTrue,
-				visit(n.right),
-				"push 1",
-				"beq "+lTrue,
-				"push 0",
-				"b "+lEnd,
-				lTrue+":",
-				"push 1",
-				lEnd+":"
-		);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(NotNode n) {
-	  if (print) printNode(n);
-	  String lTrue = freshLabel();
-	  String lEnd = freshLabel();
-	  return nlJoin(
-			  visit(n.exp),
-			  "push 0",
-			  "beq "+lTrue,
-			  "push 0",
-			  "b "+lEnd,
-			  lTrue+":",
-			  "push 1",
-			  lEnd+":"
-	  );
+	public Void visitNode(NotNode n) {
+		if (print) printNode(n);
+		condition(n);
+		return null;
 	}
 
 	@Override
-	public String visitNode(TimesNode n) {
+	public Void visitNode(TimesNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-			visit(n.left),
-			visit(n.right),
-			"mult"
-		);
+		operands(n.left, n.right);
+		code.emit(MULT);
+		return null;
 	}
 
 	@Override
-	public String visitNode(DivNode n) {
+	public Void visitNode(DivNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"div"
-		);
+		operands(n.left, n.right);
+		code.emit(DIV);
+		return null;
 	}
 
 	@Override
-	public String visitNode(PlusNode n) {
+	public Void visitNode(PlusNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-			visit(n.left),
-			visit(n.right),
-			"add"
-		);
+		operands(n.left, n.right);
+		code.emit(ADD);
+		return null;
 	}
 
 	@Override
-	public String visitNode(MinusNode n) {
+	public Void visitNode(MinusNode n) {
 		if (print) printNode(n);
-		return nlJoin(
-				visit(n.left),
-				visit(n.right),
-				"sub"
-		);
+		operands(n.left, n.right);
+		code.emit(SUB);
+		return null;
+	}
+
+	// follows the static chain (of Access Links) from the current frame up nesting levels
+	private void getAR(int levels) {
+		code.emit(LOADFP);
+		for (int i = 0; i < levels; i++) code.emit(LOADW);
+	}
+
+	// code for the arguments, in reversed order, above the Control Link
+	private String arguments(List<Node> arglist) {
+		code.emit(LOADFP); // load Control Link (pointer to frame of function "id" caller)
+		slots.add(false); // Control Link
+		for (int i=arglist.size()-1;i>=0;i--) pending(arglist.get(i)); // generate code for argument expressions in reversed order
+		release(arglist.size()+1);
+		return safepoint(); // the callee frame is described by the callee
 	}
 
 	@Override
-	public String visitNode(CallNode n) {
+	public Void visitNode(CallNode n) {
 		if (print) printNode(n,n.id);
-        String argCode = null, getAR = null;
-        for (int i=n.arglist.size()-1;i>=0;i--) argCode=nlJoin(argCode,visit(n.arglist.get(i)));
-        for (int i = 0;i<n.nl-n.entry.nl;i++) getAR=nlJoin(getAR,"lw");
+        String ret = arguments(n.arglist);
+        getAR(n.nl-n.entry.nl); // retrieve address of frame containing "id" declaration
+        // by following the static chain (of Access Links)
         if (n.entry.offset < 0){ // Caso di funzione locale
-            return nlJoin(
-                    "lfp", // load Control Link (pointer to frame of function "id" caller)
-                    argCode, // generate code for argument expressions in reversed order
-                    "lfp", getAR, // retrieve address of frame containing "id" declaration
-                    // by following the static chain (of Access Links)
-                    "stm", // set $tm to popped value (with the aim of duplicating top of stack)
-                    "ltm", // load Access Link (pointer to frame of function "id" declaration)
-                    "ltm", // duplicate top of stack
-                    "push "+n.entry.offset, "add", // compute address of "id" declaration
-                    "lw", // load address of "id" function
-                    "js"  // jump to popped address (saving address of subsequent instruction in $ra)
-            );
-        } else { // Caso di funzione globale
-            return nlJoin(
-                    "lfp", // load Control Link (pointer to frame of function "id" caller)
-                    argCode, // generate code for argument expressions in reversed order
-                    "lfp", getAR, // retrieve address of frame containing "id" declaration
-                    // by following the static chain (of Access Links)
-                    "stm", // set $tm to popped value (with the aim of duplicating top of stack)
-                    "ltm", // load Access Link (pointer to frame of function "id" declaration)
-                    "ltm", // duplicate top of stack
-                    "lw",
-                    "push "+n.entry.offset, "add", // compute address of "id" declaration
-                    "lw", // load address of "id" function
-                    "js"  // jump to popped address (saving address of subsequent instruction in $ra)
-            );
+            code.emit(STORETM) // set $tm to popped value (with the aim of duplicating top of stack)
+                .emit(LOADTM) // load Access Link (pointer to frame of function "id" declaration)
+                .emit(LOADTM) // duplicate top of stack
+                .push(n.entry.offset).emit(ADD) // compute address of "id" declaration
+                .emit(LOADW) // load address of "id" function
+                .emit(JS);  // jump to popped address (saving address of subsequent instruction in $ra)
+        } else { // Caso di funzione globale: the object, left as Access Link
+            code.emit(VCALL, n.entry.offset); // jump to the method at offset in its dispatch table
+            // (saving address of subsequent instruction in $ra)
         }
+        code.label(ret);
+        return null;
 	}
 
 	@Override
-	public String visitNode(IdNode n) {
+	public Void visitNode(IdNode n) {
 		if (print) printNode(n,n.id);
-		String getAR = null;
-		for (int i = 0;i<n.nl-n.entry.nl;i++) getAR=nlJoin(getAR,"lw");
-		return nlJoin(
-			"lfp", getAR, // retrieve address of frame containing "id" declaration by following the static chain (of Access Links)
-			"push "+n.entry.offset, "add", // compute address of "id" declaration
-			"lw" // load value of "id" variable
-		);
+		getAR(n.nl-n.entry.nl); // retrieve address of frame containing "id" declaration by following the static chain (of Access Links)
+		code.push(n.entry.offset).emit(ADD) // compute address of "id" declaration
+			.emit(LOADW); // load value of "id" variable
+		return null;
 	}
 
 	@Override
-	public String visitNode(BoolNode n) {
+	public Void visitNode(BoolNode n) {
 		if (print) printNode(n,n.val.toString());
-		return "push "+(n.val?1:0);
+		code.push(n.val?1:0);
+		return null;
 	}
 
 	@Override
-	public String visitNode(IntNode n) {
+	public Void visitNode(IntNode n) {
 		if (print) printNode(n,n.val.toString());
-		return "push "+n.val;
+		code.push(n.val);
+		return null;
 	}
 
     @Override
-    public String visitNode(MethodNode n){
+    public Void visitNode(MethodNode n){
       if (print) printNode(n, n.id);
-        String declCode = null, popDecl = null, popParl = null;
-        for (Node dec : n.declist) {
-            declCode = nlJoin(declCode,visit(dec));
-            popDecl = nlJoin(popDecl,"pop");
-        }
-        for (int i=0;i<n.parlist.size();i++) popParl = nlJoin(popParl,"pop");
-        n.label = freshFunLabel();
-        putCode(
-                nlJoin(
-                        n.label+":",
-                        "cfp", // set $fp to $sp value
-                        "lra", // load $ra value
-                        declCode, // generate code for local declarations (they use the new $fp!!!)
-                        visit(n.exp), // generate code for function body expression
-                        "stm", // set $tm to popped value (function result)
-                        popDecl, // remove local declarations from stack
-                        "sra", // set $ra to popped value
-                        "pop", // remove Access Link from stack
-                        popParl, // remove parameters from stack
-                        "sfp", // set $fp to popped value (Control Link)
-                        "ltm", // load $tm value (function result)
-                        "lra", // load $ra value
-                        "js"  // jump to popped address
-                )
-        );
+        int outerCL = frameCL;
+        List<Integer> outerRefs = frameRefs;
+        List<Boolean> outerSlots = slots;
+        frame(n.parlist, true);
+        n.label = function(n.declist, n.exp, n.parlist.size());
+        frameCL = outerCL;
+        frameRefs = outerRefs;
+        slots = outerSlots;
+        functions.put(n.label, classId+"."+n.id+":"+n.getLine());
         return null;
     }
 
     @Override
-    public String visitNode(ClassNode n){
+    public Void visitNode(ClassNode n){
         if (print) printNode(n, n.id);
         List<String> dispatchTable = new ArrayList<>();
         if(n.superId!=null){
@@ -352,6 +433,7 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
                 dispatchTable.add(s);
             }
         }
+        classId = n.id;
         for (int i = 0; i < n.methods.size() ; i++) {
             visit(n.methods.get(i));
             String nodeLabel = n.methods.get(i).label;
@@ -360,83 +442,58 @@ public class CodeGenerationASTVisitor extends BaseASTVisitor<String, VoidExcepti
             dispatchTable.set(nodeOffset, nodeLabel);
         }
         dispatchTables.add(dispatchTable);
-        String returnCode = "lhp";
+        code.emit(LOADHP);
         for (int i = 0; i < dispatchTable.size(); i++) {
             if (dispatchTable.get(i) == null) throw new RuntimeException("Dispatch table hole in class " + n.id);
-            returnCode = nlJoin(
-                returnCode,
-                "push " + dispatchTable.get(i),
-                "lhp",
-                "sw",
-                "lhp",
-                "push 1",
-                "add",
-                "shp"
-            );
+            code.push(dispatchTable.get(i))
+                .emit(LOADHP)
+                .emit(STOREW)
+                .emit(LOADHP)
+                .push(1)
+                .emit(ADD)
+                .emit(STOREHP);
         }
-        return returnCode;
+        return null;
     }
 
     @Override
-    public String visitNode(EmptyNode n){
+    public Void visitNode(EmptyNode n){
         if (print) printNode(n);
-        return "push -1";
+        code.push(-1);
+        return null;
     }
 
     @Override
-    public String visitNode(ClassCallNode n){
+    public Void visitNode(ClassCallNode n){
         if (print) printNode(n);
-        String argCode = null, getAR = null;
-        for (int i=n.arglist.size()-1;i>=0;i--) argCode=nlJoin(argCode,visit(n.arglist.get(i)));
-        for (int i = 0;i<n.nl-n.entry.nl;i++) getAR=nlJoin(getAR,"lw");
-        return nlJoin(
-                "lfp", // load Control Link (pointer to frame of function "id" caller)
-                argCode, // generate code for argument expressions in reversed order
-                "lfp", getAR, // retrieve address of frame containing "id" declaration
-                // by following the static chain (of Access Links)
-                "push "+n.entry.offset, "add", // compute address of "id" declaration
-                "lw", // load value of "id" variable
-                "stm", // set $tm to popped value (with the aim of duplicating top of stack)
-                "ltm", // load Access Link (pointer to frame of function "id" declaration)
-                "ltm", // duplicate top of stack
-                "lw",
-                "push "+n.methodEntry.offset, "add", // compute address of "id" declaration
-                "lw", // load address of "id" function
-                "js"  // jump to popped address (saving address of subsequent instruction in $ra)
-        );
+        String ret = arguments(n.arglist);
+        getAR(n.nl-n.entry.nl); // retrieve address of frame containing "id" declaration
+        // by following the static chain (of Access Links)
+        code.push(n.entry.offset).emit(ADD) // compute address of "id" declaration
+            .emit(LOADW) // load value of "id" variable: the object, left as Access Link
+            .emit(VCALL, n.methodEntry.offset) // jump to the method at offset in its dispatch table
+            // (saving address of subsequent instruction in $ra)
+            .label(ret);
+        return null;
     }
 
     @Override
-    public String visitNode(NewNode n) {
+    public Void visitNode(NewNode n) {
         if (print) printNode(n, n.id);
-        String argCode = null, copyArg = null;
-        for (int i = 0 ; i < n.arglist.size() ; i++){
-            argCode = nlJoin(argCode, visit(n.arglist.get(i)));
-            copyArg = nlJoin(
-                    copyArg,
-                    "lhp",
-                    "sw",
-                    "lhp",
-                    "push 1",
-                    "add",
-                    "shp"
-            );
-        }
-        return nlJoin(
-                argCode,
-                copyArg,
-                "push " + ExecuteVM.MEMSIZE,
-                "push " + n.entry.offset,
-                "add",
-                "lw", //Dispatch pointer on stack
-                "lhp",
-                "sw", //Write dispatch pointer on heap
-                "lhp", //Push hp on stack
-
-                "lhp",
-                "push 1",
-                "add",
-                "shp"
-        );
+        for (int i = 0 ; i < n.arglist.size() ; i++) pending(n.arglist.get(i));
+        String site = safepoint(); // the arguments are still on the stack
+        release(n.arglist.size());
+        List<TypeNode> fields = ((ClassTypeNode) n.entry.type).allFields;
+        if (fields.size() > GarbageCollector.MAX_FIELDS) throw new RuntimeException("Too many fields in class " + n.id);
+        int references = 0;
+        for (int i = 0; i < fields.size(); i++) if (isReference(fields.get(i))) references |= 1 << i;
+        code.push(ExecuteVM.STACK_BASE)
+            .push(n.entry.offset)
+            .emit(ADD)
+            .emit(LOADW) //Dispatch pointer on stack
+            .push(GarbageCollector.header(fields.size(), references)) //Object header
+            .label(site)
+            .emit(NEW); //Copy arguments, dispatch pointer and header on heap, push object pointer
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+package compiler;
+
+import java.io.*;
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import svm.*;
+
+// Times the compilation of generated FOOL programs with an increasing number of
+// functions, phase by phase: front end (parsing, AST, symbol table and type
+// checking), code generation, peephole optimisation (svm.Peephole), listing
+// (written to a buffered null writer) and assembly. Times per function stay
+// flat when the phases are linear.
+// usage: java compiler.CompilerBenchmark [functions ...] (default 2500 5000 10000 20000 40000)
+public class CompilerBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    // functions f0 ... f(n-1), each calling the previous one
+    static String program(int n) {
+        StringBuilder b = new StringBuilder("let\n");
+        b.append("  fun f0:int (x:int) x+1;\n");
+        for (int i = 1; i < n; i++)
+            b.append("  fun f").append(i).append(":int (x:int)\n")
+             .append("    let var y:int = x*2;\n")
+             .append("    in if (y <= ").append(i).append(") then { f").append(i-1).append("(y) } else { y-1 };\n");
+        return b.append("in print(f").append(n-1).append("(1));\n").toString();
+    }
+
+    static Node frontEnd(String source) {
+        FOOLLexer lexer = new FOOLLexer(CharStreams.fromString(source));
+        FOOLParser parser = new FOOLParser(new CommonTokenStream(lexer));
+        Node ast = new ASTGenerationSTVisitor().visit(parser.prog());
+        SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor();
+        symtableVisitor.visit(ast);
+        TypeCheckEASTVisitor typeChecker = new TypeCheckEASTVisitor();
+        try {
+            typeChecker.visit(ast);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        if (lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+typeChecker.typeErrors > 0)
+            throw new IllegalStateException("Front-end errors in the generated program");
+        return ast;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {2500, 5000, 10000, 20000, 40000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+        System.out.printf("%10s %12s %22s %22s %22s %22s %22s%n", "functions", "instructions", "front end", "codegen", "peephole", "listing", "assembly");
+        for (int n : sizes) {
+            String source = program(n);
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            int instructions = 0;
+            for (int r = 0; r <= ROUNDS; r++) { // the first round warms up
+                long t0 = System.nanoTime();
+                Node ast = frontEnd(source);
+                long t1 = System.nanoTime();
+                CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor();
+                codeGenerator.visit(ast);
+                Code code = codeGenerator.code();
+                long t2 = System.nanoTime();
+                code = Peephole.optimise(code).code();
+                long t3 = System.nanoTime();
+                try (Writer out = new BufferedWriter(Writer.nullWriter())) {
+                    code.write(out);
+                }
+                long t4 = System.nanoTime();
+                code.assemble();
+                long t5 = System.nanoTime();
+                instructions = code.size();
+                if (r > 0) {
+                    best[0] = Math.min(best[0], t1-t0);
+                    best[1] = Math.min(best[1], t2-t1);
+                    best[2] = Math.min(best[2], t3-t2);
+                    best[3] = Math.min(best[3], t4-t3);
+                    best[4] = Math.min(best[4], t5-t4);
+                }
+            }
+            System.out.printf("%10d %12d", n, instructions);
+            for (long t : best) System.out.printf(" %9.1f ms %5.1f us/fun", t/1e6, t/1e3/n);
+            System.out.println();
+        }
+    }
+
+}
@@ -0,0 +1,269 @@
+package compiler;
+
+import java.util.*;
+import compiler.AST.*;
+import compiler.lib.*;
+import compiler.exc.*;
+
+// Constant folding and propagation on the enriched AST, after type checking:
+// operators with IntNode/BoolNode operands are evaluated, the uses (IdNode) of
+// variables declared with a constant are replaced by it (the declarations stay,
+// keeping the frame layout) and "if" with a constant condition by its branch.
+// Nodes are rebuilt only above a change, with their line and what the symbol
+// table set in them. Values are those of the SVM: booleans are 1 and 0 (a bool
+// is also an int) and arithmetic wraps; operands are dropped only if constant
+// (or never evaluated, as in "false && e"), and a division by a constant 0 is
+// left to fail at run time.
+// usage: ast = new ConstantFoldingASTVisitor().visit(ast), folded for the nodes replaced
+public class ConstantFoldingASTVisitor extends BaseASTVisitor<Node,VoidException> {
+
+	private final Map<STentry,Node> constants = new HashMap<>(); // variable -> its constant value
+	int folded = 0;
+
+	private static boolean isConstant(Node n) {
+		return n instanceof IntNode || n instanceof BoolNode;
+	}
+
+	private static int value(Node n) { // of a constant
+		if (n instanceof IntNode) return ((IntNode) n).val;
+		return ((BoolNode) n).val ? 1 : 0;
+	}
+
+	// m replacing n, at its line
+	private static <T extends Node> T at(Node n, T m) {
+		m.setLine(n.getLine());
+		return m;
+	}
+
+	private Node constant(Node n, int v) {
+		folded++;
+		return at(n, new IntNode(v));
+	}
+
+	private Node constant(Node n, boolean b) {
+		folded++;
+		return at(n, new BoolNode(b));
+	}
+
+	private Node replaced(Node n) {
+		folded++;
+		return n;
+	}
+
+	// the list itself if no element changed
+	@SuppressWarnings("unchecked")
+	private <T extends Node> List<T> visitList(List<T> l) {
+		List<T> r = null;
+		for (int i = 0; i < l.size(); i++) {
+			T m = (T) visit(l.get(i));
+			if (m != l.get(i) && r == null) r = new ArrayList<>(l.subList(0, i));
+			if (r != null) r.add(m);
+		}
+		return r == null ? l : r;
+	}
+
+	@Override
+	public Node visitNode(ProgLetInNode n) {
+		List<DecNode> declist = visitList(n.declist);
+		Node exp = visit(n.exp);
+		return declist == n.declist && exp == n.exp ? n : at(n, new ProgLetInNode(declist, exp));
+	}
+
+	@Override
+	public Node visitNode(ProgNode n) {
+		Node exp = visit(n.exp);
+		return exp == n.exp ? n : at(n, new ProgNode(exp));
+	}
+
+	@Override
+	public Node visitNode(FunNode n) {
+		List<DecNode> declist = visitList(n.declist);
+		Node exp = visit(n.exp);
+		return declist == n.declist && exp == n.exp ? n : at(n, new FunNode(n.id, n.retType, n.parlist, declist, exp));
+	}
+
+	@Override
+	public Node visitNode(ParNode n) {
+		return n;
+	}
+
+	@Override
+	public Node visitNode(VarNode n) {
+		Node exp = visit(n.exp);
+		if (isConstant(exp)) constants.put(n.entry, exp);
+		if (exp == n.exp) return n;
+		VarNode v = at(n, new VarNode(n.id, n.getType(), exp));
+		v.entry = n.entry;
+		return v;
+	}
+
+	@Override
+	public Node visitNode(PrintNode n) {
+		Node exp = visit(n.exp);
+		return exp == n.exp ? n : at(n, new PrintNode(exp));
+	}
+
+	@Override
+	public Node visitNode(IfNode n) {
+		Node cond = visit(n.cond);
+		if (cond instanceof BoolNode) return replaced(visit(((BoolNode) cond).val ? n.th : n.el));
+		Node th = visit(n.th), el = visit(n.el);
+		return cond == n.cond && th == n.th && el == n.el ? n : at(n, new IfNode(cond, th, el));
+	}
+
+	@Override
+	public Node visitNode(EqualNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) == value(r));
+		return l == n.left && r == n.right ? n : at(n, new EqualNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(LessEqualNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) <= value(r));
+		return l == n.left && r == n.right ? n : at(n, new LessEqualNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(GreaterEqualNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) >= value(r));
+		return l == n.left && r == n.right ? n : at(n, new GreaterEqualNode(l, r));
+	}
+
+	// false && e: e is not evaluated; e && true is e
+	@Override
+	public Node visitNode(AndNode n) {
+		Node l = visit(n.left);
+		if (l instanceof BoolNode) return ((BoolNode) l).val ? replaced(visit(n.right)) : constant(n, false);
+		Node r = visit(n.right);
+		if (r instanceof BoolNode && ((BoolNode) r).val) return replaced(l);
+		return l == n.left && r == n.right ? n : at(n, new AndNode(l, r));
+	}
+
+	// true || e: e is not evaluated; e || false is e
+	@Override
+	public Node visitNode(OrNode n) {
+		Node l = visit(n.left);
+		if (l instanceof BoolNode) return ((BoolNode) l).val ? constant(n, true) : replaced(visit(n.right));
+		Node r = visit(n.right);
+		if (r instanceof BoolNode && !((BoolNode) r).val) return replaced(l);
+		return l == n.left && r == n.right ? n : at(n, new OrNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(NotNode n) {
+		Node exp = visit(n.exp);
+		if (exp instanceof BoolNode) return constant(n, !((BoolNode) exp).val);
+		return exp == n.exp ? n : at(n, new NotNode(exp));
+	}
+
+	@Override
+	public Node visitNode(TimesNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) * value(r));
+		return l == n.left && r == n.right ? n : at(n, new TimesNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(DivNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r) && value(r) != 0) return constant(n, value(l) / value(r));
+		return l == n.left && r == n.right ? n : at(n, new DivNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(PlusNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) + value(r));
+		return l == n.left && r == n.right ? n : at(n, new PlusNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(MinusNode n) {
+		Node l = visit(n.left), r = visit(n.right);
+		if (isConstant(l) && isConstant(r)) return constant(n, value(l) - value(r));
+		return l == n.left && r == n.right ? n : at(n, new MinusNode(l, r));
+	}
+
+	@Override
+	public Node visitNode(CallNode n) {
+		List<Node> arglist = visitList(n.arglist);
+		if (arglist == n.arglist) return n;
+		CallNode c = at(n, new CallNode(n.id, arglist));
+		c.entry = n.entry;
+		c.nl = n.nl;
+		return c;
+	}
+
+	@Override
+	public Node visitNode(IdNode n) {
+		Node c = constants.get(n.entry);
+		if (c == null) return n;
+		return c instanceof BoolNode ? constant(n, ((BoolNode) c).val) : constant(n, value(c));
+	}
+
+	@Override
+	public Node visitNode(BoolNode n) {
+		return n;
+	}
+
+	@Override
+	public Node visitNode(IntNode n) {
+		return n;
+	}
+
+	// OBJECT-ORIENTED EXTENSION
+
+	@Override
+	public Node visitNode(ClassNode n) {
+		List<MethodNode> methods = visitList(n.methods);
+		if (methods == n.methods) return n;
+		ClassNode c = at(n, new ClassNode(n.id, n.superId, n.fields, methods));
+		c.entry = n.entry;
+		c.superEntry = n.superEntry;
+		return c;
+	}
+
+	@Override
+	public Node visitNode(FieldNode n) {
+		return n;
+	}
+
+	@Override
+	public Node visitNode(MethodNode n) {
+		List<DecNode> declist = visitList(n.declist);
+		Node exp = visit(n.exp);
+		if (declist == n.declist && exp == n.exp) return n;
+		MethodNode m = at(n, new MethodNode(n.id, n.retType, n.parlist, declist, exp));
+		m.offset = n.offset;
+		return m;
+	}
+
+	@Override
+	public Node visitNode(ClassCallNode n) {
+		List<Node> arglist = visitList(n.arglist);
+		if (arglist == n.arglist) return n;
+		ClassCallNode c = at(n, new ClassCallNode(n.objectId, n.methodId, arglist));
+		c.entry = n.entry;
+		c.methodEntry = n.methodEntry;
+		c.nl = n.nl;
+		return c;
+	}
+
+	@Override
+	public Node visitNode(NewNode n) {
+		List<Node> arglist = visitList(n.arglist);
+		if (arglist == n.arglist) return n;
+		NewNode c = at(n, new NewNode(n.id, arglist));
+		c.entry = n.entry;
+		return c;
+	}
+
+	@Override
+	public Node visitNode(EmptyNode n) {
+		return n;
+	}
+
+}
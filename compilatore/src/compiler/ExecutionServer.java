@@ -0,0 +1,214 @@
+package compiler;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import com.sun.net.httpserver.*;
+import compiler.exc.*;
+import svm.*;
+
+// Long-lived local service running FOOL programs, so that jobs do not pay for
+// JVM startup, ANTLR warm-up and files. Listens on localhost only.
+//   POST /run        body: FOOL source
+//   POST /run?asm    body: SVM assembly (as written by compiler.Test)
+// Optional query parameters, capped by the server limits: timeout (ms),
+// stack and heap (SVM segment sizes, in words; heap at least MIN_HEAP).
+// Response: 200 and the output of the program; 400 and the errors of the
+// compilation or an invalid parameter; 422 and the output followed by the runtime error (time or
+// memory limit exceeded, ...).
+// Compiled programs are cached by source, each with a pool of VMs (see
+// svm.ExecutionPool) and a JitCompiler, so a job sent again only runs.
+// usage: java compiler.ExecutionServer [port [threads]]
+public class ExecutionServer {
+
+    public static final int DEFAULT_PORT = 8088;
+    public static final long MAX_TIMEOUT_MS = 10000;
+    public static final int MAX_SOURCE = 1 << 20;    // bytes
+    public static final int MAX_OUTPUT = 1 << 20;    // bytes per job
+    public static final int MIN_HEAP = 1 << 12;      // words: the dispatch tables, a nursery and its survivors (see svm.GarbageCollector)
+    private static final int CACHED_PROGRAMS = 256;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fool-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final HttpServer server;
+    private final Map<String, ExecutionPool> programs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ExecutionPool> eldest) {
+            return size() > CACHED_PROGRAMS;
+        }
+    };
+
+    // jobs run on the threads of the HTTP server, threads at most at the same time
+    public ExecutionServer(int port, int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/run", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdown();
+    }
+
+    private static class Failure extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        Failure(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) throw new Failure(405, "POST a program to /run");
+            Map<String, String> query = query(exchange.getRequestURI());
+            String source = read(exchange.getRequestBody());
+            boolean asm = query.containsKey("asm");
+            long timeout = Math.min(parameter(query, "timeout", MAX_TIMEOUT_MS), MAX_TIMEOUT_MS);
+            int stack = (int) Math.min(parameter(query, "stack", ExecuteVM.DEFAULT_STACK_SIZE), ExecuteVM.DEFAULT_STACK_SIZE);
+            int heap = (int) Math.min(parameter(query, "heap", ExecuteVM.DEFAULT_HEAP_SIZE), ExecuteVM.DEFAULT_HEAP_SIZE);
+            if (heap < MIN_HEAP) throw new Failure(400, "Invalid heap: less than "+MIN_HEAP+" words");
+            body = run(program(source, asm), timeout, stack, heap);
+        } catch (Failure e) {
+            status = e.status;
+            body = e.getMessage();
+        } catch (RuntimeException e) {
+            status = 500;
+            body = e.toString();
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> query = new HashMap<>();
+        if (uri.getRawQuery() != null)
+            for (String p : uri.getRawQuery().split("&")) {
+                int eq = p.indexOf('=');
+                query.put(eq < 0 ? p : p.substring(0, eq), eq < 0 ? "" : URLDecoder.decode(p.substring(eq+1), StandardCharsets.UTF_8));
+            }
+        return query;
+    }
+
+    private static long parameter(Map<String, String> query, String name, long max) throws Failure {
+        String v = query.get(name);
+        if (v == null) return max;
+        try {
+            long n = Long.parseLong(v);
+            if (n > 0) return n;
+        } catch (NumberFormatException e) {}
+        throw new Failure(400, "Invalid "+name+": "+v);
+    }
+
+    private static String read(InputStream in) throws IOException, Failure {
+        byte[] bytes = in.readNBytes(MAX_SOURCE+1);
+        if (bytes.length > MAX_SOURCE) throw new Failure(413, "Program larger than "+MAX_SOURCE+" bytes");
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private ExecutionPool program(String source, boolean asm) throws Failure {
+        String key = (asm ? "asm\n" : "fool\n")+source;
+        synchronized (programs) {
+            ExecutionPool pool = programs.get(key);
+            if (pool != null) return pool;
+        }
+        ObjectFile object;
+        try {
+            object = asm ? FOOLCompiler.assemble(source) : FOOLCompiler.build(source);
+        } catch (CompilationException e) {
+            throw new Failure(400, e.getMessage());
+        }
+        ExecutionPool pool = new ExecutionPool(new Program(object.getCode(), object.getFrameMaps(), JitCompiler.DEFAULT_THRESHOLD));
+        synchronized (programs) {
+            programs.putIfAbsent(key, pool);
+            return programs.get(key);
+        }
+    }
+
+    // output of a program, which fails past MAX_OUTPUT bytes
+    private static class LimitedOutput extends ByteArrayOutputStream {
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            if (count+len > MAX_OUTPUT) throw new IllegalStateException("Output larger than "+MAX_OUTPUT+" bytes");
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+    }
+
+    // a running VM, stopped by the watchdog at its deadline unless finished first
+    private static class Job {
+        private final ExecuteVM vm;
+        private boolean finished, timedOut;
+
+        Job(ExecuteVM vm) {
+            this.vm = vm;
+        }
+
+        synchronized void timeout() {
+            if (finished) return;
+            timedOut = true;
+            vm.stop();
+        }
+
+        synchronized boolean timedOut() {
+            return timedOut;
+        }
+
+        synchronized void finish() {
+            finished = true; // from now on vm can be reused
+        }
+    }
+
+    private static String run(ExecutionPool pool, long timeout, int stack, int heap) throws Failure {
+        boolean pooled = stack == ExecuteVM.DEFAULT_STACK_SIZE && heap == ExecuteVM.DEFAULT_HEAP_SIZE;
+        ExecuteVM vm = pooled ? pool.acquire() : new ExecuteVM(pool.getProgram(), stack, heap);
+        LimitedOutput output = new LimitedOutput();
+        vm.setOutput(new TextOutput(output));
+        Job job = new Job(vm);
+        ScheduledFuture<?> deadline = WATCHDOG.schedule(job::timeout, timeout, TimeUnit.MILLISECONDS);
+        String error = null;
+        try {
+            vm.cpuPredecoded();
+        } catch (RuntimeException | StackOverflowError e) {
+            error = job.timedOut() ? "Time limit of "+timeout+" ms exceeded" : e.getMessage() != null ? e.getMessage() : e.toString();
+        } finally {
+            deadline.cancel(false);
+            job.finish();
+            if (pooled) pool.release(vm);
+        }
+        String text = output.toString(StandardCharsets.UTF_8);
+        if (error != null) throw new Failure(422, text+"Error: "+error+"\n");
+        return text;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        new ExecutionServer(port, threads).start();
+        System.out.println("Running FOOL programs on http://localhost:"+port+"/run with "+threads+" threads.");
+    }
+
+}
@@ -0,0 +1,92 @@
+package compiler;
+
+import java.util.*;
+import org.antlr.v4.runtime.*;
+import compiler.lib.*;
+import compiler.exc.*;
+import svm.*;
+
+// Compiles and runs FOOL programs within the JVM: the generated code (svm.Code,
+// of the AST folded by ConstantFoldingASTVisitor, optimised by svm.Peephole) is
+// assembled directly, and nothing is written to disk (use ObjectFile.write()
+// or the listing to keep it).
+//   compile(source)  -> generated code, Code.toString() is its assembly text
+//   assemble(asm)    -> assembled program (code, frame maps, labels) of assembly text
+//   build(source)    -> assembled program of the generated code, with the FOOL
+//                       function names as debug info
+//   run(source)      -> builds the program and runs it on cpuPredecoded()
+// Errors throw CompilationException with the report of the failing phase.
+public final class FOOLCompiler {
+
+    private FOOLCompiler() {}
+
+    private static final class Generated {
+        final Code code;
+        final Map<String, String> functions; // entry label -> FOOL name
+
+        Generated(Code code, Map<String, String> functions) {
+            this.code = code;
+            this.functions = functions;
+        }
+    }
+
+    // reentrant: the state of a compilation is in its visitors (see BatchCompiler)
+    private static Generated generate(String source) throws CompilationException {
+        FOOLLexer lexer = new FOOLLexer(CharStreams.fromString(source));
+        FOOLParser parser = new FOOLParser(new CommonTokenStream(lexer));
+        Node ast = new ASTGenerationSTVisitor().visit(parser.prog());
+        if (lexer.lexicalErrors+parser.getNumberOfSyntaxErrors() > 0)
+            throw new CompilationException("You had "+lexer.lexicalErrors+" lexical errors and "+parser.getNumberOfSyntaxErrors()+" syntax errors.");
+        SymbolTableASTVisitor symtableVisitor = new SymbolTableASTVisitor();
+        symtableVisitor.visit(ast);
+        TypeCheckEASTVisitor typeChecker = new TypeCheckEASTVisitor();
+        String mainError = null;
+        try {
+            typeChecker.visit(ast);
+        } catch (IncomplException e) {
+            mainError = "Could not determine main program expression type due to errors detected before type checking.";
+        } catch (TypeException e) {
+            mainError = "Type checking error in main program expression: "+e.text;
+        }
+        if (symtableVisitor.stErrors+typeChecker.typeErrors > 0 || mainError != null)
+            throw new CompilationException((mainError == null ? "" : mainError+"\n")+"You had "+symtableVisitor.stErrors
+                +" symbol table errors and "+typeChecker.typeErrors+" type checking errors.");
+        ast = new ConstantFoldingASTVisitor().visit(ast);
+        CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor();
+        codeGenerator.visit(ast);
+        return new Generated(Peephole.optimise(codeGenerator.code()).code(), codeGenerator.functions());
+    }
+
+    public static Code compile(String source) throws CompilationException {
+        return generate(source).code;
+    }
+
+    public static ObjectFile assemble(String asm) throws CompilationException {
+        try {
+            return Assembler.assemble(asm);
+        } catch (IllegalArgumentException e) { // syntax error, undefined label
+            throw new CompilationException("Could not assemble: "+e.getMessage());
+        }
+    }
+
+    public static ObjectFile build(String source) throws CompilationException {
+        Generated generated = generate(source);
+        ObjectFile object = generated.code.assemble();
+        Map<Integer, String> functions = new HashMap<>();
+        generated.functions.forEach((label, name) -> functions.put(object.address(label), name));
+        return new ObjectFile(object.getCode(), object.getFrameMaps(), object.getSymbols(), functions);
+    }
+
+    // prints to out (null: System.out); false if stopped before halt (see ExecuteVM.cpuPredecoded())
+    public static boolean run(String source, Output out) throws CompilationException {
+        ObjectFile object = build(source);
+        ExecuteVM vm = new ExecuteVM(new Program(object.getCode(), object.getFrameMaps()), ExecuteVM.DEFAULT_STACK_SIZE, ExecuteVM.DEFAULT_HEAP_SIZE);
+        vm.setOutput(out);
+        return vm.cpuPredecoded();
+    }
+
+    public static boolean run(String source) throws CompilationException {
+        return run(source, null);
+    }
+
+}
@@ -0,0 +1,60 @@
+package compiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import compiler.exc.*;
+import svm.*;
+
+// Runs FOOL programs with heap limits down to below GarbageCollector.DEFAULT_NURSERY_SIZE,
+// on cpu(), cpuPredecoded() and the JIT, checking they print the same as with the
+// default heap: prints the time and the collector report of each limit.
+// usage: java compiler.GcBenchmark [-heap words,...] [file.fool ...] (default lists.fool)
+public class GcBenchmark {
+
+    private static final int[] HEAP_SIZES = {ExecuteVM.DEFAULT_HEAP_SIZE, 65536, 16384, 4096};
+    private static final String[] ENGINES = {"cpu", "cpuPredecoded", "jit"};
+
+    // output of the run, the collector report appended to report
+    private static String output(ObjectFile object, String engine, int heapSize, StringBuilder report) {
+        int jitThreshold = engine.equals("jit") ? JitCompiler.DEFAULT_THRESHOLD : 0;
+        ExecuteVM vm = new ExecuteVM(new Program(object.getCode(), object.getFrameMaps(), jitThreshold), ExecuteVM.DEFAULT_STACK_SIZE, heapSize);
+        MemoryOutput output = new MemoryOutput();
+        vm.setOutput(output);
+        if (engine.equals("cpu")) vm.cpu();
+        else vm.cpuPredecoded();
+        report.append(vm.getCollector().report());
+        return output.toString();
+    }
+
+    public static void main(String[] args) throws IOException, CompilationException {
+        int[] heapSizes = HEAP_SIZES;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-heap")) {
+            String[] sizes = args[1].split(",");
+            heapSizes = new int[sizes.length];
+            for (int i = 0; i < sizes.length; i++) heapSizes[i] = Integer.parseInt(sizes[i]);
+            first = 2;
+        }
+        String[] files = args.length == first ? new String[] {"lists.fool"} : Arrays.copyOfRange(args, first, args.length);
+        for (String f : files) {
+            ObjectFile object = FOOLCompiler.compile(Files.readString(Path.of(f), StandardCharsets.ISO_8859_1)).assemble();
+            String expected = output(object, "cpu", ExecuteVM.DEFAULT_HEAP_SIZE, new StringBuilder());
+            System.out.println(f+":");
+            for (int heapSize : heapSizes) {
+                StringBuilder report = new StringBuilder();
+                long start = System.nanoTime();
+                for (String engine : ENGINES) {
+                    report.setLength(0);
+                    String output = output(object, engine, heapSize, report);
+                    if (!output.equals(expected))
+                        throw new IllegalStateException(f+" prints "+output+" instead of "+expected+" on "+engine+" with a heap of "+heapSize+" words");
+                }
+                System.out.printf("heap %d words: %.1f ms (%d engines)%n%s%n", heapSize, (System.nanoTime()-start)/1e6, ENGINES.length, report);
+            }
+            System.out.println();
+        }
+    }
+
+}
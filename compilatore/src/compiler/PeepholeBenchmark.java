@@ -0,0 +1,46 @@
+package compiler;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import svm.*;
+
+// Runs FOOL programs compiled with and without svm.Peephole on the reference
+// cpu() loop with svm.Profiler, checking they print the same: prints the
+// matches of each rule and the instructions executed (a superinstruction
+// counting as one) with both codes.
+// usage: java compiler.PeepholeBenchmark [file.fool ...] (default quicksort.fool bankloan.fool peephole.fool)
+public class PeepholeBenchmark {
+
+    // instructions executed, the program output appended to out
+    private static long executed(Code code, StringBuilder out) {
+        ObjectFile object = code.assemble();
+        ExecuteVM vm = new ExecuteVM(new Program(object.getCode(), object.getFrameMaps()), ExecuteVM.DEFAULT_STACK_SIZE, ExecuteVM.DEFAULT_HEAP_SIZE);
+        MemoryOutput output = new MemoryOutput();
+        vm.setOutput(output);
+        Profiler profiler = new Profiler(object.getCode(), Map.of());
+        vm.setListener(profiler);
+        vm.cpu();
+        out.append(output);
+        return profiler.instructions();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) args = new String[] {"quicksort.fool", "bankloan.fool", "peephole.fool"};
+        for (String f : args) {
+            CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor();
+            codeGenerator.visit(CompilerBenchmark.frontEnd(Files.readString(Path.of(f), StandardCharsets.ISO_8859_1)));
+            Code code = codeGenerator.code();
+            Peephole optimised = Peephole.optimise(code);
+            StringBuilder expected = new StringBuilder(), output = new StringBuilder();
+            long before = executed(code, expected), after = executed(optimised.code(), output);
+            if (!output.toString().equals(expected.toString()))
+                throw new IllegalStateException("Optimised code of "+f+" prints "+output+" instead of "+expected);
+            System.out.println(f+":");
+            System.out.print(optimised.report());
+            System.out.printf("executed: %d instructions, %d before (-%.1f%%)%n%n", after, before, 100.0*(before-after)/before);
+        }
+    }
+
+}
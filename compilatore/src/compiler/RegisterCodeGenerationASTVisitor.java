@@ -0,0 +1,409 @@
+package compiler;
+
+import compiler.AST.*;
+import compiler.lib.*;
+import compiler.exc.*;
+import rvm.ExecuteRVM;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static compiler.lib.FOOLlib.*;
+
+// Generates code for the register machine (rvm.ExecuteRVM) instead of the SVM.
+// Every node leaves its value in register dest, chosen by its parent.
+// Registers are frame slots (see rvm.Opcodes): variables live in the registers
+// given by their STentry offsets, temporaries are allocated below the local
+// declarations with stack discipline (top is the next free one).
+// A call builds the callee frame directly in the caller's temporaries:
+// Control Link, arguments in reverse order and Access Link, in decreasing
+// addresses, exactly where the SVM would push them.
+public class RegisterCodeGenerationASTVisitor extends BaseASTVisitor<String, VoidException> {
+
+    private List<List<String>> dispatchTables = new ArrayList<>();
+    private String funCode = null; // per visitor: both backends may run on the same AST
+
+    private int dest; // register receiving the value of the visited node
+    private int top;  // next free temporary of the current frame
+    private int reg;  // register holding the value computed by operand()
+
+    // labels are numbered per visitor, i.e. per compilation: compilations can run in parallel
+    private int labCount = 0;
+    private int funlabCount = 0;
+
+    private String freshLabel() {
+        return "label"+(labCount++);
+    }
+
+    private String freshFunLabel() {
+        return "function"+(funlabCount++);
+    }
+
+    RegisterCodeGenerationASTVisitor() {}
+    RegisterCodeGenerationASTVisitor(boolean debug) {super(false,debug);} //enables print for debugging
+
+    // code leaving the value of n in rd; temporaries used by n are released
+    private String gen(Node n, int rd) {
+        int d = dest, t = top;
+        dest = rd;
+        String code = visit(n);
+        dest = d;
+        top = t;
+        return code;
+    }
+
+    // code leaving the value of n in a register, stored in reg: a variable of
+    // the current frame is used in place, anything else in a new temporary
+    private String operand(Node n) {
+        if (n instanceof IdNode && ((IdNode) n).nl == ((IdNode) n).entry.nl) {
+            reg = ((IdNode) n).entry.offset;
+            return null;
+        }
+        int r = top--;
+        String code = gen(n, r);
+        reg = r;
+        return code;
+    }
+
+    // code leaving in rd the frame (or object) d static links away from the current one
+    private String frame(int d, int rd) {
+        if (d == 0) return "lfp "+rd;
+        String code = "mov "+rd+" 0"; // Access Link
+        for (int i = 1; i < d; i++) code = nlJoin(code, "lw "+rd+" "+rd+" 0");
+        return code;
+    }
+
+    // code leaving in rd the variable at offset in the frame d static links away
+    private String variable(int d, int offset, int rd) {
+        if (d == 0) return "mov "+rd+" "+offset;
+        return nlJoin(frame(d, rd), "lw "+rd+" "+rd+" "+offset);
+    }
+
+    private String binary(String op, Node l, Node r) {
+        String lc = operand(l); int a = reg;
+        String rc = operand(r); int b = reg;
+        return nlJoin(lc, rc, op+" "+dest+" "+a+" "+b);
+    }
+
+    private String declarations(List<DecNode> declist) {
+        String code = null;
+        top = -2-declist.size();
+        for (int i = 0; i < declist.size(); i++) code = nlJoin(code, gen(declist.get(i), -2-i));
+        return code;
+    }
+
+    private String function(String label, List<DecNode> declist, int parameters, Node exp) {
+        int t = top;
+        String declCode = declarations(declist);
+        String expCode = operand(exp);
+        String code = nlJoin(
+            label+":", // Return Address already stored by call
+            declCode,
+            expCode,
+            "ret "+reg+" "+parameters
+        );
+        top = t;
+        return code;
+    }
+
+    // the caller's fp (Control Link) goes in cl, where the result will be returned,
+    // then the arguments; the Access Link and the target are left to the caller
+    private String call(int cl, List<Node> arglist) {
+        String code = "lfp "+cl;
+        for (int i = arglist.size()-1; i >= 0; i--) code = nlJoin(code, gen(arglist.get(i), top--));
+        return code;
+    }
+
+    // result register of a call: dest itself if nothing lies below it
+    private int callResult() {
+        return dest == top+1 ? dest : top--;
+    }
+
+    private String callEnd(int cl, int al, int target) {
+        return nlJoin(
+            "call "+al+" "+target, // callee frame starts at the Access Link
+            cl == dest ? null : "mov "+dest+" "+cl
+        );
+    }
+
+	@Override
+	public String visitNode(ProgLetInNode n) {
+		if (print) printNode(n);
+		String declCode = declarations(n.declist); // global frame: fp = MEMSIZE
+		String expCode = gen(n.exp, top--);
+		return nlJoin(
+			declCode,
+			expCode,
+			"halt",
+			funCode
+		);
+	}
+
+	@Override
+	public String visitNode(ProgNode n) {
+		if (print) printNode(n);
+		top = -2;
+		return nlJoin(
+			gen(n.exp, top--),
+			"halt"
+		);
+	}
+
+	@Override
+	public String visitNode(FunNode n) {
+		if (print) printNode(n,n.id);
+		String funl = freshFunLabel();
+		String code = function(funl, n.declist, n.parlist.size(), n.exp); // may add nested functions to funCode
+		funCode = nlJoin(funCode, "", code);
+		return "li "+dest+" "+funl;
+	}
+
+	@Override
+	public String visitNode(VarNode n) {
+		if (print) printNode(n,n.id);
+		return gen(n.exp, dest);
+	}
+
+	@Override
+	public String visitNode(PrintNode n) {
+		if (print) printNode(n);
+		return nlJoin(
+			gen(n.exp, dest),
+			"print "+dest
+		);
+	}
+
+	@Override
+	public String visitNode(IfNode n) {
+		if (print) printNode(n);
+		String lElse = freshLabel();
+		String lEnd = freshLabel();
+		int t = top;
+		String condCode = operand(n.cond);
+		int c = reg;
+		top = t;
+		return nlJoin(
+			condCode,
+			"beqz "+c+" "+lElse,
+			gen(n.th, dest),
+			"b "+lEnd,
+			lElse+":",
+			gen(n.el, dest),
+			lEnd+":"
+		);
+	}
+
+	@Override
+	public String visitNode(EqualNode n) {
+		if (print) printNode(n);
+		return binary("eq", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(LessEqualNode n) {
+		if (print) printNode(n);
+		return binary("leq", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(GreaterEqualNode n) {
+		if (print) printNode(n);
+		return binary("leq", n.right, n.left); // right evaluated first, as on the SVM
+	}
+
+	@Override
+	public String visitNode(AndNode n) {
+		if (print) printNode(n);
+		String lEnd = freshLabel();
+		return nlJoin(
+			gen(n.left, dest),
+			"beqz "+dest+" "+lEnd, // false: right not evaluated
+			gen(n.right, dest),
+			lEnd+":"
+		);
+	}
+
+	@Override
+	public String visitNode(OrNode n) {
+		if (print) printNode(n);
+		String lEnd = freshLabel();
+		return nlJoin(
+			gen(n.left, dest),
+			"bnez "+dest+" "+lEnd, // true: right not evaluated
+			gen(n.right, dest),
+			lEnd+":"
+		);
+	}
+
+	@Override
+	public String visitNode(NotNode n) {
+		if (print) printNode(n);
+		String expCode = operand(n.exp);
+		return nlJoin(
+			expCode,
+			"not "+dest+" "+reg
+		);
+	}
+
+	@Override
+	public String visitNode(TimesNode n) {
+		if (print) printNode(n);
+		return binary("mult", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(DivNode n) {
+		if (print) printNode(n);
+		return binary("div", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(PlusNode n) {
+		if (print) printNode(n);
+		if (n.right instanceof IntNode) {
+			String leftCode = operand(n.left);
+			return nlJoin(leftCode, "addi "+dest+" "+reg+" "+((IntNode) n.right).val);
+		}
+		return binary("add", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(MinusNode n) {
+		if (print) printNode(n);
+		if (n.right instanceof IntNode) {
+			String leftCode = operand(n.left);
+			return nlJoin(leftCode, "addi "+dest+" "+reg+" "+(-((IntNode) n.right).val));
+		}
+		return binary("sub", n.left, n.right);
+	}
+
+	@Override
+	public String visitNode(CallNode n) {
+		if (print) printNode(n,n.id);
+		int cl = callResult();
+		String argCode = call(cl, n.arglist);
+		int al = top--, target = top--;
+		String targetCode;
+		if (n.entry.offset < 0) // Caso di funzione locale
+			targetCode = "lw "+target+" "+al+" "+n.entry.offset; // address of "id" function
+		else // Caso di metodo: l'Access Link e' l'oggetto
+			targetCode = nlJoin(
+				"lw "+target+" "+al+" 0", // dispatch pointer
+				"lw "+target+" "+target+" "+n.entry.offset
+			);
+		return nlJoin(
+			argCode,
+			frame(n.nl-n.entry.nl, al), // frame containing "id" declaration
+			targetCode,
+			callEnd(cl, al, target)
+		);
+	}
+
+	@Override
+	public String visitNode(IdNode n) {
+		if (print) printNode(n,n.id);
+		return variable(n.nl-n.entry.nl, n.entry.offset, dest);
+	}
+
+	@Override
+	public String visitNode(BoolNode n) {
+		if (print) printNode(n,n.val.toString());
+		return "li "+dest+" "+(n.val?1:0);
+	}
+
+	@Override
+	public String visitNode(IntNode n) {
+		if (print) printNode(n,n.val.toString());
+		return "li "+dest+" "+n.val;
+	}
+
+    @Override
+    public String visitNode(MethodNode n){
+        if (print) printNode(n, n.id);
+        n.label = freshFunLabel();
+        String code = function(n.label, n.declist, n.parlist.size(), n.exp); // may add nested functions to funCode
+        funCode = nlJoin(funCode, "", code);
+        return null;
+    }
+
+    @Override
+    public String visitNode(ClassNode n){
+        if (print) printNode(n, n.id);
+        List<String> dispatchTable = new ArrayList<>();
+        if(n.superId!=null){
+            List<String> superTable = dispatchTables.get(-n.superEntry.offset-2);
+            for(String s : superTable){
+                dispatchTable.add(s);
+            }
+        }
+        for (int i = 0; i < n.methods.size() ; i++) {
+            visit(n.methods.get(i));
+            String nodeLabel = n.methods.get(i).label;
+            int nodeOffset = n.methods.get(i).offset;
+            while (dispatchTable.size() <= nodeOffset) dispatchTable.add(null);
+            dispatchTable.set(nodeOffset, nodeLabel);
+        }
+        dispatchTables.add(dispatchTable);
+        int t = top--;
+        String returnCode = "lhp "+dest; // dispatch pointer
+        for (int i = 0; i < dispatchTable.size(); i++) {
+            if (dispatchTable.get(i) == null) throw new RuntimeException("Dispatch table hole in class " + n.id);
+            returnCode = nlJoin(
+                returnCode,
+                "li "+t+" "+dispatchTable.get(i),
+                "sw "+t+" "+dest+" "+i
+            );
+        }
+        return nlJoin(
+            returnCode,
+            "addi "+t+" "+dest+" "+dispatchTable.size(),
+            "shp "+t
+        );
+    }
+
+    @Override
+    public String visitNode(EmptyNode n){
+        if (print) printNode(n);
+        return "li "+dest+" -1";
+    }
+
+    @Override
+    public String visitNode(ClassCallNode n){
+        if (print) printNode(n);
+        int cl = callResult();
+        String argCode = call(cl, n.arglist);
+        int al = top--, target = top--;
+        return nlJoin(
+                argCode,
+                variable(n.nl-n.entry.nl, n.entry.offset, al), // object: Access Link of the method
+                "lw "+target+" "+al+" 0", // dispatch pointer
+                "lw "+target+" "+target+" "+n.methodEntry.offset, // address of the method
+                callEnd(cl, al, target)
+        );
+    }
+
+    @Override
+    public String visitNode(NewNode n) {
+        if (print) printNode(n, n.id);
+        String argCode = null;
+        int[] args = new int[n.arglist.size()];
+        for (int i = 0 ; i < args.length ; i++){
+            argCode = nlJoin(argCode, operand(n.arglist.get(i)));
+            args[i] = reg;
+        }
+        int h = top--, t = top--;
+        String copyArg = "lhp "+h;
+        for (int i = 0; i < args.length; i++) // last argument at the lowest address, as on the SVM
+            copyArg = nlJoin(copyArg, "sw "+args[args.length-1-i]+" "+h+" "+i);
+        return nlJoin(
+                argCode,
+                copyArg,
+                "li "+t+" "+ExecuteRVM.MEMSIZE,
+                "lw "+t+" "+t+" "+n.entry.offset, //Dispatch pointer
+                "sw "+t+" "+h+" "+args.length, //Write dispatch pointer on heap
+                "addi "+dest+" "+h+" "+args.length, //Object pointer
+                "addi "+t+" "+dest+" 1",
+                "shp "+t
+        );
+    }
+}
@@ -1,6 +1,8 @@
 package compiler;
 
 import java.io.*;
+import java.nio.file.*;
+import java.util.*;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.tree.*;
 import compiler.lib.*;
@@ -11,6 +13,23 @@ public class Test {
     public static void main(String[] args) throws Exception {
    			
     	String fileName = "prova3.fool";
+    	boolean predecode = true; // false runs the reference cpu() loop
+    	boolean jit = false; // with predecode, compiles hot functions to JVM bytecode
+    	boolean registerVM = false; // true compiles for the register machine (rvm) instead of the SVM
+    	int stackSize = ExecuteVM.DEFAULT_STACK_SIZE; // SVM memory limits, in words
+    	int heapSize = ExecuteVM.DEFAULT_HEAP_SIZE;
+    	boolean offHeap = false; // keeps the SVM heap outside the Java heap (svm.OffHeapMemory)
+    	String heapFile = null; // with offHeap, file the heap is mapped to
+    	boolean gcReport = false; // prints allocation and garbage collection statistics after the run
+    	boolean verifyReport = false; // prints the stack depths proved by svm.Verifier (code it rejects runs on the reference loop)
+    	boolean cacheReport = false; // with predecode, prints the hit rates of the inline caches of method calls after the run
+    	boolean profile = false; // runs on the reference cpu() loop with svm.Profiler: prints its report and writes collapsed stacks to fileName+".folded"
+    	boolean constantFolding = true; // folds constant expressions in the AST with ConstantFoldingASTVisitor before generating code
+    	boolean peephole = true; // optimises the generated code with svm.Peephole before assembling it
+    	boolean peepholeReport = false; // with peephole, prints the matches of each rule
+    	boolean asmFile = true; // also writes the listing of the generated code to fileName+".asm" (it is assembled from memory, see svm.Code)
+    	boolean objectFile = false; // also writes the assembled program to fileName+".svmo" (svm.ObjectFile), to run it again without parsing
+    	String checkpointFile = null; // if set, runs resume from this snapshot of the VM after the initialisation (svm.Checkpoint), saved by the first run
 
     	CharStream chars = CharStreams.fromFileName(fileName);
     	FOOLLexer lexer = new FOOLLexer(chars);
@@ -37,8 +56,8 @@ public class Test {
     	System.out.println("");
 
     	System.out.println("Checking Types.");
+    	TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor();
     	try {
-    		TypeCheckEASTVisitor typeCheckVisitor = new TypeCheckEASTVisitor();
     		TypeNode mainType = typeCheckVisitor.visit(ast);
     		System.out.print("Type of main program expression is: ");
     		new PrintEASTVisitor().visit(mainType);
@@ -47,35 +66,90 @@ public class Test {
     	} catch (TypeException e) {
     		System.out.println("Type checking error in main program expression: "+e.text); 
     	}       	
-    	System.out.println("You had "+FOOLlib.typeErrors+" type checking errors.\n");
+    	System.out.println("You had "+typeCheckVisitor.typeErrors+" type checking errors.\n");
 
-    	int frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+FOOLlib.typeErrors;
+    	int frontEndErrors = lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()+symtableVisitor.stErrors+typeCheckVisitor.typeErrors;
 		System.out.println("You had a total of "+frontEndErrors+" front-end errors.\n");
 		
 		if ( frontEndErrors > 0) System.exit(1);   
 
+		if (constantFolding) {
+	    	System.out.println("Folding constants.");
+	    	ConstantFoldingASTVisitor folder = new ConstantFoldingASTVisitor();
+	    	ast = folder.visit(ast);
+	    	System.out.println("You had "+folder.folded+" expressions folded.\n");
+		}
+
+		if (registerVM) {
+	    	System.out.println("Generating register machine code.");
+	    	String code = new RegisterCodeGenerationASTVisitor().visit(ast);
+	    	BufferedWriter out = new BufferedWriter(new FileWriter(fileName+".rasm"));
+	    	out.write(code);
+	    	out.close();
+	    	System.out.println("");
+
+	    	System.out.println("Running generated code via Register Virtual Machine.");
+	    	new rvm.ExecuteRVM(rvm.Assembler.assemble(code)).cpu();
+	    	return;
+		}
+
     	System.out.println("Generating code.");
-    	String code = new CodeGenerationASTVisitor().visit(ast);        
-    	BufferedWriter out = new BufferedWriter(new FileWriter(fileName+".asm")); 
-    	out.write(code);
-    	out.close(); 
+    	CodeGenerationASTVisitor codeGenerator = new CodeGenerationASTVisitor();
+    	codeGenerator.visit(ast);
+    	Code code = codeGenerator.code();
+    	if (peephole) {
+    		Peephole optimised = Peephole.optimise(code);
+    		code = optimised.code();
+    		if (peepholeReport) System.out.print(optimised.report());
+    	}
+    	if (asmFile)
+    		try (Writer out = Files.newBufferedWriter(Paths.get(fileName+".asm"))) {
+    			code.write(out);
+    		}
     	System.out.println("");
 
     	System.out.println("Assembling generated code.");
-    	CharStream charsASM = CharStreams.fromFileName(fileName+".asm");
-    	SVMLexer lexerASM = new SVMLexer(charsASM);
-    	CommonTokenStream tokensASM = new CommonTokenStream(lexerASM);
-    	SVMParser parserASM = new SVMParser(tokensASM);
-
-    	parserASM.assembly();
-
-    	// needed only for debug
-    	System.out.println("You had: "+lexerASM.lexicalErrors+" lexical errors and "+parserASM.getNumberOfSyntaxErrors()+" syntax errors.\n");
-    	if (lexerASM.lexicalErrors+parserASM.getNumberOfSyntaxErrors()>0) System.exit(1);
+    	ObjectFile assembled = code.assemble();
+    	Map<Integer, String> functions = new HashMap<>(); // FOOL names of the function entries
+    	codeGenerator.functions().forEach((label, name) -> functions.put(assembled.address(label), name));
+    	if (objectFile) new ObjectFile(assembled.getCode(), assembled.getFrameMaps(), assembled.getSymbols(), functions).write(Paths.get(fileName+".svmo"));
+
+    	if (verifyReport) {
+    		try {
+    			System.out.print(Verifier.verify(assembled.getCode()).report());
+    		} catch (IllegalArgumentException e) {
+    			System.out.println("Verifier: "+e.getMessage());
+    		}
+    	}
 
     	System.out.println("Running generated code via Stack Virtual Machine.");
-    	ExecuteVM vm = new ExecuteVM(parserASM.code);
-    	vm.cpu();
+    	OffHeapMemory heap = !offHeap ? null : heapFile == null ? OffHeapMemory.allocate() : OffHeapMemory.map(Paths.get(heapFile));
+    	ExecuteVM vm = heap == null ? new ExecuteVM(assembled.getCode(), null, stackSize, heapSize)
+    		: new ExecuteVM(assembled.getCode(), null, stackSize, heapSize, heap);
+    	vm.getCollector().setFrameMaps(assembled.getFrameMaps());
+    	if (checkpointFile != null) { // the file must come from the same program
+    		Path snapshot = Paths.get(checkpointFile);
+    		int main = assembled.address("main");
+    		if (Files.exists(snapshot)) vm = Checkpoint.restore(snapshot);
+    		else if (main >= 0 && vm.cpuUntil(main)) Checkpoint.save(vm, snapshot);
+    	}
+    	if (jit) vm.setJit(new JitCompiler(assembled.getCode()));
+    	if (profile) {
+    		Profiler profiler = new Profiler(assembled.getCode(), functions);
+    		vm.setListener(profiler);
+    		vm.cpu();
+    		System.out.print(profiler.report());
+    		try (Writer folded = new FileWriter(fileName+".folded")) {
+    			profiler.writeCollapsed(folded);
+    		}
+    	}
+    	else if (predecode) vm.cpuPredecoded(); else vm.cpu();
+    	if (gcReport) System.out.println(vm.getCollector().report());
+    	if (cacheReport && vm.getInlineCache() != null) System.out.print(vm.getInlineCache().report());
+    	if (heap != null) {
+    		heap.force();
+    		heap.close();
+    	}
 
     }
 }
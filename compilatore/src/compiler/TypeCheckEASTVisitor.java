@@ -3,7 +3,6 @@ package compiler;
 import compiler.AST.*;
 import compiler.exc.*;
 import compiler.lib.*;
-import static compiler.TypeRels.*;
 
 //visitNode(n) fa il type checking di un Node n e ritorna:
 //- per una espressione, il suo tipo (oggetto BoolTypeNode o IntTypeNode)
@@ -13,6 +12,9 @@ import static compiler.TypeRels.*;
 //visitSTentry(s) ritorna, per una STentry s, il tipo contenuto al suo interno
 public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException> {
 
+	int typeErrors = 0; // type checking errors, main program expression included
+	private final TypeRels typeRels = new TypeRels();
+
 	TypeCheckEASTVisitor() { super(true); } // enables incomplete tree exceptions 
 	TypeCheckEASTVisitor(boolean debug) { super(true,debug); } // enables print for debugging
 
@@ -21,6 +23,16 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		visit(t);
 		return t;
 	} 
+
+	//type of the main program expression, counting its error
+	private TypeNode mainvisit(Node exp) throws TypeException {
+		try {
+			return visit(exp);
+		} catch (TypeException e) {
+			typeErrors++;
+			throw e;
+		}
+	}
 	
 	@Override
 	public TypeNode visitNode(ProgLetInNode n) throws TypeException {
@@ -30,15 +42,16 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 				visit(dec);
 			} catch (IncomplException e) { 
 			} catch (TypeException e) {
+				typeErrors++;
 				System.out.println("Type checking error in a declaration: " + e.text);
 			}
-		return visit(n.exp);
+		return mainvisit(n.exp);
 	}
 
 	@Override
 	public TypeNode visitNode(ProgNode n) throws TypeException {
 		if (print) printNode(n);
-		return visit(n.exp);
+		return mainvisit(n.exp);
 	}
 
 	@Override
@@ -49,9 +62,10 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 				visit(dec);
 			} catch (IncomplException e) { 
 			} catch (TypeException e) {
+				typeErrors++;
 				System.out.println("Type checking error in a declaration: " + e.text);
 			}
-		if ( !isSubtype(visit(n.exp),ckvisit(n.retType)) ) 
+		if ( !typeRels.isSubtype(visit(n.exp),ckvisit(n.retType)) ) 
 			throw new TypeException("Wrong return type for function " + n.id,n.getLine());
 		return null;
 	}
@@ -59,7 +73,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(VarNode n) throws TypeException {
 		if (print) printNode(n,n.id);
-		if ( !isSubtype(visit(n.exp),ckvisit(n.getType())) )
+		if ( !typeRels.isSubtype(visit(n.exp),ckvisit(n.getType())) )
 			throw new TypeException("Incompatible value for variable " + n.id,n.getLine());
 		return null;
 	}
@@ -73,16 +87,16 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(IfNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.cond), new BoolTypeNode())) )
+		if ( !(typeRels.isSubtype(visit(n.cond), new BoolTypeNode())) )
 			throw new TypeException("Non boolean condition in if",n.getLine());
 		TypeNode t = visit(n.th);
 		TypeNode e = visit(n.el);
-        if(isSubtype(t, e)) return e;
-        if(isSubtype(e, t)) return t;
-        if(lowestCommonAncestor(t,e)==null){
+        if(typeRels.isSubtype(t, e)) return e;
+        if(typeRels.isSubtype(e, t)) return t;
+        if(typeRels.lowestCommonAncestor(t,e)==null){
             throw new TypeException("No lowest common ancestor was found",n.getLine());
         } else {
-            return lowestCommonAncestor(t,e);
+            return typeRels.lowestCommonAncestor(t,e);
         }
 	}
 
@@ -91,7 +105,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
+		if ( !(typeRels.isSubtype(l, r) || typeRels.isSubtype(r, l)) )
 			throw new TypeException("Incompatible types in equal",n.getLine());
 		return new BoolTypeNode();
 	}
@@ -101,7 +115,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
+		if ( !(typeRels.isSubtype(l, r) || typeRels.isSubtype(r, l)) )
 			throw new TypeException("Incompatible types in less equal",n.getLine());
 		return new BoolTypeNode();
 	}
@@ -111,7 +125,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
+		if ( !(typeRels.isSubtype(l, r) || typeRels.isSubtype(r, l)) )
 			throw new TypeException("Incompatible types in great equal",n.getLine());
 		return new BoolTypeNode();
 	}
@@ -121,7 +135,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
+		if ( !(typeRels.isSubtype(l, r) || typeRels.isSubtype(r, l)) )
 			throw new TypeException("Incompatible types in and relation",n.getLine());
 		return new BoolTypeNode();
 	}
@@ -131,7 +145,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if (print) printNode(n);
 		TypeNode l = visit(n.left);
 		TypeNode r = visit(n.right);
-		if ( !(isSubtype(l, r) || isSubtype(r, l)) )
+		if ( !(typeRels.isSubtype(l, r) || typeRels.isSubtype(r, l)) )
 			throw new TypeException("Incompatible types in or relation",n.getLine());
 		return new BoolTypeNode();
 	}
@@ -140,7 +154,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	public TypeNode visitNode(NotNode n) throws  TypeException {
 		if (print) printNode(n);
 
-		if(!(isSubtype(visit(n.exp),new BoolTypeNode())))
+		if(!(typeRels.isSubtype(visit(n.exp),new BoolTypeNode())))
 			throw new TypeException("Non boolean argument in not relation", n.getLine());
 		return new BoolTypeNode();
 	}
@@ -148,8 +162,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(TimesNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
+		if ( !(typeRels.isSubtype(visit(n.left), new IntTypeNode())
+				&& typeRels.isSubtype(visit(n.right), new IntTypeNode())) )
 			throw new TypeException("Non integers in multiplication",n.getLine());
 		return new IntTypeNode();
 	}
@@ -157,8 +171,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(DivNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
+		if ( !(typeRels.isSubtype(visit(n.left), new IntTypeNode())
+				&& typeRels.isSubtype(visit(n.right), new IntTypeNode())) )
 			throw new TypeException("Non integers in division",n.getLine());
 		return new IntTypeNode();
 	}
@@ -166,8 +180,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(PlusNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
+		if ( !(typeRels.isSubtype(visit(n.left), new IntTypeNode())
+				&& typeRels.isSubtype(visit(n.right), new IntTypeNode())) )
 			throw new TypeException("Non integers in sum",n.getLine());
 		return new IntTypeNode();
 	}
@@ -175,8 +189,8 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 	@Override
 	public TypeNode visitNode(MinusNode n) throws TypeException {
 		if (print) printNode(n);
-		if ( !(isSubtype(visit(n.left), new IntTypeNode())
-				&& isSubtype(visit(n.right), new IntTypeNode())) )
+		if ( !(typeRels.isSubtype(visit(n.left), new IntTypeNode())
+				&& typeRels.isSubtype(visit(n.right), new IntTypeNode())) )
 			throw new TypeException("Non integers in subtraction",n.getLine());
 		return new IntTypeNode();
 	}
@@ -191,7 +205,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
 		if ( !(at.parlist.size() == n.arglist.size()) )
 			throw new TypeException("Wrong number of parameters in the invocation of "+n.id,n.getLine());
 		for (int i = 0; i < n.arglist.size(); i++)
-			if ( !(isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
+			if ( !(typeRels.isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
 				throw new TypeException("Wrong type for "+(i+1)+"-th parameter in the invocation of "+n.id,n.getLine());
 		return at.ret;
 	}
@@ -257,9 +271,10 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
                 visit(dec);
             } catch (IncomplException e) {
             } catch (TypeException e) {
+                typeErrors++;
                 System.out.println("Type checking error in a declaration: " + e.text);
             }
-        if ( !isSubtype(visit(n.exp),ckvisit(n.retType)) )
+        if ( !typeRels.isSubtype(visit(n.exp),ckvisit(n.retType)) )
             throw new TypeException("Wrong return type for method " + n.id,n.getLine());
         return null;
     }
@@ -268,13 +283,14 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
     public TypeNode visitNode(ClassNode n) throws TypeException {
         if (print) printNode(n,n.id);
         if(n.superId != null){
-            superType.put(n.id,n.superId);
+            typeRels.superType.put(n.id,n.superId);
         }
         for(Node method : n.methods){
             try {
                 visit(method);
             } catch (IncomplException e) {
             } catch (TypeException e) {
+                typeErrors++;
                 System.out.println("Type checking error in a method: " + e.text);
             }
         }
@@ -285,7 +301,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
                 for (FieldNode f : n.fields) {
                     posField = -f.offset-1;
                     if (posField >= 0 && posField < parentCT.allFields.size()) {
-                        if (!isSubtype(f.getType(), parentCT.allFields.get(posField))) {
+                        if (!typeRels.isSubtype(f.getType(), parentCT.allFields.get(posField))) {
                             throw new TypeException("Wrong type for overridden field " + n.id, n.getLine());
                         }
                     }
@@ -293,7 +309,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
                 for (MethodNode m : n.methods) {
                     posMethod = m.offset;
                     if (posMethod < parentCT.allMethods.size()) {
-                        if (!isSubtype(ctn.allMethods.get(posMethod), parentCT.allMethods.get(posMethod))) {
+                        if (!typeRels.isSubtype(ctn.allMethods.get(posMethod), parentCT.allMethods.get(posMethod))) {
                             throw new TypeException("Wrong type for overridden method " + n.id, n.getLine());
                         }
                     }
@@ -313,7 +329,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
         if ( !(at.parlist.size() == n.arglist.size()) )
             throw new TypeException("Wrong number of parameters in the invocation of "+n.methodId,n.getLine());
         for (int i = 0; i < n.arglist.size(); i++)
-            if ( !(isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
+            if ( !(typeRels.isSubtype(visit(n.arglist.get(i)),at.parlist.get(i))) )
                 throw new TypeException("Wrong type for "+(i+1)+"-th parameter in the invocation of "+n.methodId,n.getLine());
         return at.ret;
     }
@@ -328,7 +344,7 @@ public class TypeCheckEASTVisitor extends BaseEASTVisitor<TypeNode,TypeException
         if ( !(ct.allFields.size() == n.arglist.size()) )
             throw new TypeException("Wrong number of fields in the creation of a new object of class "+n.id,n.getLine());
         for (int i = 0; i < n.arglist.size(); i++)
-            if ( !(isSubtype(visit(n.arglist.get(i)),ct.allFields.get(i))) )
+            if ( !(typeRels.isSubtype(visit(n.arglist.get(i)),ct.allFields.get(i))) )
                 throw new TypeException("Wrong type for "+(i+1)+"-th field in the creation of a new object of class "+n.id,n.getLine());
         return new RefTypeNode(n.id);
     }
@@ -6,12 +6,14 @@ import compiler.lib.*;
 import java.util.HashMap;
 import java.util.Map;
 
+// relazioni tra i tipi di una compilazione: un'istanza per TypeCheckEASTVisitor,
+// cosi' piu' programmi possono essere compilati insieme (vedi BatchCompiler)
 public class TypeRels {
 
-    public static Map<String, String> superType = new HashMap<>();    //definisce la gerarchia dei tipi riferimento
+    final Map<String, String> superType = new HashMap<>();    //definisce la gerarchia dei tipi riferimento
 
 	// valuta se il tipo "a" e' <= al tipo "b", dove "a" e "b" sono tipi di base: IntTypeNode o BoolTypeNode
-    public static boolean isSubtype(TypeNode a, TypeNode b) {
+    public boolean isSubtype(TypeNode a, TypeNode b) {
 
         if (a == null || b == null) return false;
 
@@ -24,7 +26,7 @@ public class TypeRels {
         return a.getClass().equals(b.getClass()) || ((a instanceof BoolTypeNode) && (b instanceof IntTypeNode));
     }
 
-    public static TypeNode lowestCommonAncestor(TypeNode a, TypeNode b) {
+    public TypeNode lowestCommonAncestor(TypeNode a, TypeNode b) {
         if(a instanceof EmptyTypeNode){
             return b;
         } else if(b instanceof EmptyTypeNode){
@@ -49,7 +51,7 @@ public class TypeRels {
         return null;
     }
 
-    private static boolean checkRefType(TypeNode a, TypeNode b) {
+    private boolean checkRefType(TypeNode a, TypeNode b) {
         if (a instanceof RefTypeNode && b instanceof RefTypeNode) {
             RefTypeNode rtn = (RefTypeNode) a;
             if(rtn.id.equals(((RefTypeNode) b).id)) {
@@ -69,7 +71,7 @@ public class TypeRels {
     }
 
     // Tipo dei parametri controvariante, mentre tipo di output covariante
-    private static boolean checkArrowType(TypeNode a, TypeNode b) {
+    private boolean checkArrowType(TypeNode a, TypeNode b) {
         if(a instanceof ArrowTypeNode && b instanceof ArrowTypeNode) {
             ArrowTypeNode artnA = (ArrowTypeNode) a;
             ArrowTypeNode artnB = (ArrowTypeNode) b;
@@ -0,0 +1,13 @@
+package compiler.exc;
+
+// errors found compiling or assembling a program (see compiler.FOOLCompiler),
+// with the report of the phase that failed as message
+public class CompilationException extends Exception {
+
+	private static final long serialVersionUID = 1L;
+
+	public CompilationException(String message) {
+		super(message);
+	}
+
+}
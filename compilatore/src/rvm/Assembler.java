@@ -0,0 +1,59 @@
+package rvm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Assembles the text produced by compiler.RegisterCodeGenerationASTVisitor:
+// one instruction per line ("add -4 -4 -5"), labels defined as "name:".
+public class Assembler {
+
+    public static int[] assemble(String text) {
+        List<int[]> instructions = new ArrayList<>();
+        Map<String,Integer> labelDef = new HashMap<>();
+        Map<Integer,String> labelRef = new HashMap<>(); // code index -> label
+        int line = 0;
+        for (String s : text.split("\n")) {
+            line++;
+            String[] w = s.trim().split("\\s+");
+            if (w[0].isEmpty()) continue;
+            if (w.length == 1 && w[0].endsWith(":")) {
+                if (labelDef.put(w[0].substring(0, w[0].length()-1), instructions.size()*Opcodes.WIDTH) != null)
+                    throw new IllegalArgumentException("Label "+w[0]+" defined twice at line "+line);
+                continue;
+            }
+            int op = Opcodes.fromName(w[0]);
+            if (op < 0) throw new IllegalArgumentException("Unknown instruction "+w[0]+" at line "+line);
+            String format = Opcodes.FORMATS[op];
+            if (w.length != format.length()+1)
+                throw new IllegalArgumentException("Wrong number of operands for "+w[0]+" at line "+line);
+            int[] instr = new int[Opcodes.WIDTH];
+            instr[0] = op;
+            for (int j = 0; j < format.length(); j++) {
+                String arg = w[j+1];
+                if (format.charAt(j) == 'k' && !arg.matches("-?[0-9]+"))
+                    labelRef.put(instructions.size()*Opcodes.WIDTH+j+1, arg);
+                else try {
+                    instr[j+1] = Integer.parseInt(arg);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid operand "+arg+" at line "+line);
+                }
+            }
+            instructions.add(instr);
+        }
+        int[] code = new int[instructions.size()*Opcodes.WIDTH];
+        for (int i = 0; i < instructions.size(); i++)
+            System.arraycopy(instructions.get(i), 0, code, i*Opcodes.WIDTH, Opcodes.WIDTH);
+        for (Map.Entry<Integer,String> ref : labelRef.entrySet()) {
+            Integer address = labelDef.get(ref.getValue());
+            if (address == null) throw new IllegalArgumentException("Undefined label "+ref.getValue());
+            code[ref.getKey()] = address;
+        }
+        return code;
+    }
+
+    public static int[] assembleFile(String fileName) throws IOException {
+        return assemble(Files.readString(Path.of(fileName)));
+    }
+
+}
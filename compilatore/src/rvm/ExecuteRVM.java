@@ -0,0 +1,123 @@
+package rvm;
+
+import static rvm.Opcodes.*;
+
+// Register machine: a single memory with the heap growing up from 0 and
+// frames growing down from MEMSIZE (global frame at MEMSIZE), the layout the
+// SVM had before its stack and heap were split into separate segments.
+public class ExecuteRVM {
+
+    public static final int MEMSIZE = 10000;
+
+    private int[] code;
+    private int[] memory = new int[MEMSIZE];
+
+    private int ip = 0;
+    private int fp = MEMSIZE;
+    private int hp = 0;
+
+    public ExecuteRVM(int[] code) {
+      this.code = code;
+    }
+
+    public void cpu() {
+      while ( true ) {
+        int a = code[ip+1], b = code[ip+2], c = code[ip+3];
+        switch ( code[ip] ) {
+          case LI:
+            memory[fp+a] = b;
+            ip += WIDTH;
+            break;
+          case MOV:
+            memory[fp+a] = memory[fp+b];
+            ip += WIDTH;
+            break;
+          case ADD:
+            memory[fp+a] = memory[fp+b] + memory[fp+c];
+            ip += WIDTH;
+            break;
+          case SUB:
+            memory[fp+a] = memory[fp+b] - memory[fp+c];
+            ip += WIDTH;
+            break;
+          case MULT:
+            memory[fp+a] = memory[fp+b] * memory[fp+c];
+            ip += WIDTH;
+            break;
+          case DIV:
+            memory[fp+a] = memory[fp+b] / memory[fp+c];
+            ip += WIDTH;
+            break;
+          case ADDI:
+            memory[fp+a] = memory[fp+b] + c;
+            ip += WIDTH;
+            break;
+          case EQ:
+            memory[fp+a] = (memory[fp+b] == memory[fp+c]) ? 1 : 0;
+            ip += WIDTH;
+            break;
+          case LEQ:
+            memory[fp+a] = (memory[fp+b] <= memory[fp+c]) ? 1 : 0;
+            ip += WIDTH;
+            break;
+          case NOT:
+            memory[fp+a] = (memory[fp+b] == 0) ? 1 : 0;
+            ip += WIDTH;
+            break;
+          case LW:
+            memory[fp+a] = memory[memory[fp+b] + c];
+            ip += WIDTH;
+            break;
+          case SW:
+            memory[memory[fp+b] + c] = memory[fp+a];
+            ip += WIDTH;
+            break;
+          case LFP:
+            memory[fp+a] = fp;
+            ip += WIDTH;
+            break;
+          case LHP:
+            memory[fp+a] = hp;
+            ip += WIDTH;
+            break;
+          case SHP:
+            hp = memory[fp+a];
+            ip += WIDTH;
+            break;
+          case B:
+            ip = a;
+            break;
+          case BEQZ:
+            ip = (memory[fp+a] == 0) ? b : ip+WIDTH;
+            break;
+          case BNEZ:
+            ip = (memory[fp+a] != 0) ? b : ip+WIDTH;
+            break;
+          case CALL: { // the caller stored its fp above the arguments (Control Link)
+            int target = memory[fp+b]; // read before the new frame overwrites it
+            fp += a;
+            memory[fp-1] = ip+WIDTH; // Return Address
+            ip = target;
+            break;
+          }
+          case RET: { // the result replaces the Control Link, in a caller register
+            int result = memory[fp+a];
+            int cl = fp+b+1;
+            ip = memory[fp-1];
+            fp = memory[cl];
+            memory[cl] = result;
+            break;
+          }
+          case PRINT:
+            System.out.println(memory[fp+a]);
+            ip += WIDTH;
+            break;
+          case HALT:
+            return;
+          default:
+            throw new IllegalStateException("Invalid instruction at address "+ip);
+        }
+      }
+    }
+
+}
@@ -0,0 +1,53 @@
+package rvm;
+
+// Instruction set of the register machine executed by ExecuteRVM.
+// Every instruction takes 4 ints (opcode and up to 3 operands), so code
+// addresses (branch targets, function labels) are multiples of 4.
+// Registers are frame slots: register r is memory[fp+r]. A frame has the same
+// layout as an SVM frame (access link at 0, parameters at 1..n, return address
+// at -1, local declarations from -2 downwards) followed, further down, by the
+// temporaries of the function: no value ever has to be pushed or popped.
+public class Opcodes {
+
+    public static final int LI = 0;     // li rd k       rd = k (k may be a label)
+    public static final int MOV = 1;    // mov rd rs     rd = rs
+    public static final int ADD = 2;    // add rd ra rb  rd = ra + rb
+    public static final int SUB = 3;    // sub rd ra rb  rd = ra - rb
+    public static final int MULT = 4;   // mult rd ra rb rd = ra * rb
+    public static final int DIV = 5;    // div rd ra rb  rd = ra / rb
+    public static final int ADDI = 6;   // addi rd rs k  rd = rs + k
+    public static final int EQ = 7;     // eq rd ra rb   rd = ra == rb ? 1 : 0
+    public static final int LEQ = 8;    // leq rd ra rb  rd = ra <= rb ? 1 : 0
+    public static final int NOT = 9;    // not rd rs     rd = rs == 0 ? 1 : 0
+    public static final int LW = 10;    // lw rd rs k    rd = memory[rs+k]
+    public static final int SW = 11;    // sw rs rb k    memory[rb+k] = rs
+    public static final int LFP = 12;   // lfp rd        rd = fp
+    public static final int LHP = 13;   // lhp rd        rd = hp
+    public static final int SHP = 14;   // shp rs        hp = rs
+    public static final int B = 15;     // b l
+    public static final int BEQZ = 16;  // beqz rs l     if rs == 0 jump to l
+    public static final int BNEZ = 17;  // bnez rs l     if rs != 0 jump to l
+    public static final int CALL = 18;  // call ra rt    callee frame at fp+ra (ra holds the access link), jump to rt
+    public static final int RET = 19;   // ret rs n      return rs to the caller of a function with n parameters
+    public static final int PRINT = 20; // print rs
+    public static final int HALT = 21;  // halt
+
+    public static final int WIDTH = 4; // ints per instruction
+
+    public static final String[] NAMES = {
+        "li", "mov", "add", "sub", "mult", "div", "addi", "eq", "leq", "not", "lw", "sw",
+        "lfp", "lhp", "shp", "b", "beqz", "bnez", "call", "ret", "print", "halt"
+    };
+
+    // operand kinds of each instruction: r = register, k = integer or label
+    public static final String[] FORMATS = {
+        "rk", "rr", "rrr", "rrr", "rrr", "rrr", "rrk", "rrr", "rrr", "rr", "rrk", "rrk",
+        "r", "r", "r", "k", "rk", "rk", "rr", "rk", "r", ""
+    };
+
+    public static int fromName(String name) {
+        for (int op = 0; op < NAMES.length; op++) if (NAMES[op].equals(name)) return op;
+        return -1;
+    }
+
+}
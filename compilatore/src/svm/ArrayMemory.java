@@ -0,0 +1,61 @@
+package svm;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+// Heap words in an int[], replaced by a larger copy when grown.
+public class ArrayMemory extends Memory {
+
+    private int[] words;
+
+    public ArrayMemory(int initialSize) {
+        words = new int[initialSize];
+    }
+
+    @Override
+    int load(int address) {
+        return words[address];
+    }
+
+    @Override
+    void store(int address, int value) {
+        words[address] = value;
+    }
+
+    @Override
+    int size() {
+        return words.length;
+    }
+
+    @Override
+    void grow(int size) {
+        if (size > words.length) words = Arrays.copyOf(words, size);
+    }
+
+    @Override
+    void clear(int n) {
+        Arrays.fill(words, 0, n, 0);
+    }
+
+    @Override
+    void copy(int from, Memory dest, int to, int n) {
+        if (dest instanceof ArrayMemory) System.arraycopy(words, from, ((ArrayMemory) dest).words, to, n);
+        else super.copy(from, dest, to, n);
+    }
+
+    @Override
+    void get(int address, int n, IntBuffer to) {
+        to.put(words, address, n);
+    }
+
+    @Override
+    void put(IntBuffer from, int address, int n) {
+        from.get(words, address, n);
+    }
+
+    @Override
+    Memory toSpace() {
+        return new ArrayMemory(0);
+    }
+
+}
@@ -0,0 +1,182 @@
+package svm;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Hand-written assembler for SVM assembly text, producing the same code as
+// SVM.g4 (SVMParser) without buffering tokens: the text is read once, in
+// chunks through NIO, straight into a Code (which resolves labels and fuses
+// superinstructions as SVMParser does). Much faster than SVMParser on large
+// inputs, see AssemblerBenchmark.
+// Syntax errors throw IllegalArgumentException with their line.
+public final class Assembler {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EOF = -1;
+
+    // SVMParser token of each mnemonic (instructions, superinstructions and gcmap)
+    private static final Map<String,Integer> MNEMONICS = new HashMap<>();
+    static {
+        for (int t = 1; t <= SVMParser.VOCABULARY.getMaxTokenType(); t++) {
+            String name = SVMParser.VOCABULARY.getLiteralName(t);
+            if (name != null && Character.isLetter(name.charAt(1))) MNEMONICS.put(name.substring(1, name.length()-1), t);
+        }
+    }
+
+    private final ReadableByteChannel in;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder word = new StringBuilder();
+    private final Code code = new Code();
+    private int line = 1;
+    private int start; // line of the instruction being read
+
+    private Assembler(ReadableByteChannel in) {
+        this.in = in;
+        buffer.flip();
+    }
+
+    public static ObjectFile assemble(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return assemble(channel);
+        }
+    }
+
+    public static ObjectFile assemble(ReadableByteChannel in) throws IOException {
+        Assembler a = new Assembler(in);
+        a.assembly();
+        return a.code.assemble();
+    }
+
+    public static ObjectFile assemble(String text) {
+        try {
+            return assemble(Channels.newChannel(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int peek() throws IOException {
+        while (!buffer.hasRemaining()) {
+            buffer.clear();
+            int n = in.read(buffer);
+            buffer.flip();
+            if (n < 0) return EOF;
+        }
+        return buffer.get(buffer.position()) & 0xff;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c != EOF) buffer.get();
+        return c;
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message+" at line "+start);
+    }
+
+    private static boolean isLetter(int c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // skips white space and comments, returns the next character
+    private int skip() throws IOException {
+        for (;;) {
+            int c = peek();
+            if (c == '\n') line++;
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r') read();
+            else if (c == '/') {
+                read();
+                if (read() != '*') throw new IllegalArgumentException("Invalid character / at line "+line);
+                int p = 0;
+                for (int d = read(); p != '*' || d != '/'; p = d, d = read()) {
+                    if (d == EOF) throw new IllegalArgumentException("Unterminated comment at line "+line);
+                    if (d == '\n') line++;
+                }
+            } else return c;
+        }
+    }
+
+    // a mnemonic or a label (superinstruction mnemonics contain '_')
+    private String word() throws IOException {
+        word.setLength(0);
+        for (int c = peek(); isLetter(c) || isDigit(c) || c == '_'; c = peek()) word.append((char) read());
+        return word.toString();
+    }
+
+    private String label() throws IOException {
+        if (!isLetter(skip())) throw error("Label expected");
+        String l = word();
+        if (l.indexOf('_') >= 0 || MNEMONICS.containsKey(l)) throw error("Invalid label "+l);
+        return l;
+    }
+
+    // as INTEGER in SVM.g4: '0' | '-'? [1-9][0-9]*
+    private int integer() throws IOException {
+        boolean negative = skip() == '-';
+        if (negative) read();
+        if (!isDigit(peek())) throw error("Integer expected");
+        long n = read()-'0';
+        if (n == 0 && (negative || isDigit(peek()))) throw error("Invalid integer");
+        while (isDigit(peek())) {
+            n = 10*n+read()-'0';
+            if (n > (negative ? 1L << 31 : Integer.MAX_VALUE)) throw error("Integer out of range");
+        }
+        if (isLetter(peek()) || peek() == '_') throw error("Invalid integer");
+        return (int) (negative ? -n : n);
+    }
+
+    private void assembly() throws IOException {
+        for (int c = skip(); c != EOF; c = skip()) {
+            start = line;
+            if (!isLetter(c)) throw error("Invalid character "+(char) c);
+            String w = word();
+            Integer op = MNEMONICS.get(w);
+            if (op == null) { // label definition
+                if (w.indexOf('_') >= 0 || skip() != ':') throw error("Unknown instruction "+w);
+                read();
+                code.label(w);
+                continue;
+            }
+            switch (op) {
+                case SVMParser.PUSH:
+                    if (isLetter(skip())) code.push(label());
+                    else code.push(integer());
+                    break;
+                case SVMParser.BRANCH: case SVMParser.BRANCHEQ: case SVMParser.BRANCHLESSEQ:
+                    code.emit(op, label());
+                    break;
+                case SVMParser.VCALL:
+                    code.emit(op, integer());
+                    break;
+                case SVMParser.GCMAP: {
+                    String l = label();
+                    int[] map = new int[8];
+                    int n = 0;
+                    do {
+                        if (n == map.length) map = Arrays.copyOf(map, 2*n);
+                        map[n++] = integer();
+                    } while (skip() == '-' || isDigit(peek()));
+                    code.frameMap(l, Arrays.copyOf(map, n));
+                    break;
+                }
+                default: {
+                    int j = Superinstructions.index(op);
+                    if (j >= 0 && Superinstructions.hasOperand(j)) {
+                        if (Superinstructions.isBranch(j)) code.emit(op, label());
+                        else code.emit(op, integer());
+                    } else code.emit(op);
+                }
+            }
+        }
+    }
+
+}
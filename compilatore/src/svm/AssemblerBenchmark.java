@@ -0,0 +1,89 @@
+package svm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+import org.antlr.v4.runtime.*;
+
+// Times Assembler against SVMParser on large assembly files, after checking
+// that both produce the same code and frame maps. Each input (.asm files
+// produced by compiler.Test) is repeated, with its labels renamed in each
+// copy, up to the given size in megabytes (default 4).
+// usage: java svm.AssemblerBenchmark [-mb size] file.asm ...
+public class AssemblerBenchmark {
+
+    private static final Pattern WORD = Pattern.compile("[a-zA-Z][a-zA-Z0-9_]*");
+
+    // copies of text, each with its own labels, up to bytes
+    static String repeat(String text, long bytes) {
+        Set<String> mnemonics = new HashSet<>();
+        for (int t = 1; t <= SVMParser.VOCABULARY.getMaxTokenType(); t++) {
+            String name = SVMParser.VOCABULARY.getLiteralName(t);
+            if (name != null) mnemonics.add(name.substring(1, name.length()-1));
+        }
+        StringBuilder b = new StringBuilder();
+        for (int copy = 0; b.length() < bytes; copy++) {
+            Matcher m = WORD.matcher(text);
+            int last = 0;
+            while (m.find()) {
+                b.append(text, last, m.end());
+                if (!mnemonics.contains(m.group())) b.append('c').append(copy);
+                last = m.end();
+            }
+            b.append(text, last, text.length()).append('\n');
+        }
+        return b.toString();
+    }
+
+    static SVMParser parse(Path file) throws IOException {
+        SVMLexer lexer = new SVMLexer(CharStreams.fromPath(file));
+        SVMParser parser = new SVMParser(new CommonTokenStream(lexer));
+        parser.assembly();
+        if (lexer.lexicalErrors+parser.getNumberOfSyntaxErrors() > 0)
+            throw new IllegalArgumentException("Could not assemble "+file);
+        return parser;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long bytes = 4 << 20;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-mb")) {
+            bytes = Long.parseLong(args[1]) << 20;
+            first = 2;
+        }
+        for (int f = first; f < args.length; f++) {
+            Path file = Files.createTempFile("svm", ".asm");
+            try {
+                Files.writeString(file, repeat(Files.readString(Path.of(args[f])), bytes));
+                SVMParser parser = parse(file);
+                ObjectFile object = Assembler.assemble(file);
+                if (!Arrays.equals(parser.code, object.getCode()) || !Arrays.deepEquals(parser.frameMaps, object.getFrameMaps()))
+                    throw new IllegalStateException("Assembler output differs from SVMParser on "+args[f]);
+                Runnable[] assemblers = {
+                    () -> {
+                        try {
+                            parse(file);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    },
+                    () -> {
+                        try {
+                            Assembler.assemble(file);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                };
+                double[] ns = Benchmark.measure(assemblers, 1);
+                double mb = Files.size(file)/(double) (1 << 20);
+                System.out.printf("%-24s %6.1f MB  SVMParser %8.1f ms (%6.1f MB/s)  Assembler %8.1f ms (%6.1f MB/s)  x%.1f%n",
+                    args[f], mb, ns[0]/1e6, mb/ns[0]*1e9, ns[1]/1e6, mb/ns[1]*1e9, ns[0]/ns[1]);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+}
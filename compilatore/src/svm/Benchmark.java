@@ -0,0 +1,89 @@
+package svm;
+
+import java.io.*;
+import org.antlr.v4.runtime.*;
+
+// Runs assembled programs (.asm files produced by compiler.Test) repeatedly on
+// each execution engine of ExecuteVM and reports the average time per run.
+// usage: java svm.Benchmark [-n runs] file.asm ...
+public class Benchmark {
+
+    interface Engine {
+        void run(int[] code, int[] decoded);
+    }
+
+    private static final String[] ENGINES = {"cpu", "cpuPredecoded", "cpuPooled", "cpuTiered"};
+
+    private static Engine engine(String name, int[] program) {
+        switch (name) {
+            case "cpu": return (code, decoded) -> new ExecuteVM(code).cpu();
+            case "cpuPredecoded": return (code, decoded) -> new ExecuteVM(code, decoded).cpuPredecoded();
+            case "cpuPooled": { // contexts reset and reused across runs
+                ExecutionPool pool = new ExecutionPool(new Program(program, null));
+                return (code, decoded) -> pool.run();
+            }
+            case "cpuTiered": { // compiled functions are kept across runs
+                JitCompiler jit = new JitCompiler(program);
+                return (code, decoded) -> {
+                    ExecuteVM vm = new ExecuteVM(code, decoded);
+                    vm.setJit(jit);
+                    vm.cpuPredecoded();
+                };
+            }
+            default: throw new IllegalArgumentException("Unknown engine "+name);
+        }
+    }
+
+    public static int[] assemble(String fileName) throws IOException {
+        SVMLexer lexer = new SVMLexer(CharStreams.fromFileName(fileName));
+        SVMParser parser = new SVMParser(new CommonTokenStream(lexer));
+        parser.assembly();
+        if (lexer.lexicalErrors+parser.getNumberOfSyntaxErrors()>0)
+            throw new IllegalArgumentException("Could not assemble "+fileName);
+        return parser.code;
+    }
+
+    private static final int ROUNDS = 10;
+
+    // average nanoseconds per run of each engine: engines are timed in turns
+    // for ROUNDS rounds (after an untimed warm-up round) and the best round is kept
+    public static double[] measure(Runnable[] engines, int runs) {
+        double[] best = new double[engines.length];
+        java.util.Arrays.fill(best, Double.MAX_VALUE);
+        for (int r = 0; r <= ROUNDS; r++)
+            for (int e = 0; e < engines.length; e++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < runs; i++) engines[e].run();
+                if (r > 0) best[e] = Math.min(best[e], (double) (System.nanoTime()-start) / runs);
+            }
+        return best;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int runs = 20000;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-n")) {
+            runs = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+        try {
+            for (int f = first; f < args.length; f++) {
+                int[] code = assemble(args[f]);
+                int[] decoded = Predecoder.decode(code); // load time, not measured
+                Runnable[] engines = new Runnable[ENGINES.length];
+                for (int e = 0; e < ENGINES.length; e++) {
+                    Engine engine = engine(ENGINES[e], code);
+                    engines[e] = () -> engine.run(code, decoded);
+                }
+                double[] ns = measure(engines, runs);
+                for (int e = 0; e < ENGINES.length; e++)
+                    out.printf("%-24s %-16s %10.0f ns/run  x%.2f%n", args[f], ENGINES[e], ns[e], ns[0]/ns[e]);
+            }
+        } finally {
+            System.setOut(out);
+        }
+    }
+
+}
@@ -0,0 +1,44 @@
+package svm;
+
+import java.io.*;
+
+// Values as a stream of 4-byte big-endian ints (readable by DataInputStream),
+// written one buffer at a time.
+public class BinaryOutput implements Output {
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+
+    public BinaryOutput(OutputStream out) {
+        this(out, TextOutput.DEFAULT_BUFFER_SIZE);
+    }
+
+    public BinaryOutput(OutputStream out, int bufferSize) {
+        this.out = out;
+        buffer = new byte[Math.max(bufferSize & ~3, 4)];
+    }
+
+    @Override
+    public void print(int value) {
+        if (count == buffer.length) flush();
+        buffer[count] = (byte) (value >>> 24);
+        buffer[count+1] = (byte) (value >>> 16);
+        buffer[count+2] = (byte) (value >>> 8);
+        buffer[count+3] = (byte) value;
+        count += 4;
+    }
+
+    @Override
+    public void flush() {
+        int n = count;
+        count = 0; // dropped if the stream fails
+        try {
+            out.write(buffer, 0, n);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package svm;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// Snapshot of an ExecuteVM in a file, to resume later, or many times, from the
+// same point: typically after the initialisation of the program (the label
+// "main" of the code generator, reached with cpuUntil()), so that repeated runs
+// skip building the dispatch tables and the global variables.
+// The file holds little-endian ints:
+//   magic, version, stack and heap limits, ip, ra, tm, fp, hp, sp (an address),
+//   the state of the GarbageCollector (7 ints), the code (length, then the
+//   number of words up to the last non-zero one, and those words), the
+//   frame maps (count, or -1 if none, then address, length and entries of each),
+//   the used stack (length, words from sp up) and the used heap in two ranges
+//   (start, length and words of each): the dispatch tables and the nursery up to
+//   its top (with the old objects compacted between them by a full collection),
+//   then the rest of the old generation (see GarbageCollector).
+// Restored memory is zero elsewhere: the program writes those words before reading them.
+// Output, listener and JitCompiler are not part of the snapshot.
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x434d5653; // "SVMC"
+    private static final int VERSION = 3;
+    private static final int HEADER = 10;
+
+    private Checkpoint() {}
+
+    // vm must not be running (paused by cpuUntil(), or halted)
+    public static void save(ExecuteVM vm, Path file) throws IOException {
+        int[] gcState = vm.getCollector().state();
+        int[][] frameMaps = vm.getCollector().frameMaps();
+        int stackWords = vm.stack.length-vm.sp;
+        int[] heap = { // [start, end) of the used ranges of the heap
+            0, Math.max(vm.hp, gcState[2]), // nursery top
+            gcState[3], Math.max(gcState[3], gcState[4]) // old generation
+        };
+        if (heap[3] > vm.heap.size()) heap[2] = heap[3] = 0; // no old generation (allocation only)
+        int heapWords = heap[1]+heap[3]-heap[2];
+        int codeWords = vm.code.length; // SVMParser.code is longer than the program, filled with zeros
+        while (codeWords > 0 && vm.code[codeWords-1] == 0) codeWords--;
+        long size = HEADER+gcState.length+2+codeWords+1+1+stackWords+4+heapWords;
+        if (frameMaps != null)
+            for (int[] map : frameMaps) if (map != null) size += 2+map.length;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4*size);
+            IntBuffer out = bytes.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            out.put(new int[] {MAGIC, VERSION, vm.maxStack, vm.maxHeap, vm.ip, vm.ra, vm.tm, vm.fp, vm.hp, vm.sp+vm.stackLow});
+            out.put(gcState);
+            out.put(vm.code.length).put(codeWords).put(vm.code, 0, codeWords);
+            if (frameMaps == null) out.put(-1);
+            else {
+                int count = 0;
+                for (int[] map : frameMaps) if (map != null) count++;
+                out.put(count);
+                for (int a = 0; a < frameMaps.length; a++)
+                    if (frameMaps[a] != null) out.put(a).put(frameMaps[a].length).put(frameMaps[a]);
+            }
+            out.put(stackWords).put(vm.stack, vm.sp, stackWords);
+            for (int r = 0; r < 4; r += 2) {
+                out.put(heap[r]).put(heap[r+1]-heap[r]);
+                vm.heap.get(heap[r], heap[r+1]-heap[r], out);
+            }
+            bytes.force();
+        }
+    }
+
+    // a new VM in the state saved in file, to be resumed by cpu() or cpuPredecoded()
+    public static ExecuteVM restore(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            IntBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            int[] header = new int[HEADER];
+            in.get(header);
+            if (header[0] != MAGIC || header[1] != VERSION) throw new IOException("Not an SVM checkpoint: "+file);
+            int[] gcState = new int[7];
+            in.get(gcState);
+            int[] code = new int[in.get()];
+            in.get(code, 0, in.get());
+            int[][] frameMaps = null;
+            int count = in.get();
+            if (count >= 0) {
+                frameMaps = new int[code.length+1][];
+                for (int m = 0; m < count; m++) {
+                    int address = in.get();
+                    frameMaps[address] = new int[in.get()];
+                    in.get(frameMaps[address]);
+                }
+            }
+            ExecuteVM vm = new ExecuteVM(code, null, header[2], header[3]);
+            vm.ip = header[4];
+            vm.ra = header[5];
+            vm.tm = header[6];
+            vm.fp = header[7];
+            vm.hp = header[8];
+            int stackWords = in.get();
+            if (stackWords != ExecuteVM.STACK_BASE-header[9]) throw new IOException("Corrupted SVM checkpoint: "+file);
+            if (stackWords > vm.stack.length) {
+                vm.stack = new int[stackWords];
+                vm.stackLow = ExecuteVM.STACK_BASE-stackWords;
+            }
+            vm.sp = vm.stack.length-stackWords;
+            in.get(vm.stack, vm.sp, stackWords);
+            for (int r = 0; r < 2; r++) {
+                int start = in.get(), words = in.get();
+                if (words > 0) vm.growHeap(start+words-1);
+                vm.heap.put(in, start, words);
+            }
+            vm.getCollector().setFrameMaps(frameMaps);
+            vm.getCollector().restore(gcState);
+            return vm;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted SVM checkpoint: "+file, e);
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package svm;
+
+import java.io.*;
+import java.util.*;
+
+// SVM code as a list of instructions with symbolic labels, built by the code
+// generator (compiler.CodeGenerationASTVisitor) and assembled straight to
+// int[] by assemble(), with the same result as parsing toString() with SVM.g4
+// (superinstructions fused in the same way). Passes can inspect and rewrite it
+// before assembling.
+// Instructions are kept in parallel primitive arrays: the opcode (an SVMParser
+// token), the kind of operand and the operand (a value, or the index of a
+// label name); a label definition is an entry of its own.
+public final class Code {
+
+    private static final byte NONE = 0, VALUE = 1, LABEL = 2, DEFINE = 3; // kinds
+
+    private static final String[] MNEMONICS = new String[SVMParser.VOCABULARY.getMaxTokenType()+1]; // of each token
+    static {
+        for (int t = 1; t < MNEMONICS.length; t++) {
+            String name = SVMParser.VOCABULARY.getLiteralName(t);
+            if (name != null) MNEMONICS[t] = name.substring(1, name.length()-1);
+        }
+    }
+
+    private int[] ops = new int[16];
+    private byte[] kinds = new byte[16];
+    private int[] operands = new int[16];
+    private int size;
+
+    private final List<String> names = new ArrayList<>();          // label names
+    private final Map<String,Integer> labelIndex = new HashMap<>(); // name -> index in names
+
+    private final List<Integer> mapLabels = new ArrayList<>(); // frame maps ("gcmap"): label index
+    private final List<int[]> maps = new ArrayList<>();        // and entries of each
+
+    private int index(String label) {
+        Integer l = labelIndex.get(label);
+        if (l == null) {
+            l = names.size();
+            names.add(label);
+            labelIndex.put(label, l);
+        }
+        return l;
+    }
+
+    private Code add(int op, byte kind, int operand) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, 2*size);
+            kinds = Arrays.copyOf(kinds, 2*size);
+            operands = Arrays.copyOf(operands, 2*size);
+        }
+        ops[size] = op;
+        kinds[size] = kind;
+        operands[size++] = operand;
+        return this;
+    }
+
+    // instruction without operand, e.g. emit(SVMParser.ADD)
+    public Code emit(int op) {
+        return add(op, NONE, 0);
+    }
+
+    // instruction with a value operand: push n, vcall n
+    public Code emit(int op, int value) {
+        return add(op, VALUE, value);
+    }
+
+    // instruction with a label operand: push, b, beq, bleq
+    public Code emit(int op, String label) {
+        return add(op, LABEL, index(label));
+    }
+
+    public Code push(int value) {
+        return emit(SVMParser.PUSH, value);
+    }
+
+    public Code push(String label) {
+        return emit(SVMParser.PUSH, label);
+    }
+
+    // defines label at the current point of the code
+    public Code label(String label) {
+        return add(-1, DEFINE, index(label));
+    }
+
+    // frame map of the safepoint at label (see GarbageCollector)
+    public Code frameMap(String label, int[] map) {
+        mapLabels.add(index(label));
+        maps.add(map);
+        return this;
+    }
+
+    // appends the instructions and frame maps of c (nothing if null)
+    public Code append(Code c) {
+        if (c == null) return this;
+        for (int j = 0; j < c.size; j++)
+            add(c.ops[j], c.kinds[j], c.kinds[j] >= LABEL ? index(c.names.get(c.operands[j])) : c.operands[j]);
+        for (int m = 0; m < c.maps.size(); m++) frameMap(c.names.get(c.mapLabels.get(m)), c.maps.get(m));
+        return this;
+    }
+
+    // entries, label definitions included
+    public int size() {
+        return size;
+    }
+
+    // opcode of entry j, -1 for a label definition
+    public int op(int j) {
+        return ops[j];
+    }
+
+    public boolean hasValue(int j) {
+        return kinds[j] == VALUE;
+    }
+
+    public int value(int j) {
+        return operands[j];
+    }
+
+    // label operand, or label defined, of entry j (null if none)
+    public String label(int j) {
+        return kinds[j] >= LABEL ? names.get(operands[j]) : null;
+    }
+
+    // the labels and frame maps of this code, with no instructions: passes (see
+    // Peephole) rewrite the code into it, with copy() for the entries kept
+    Code emptyCopy() {
+        Code c = new Code();
+        c.ops = new int[ops.length];
+        c.kinds = new byte[ops.length];
+        c.operands = new int[ops.length];
+        c.names.addAll(names);
+        c.labelIndex.putAll(labelIndex);
+        c.mapLabels.addAll(mapLabels);
+        c.maps.addAll(maps);
+        return c;
+    }
+
+    // appends entry j of c, this being (built from) c.emptyCopy()
+    Code copy(Code c, int j) {
+        return add(c.ops[j], c.kinds[j], c.operands[j]);
+    }
+
+    // labels of the code: the label of an entry is one of them, labelId(j)
+    int labels() {
+        return names.size();
+    }
+
+    // -1 if entry j has no label
+    int labelId(int j) {
+        return kinds[j] >= LABEL ? operands[j] : -1;
+    }
+
+    // per label: true if it has a frame map, which passes must keep
+    boolean[] mapped() {
+        boolean[] mapped = new boolean[names.size()];
+        for (int l : mapLabels) mapped[l] = true;
+        return mapped;
+    }
+
+    // superinstruction (index in Superinstructions) fusing the entries from j, -1 if none:
+    // as in SVM.g4, label definitions break sequences and only pushes of values are fused
+    private int fused(int j) {
+        for (int s = 0; s < Superinstructions.COUNT; s++) {
+            int[] seq = Superinstructions.SEQUENCES[s];
+            if (j+seq.length > size) continue;
+            boolean match = true;
+            for (int k = 0; k < seq.length && match; k++)
+                match = ops[j+k] == seq[k] && kinds[j+k] != DEFINE && (seq[k] != SVMParser.PUSH || kinds[j+k] == VALUE);
+            if (match) return s;
+        }
+        return -1;
+    }
+
+    // the program, with the labels as symbols (no debug info)
+    public ObjectFile assemble() {
+        int[] code = new int[ExecuteVM.CODESIZE];
+        int i = 0;
+        int[] address = new int[names.size()];
+        Arrays.fill(address, -1);
+        int[] refs = new int[16]; // addresses holding a label index, to patch
+        int r = 0;
+        for (int j = 0; j < size; ) {
+            if (i+2 > code.length) code = Arrays.copyOf(code, 2*code.length);
+            if (kinds[j] == DEFINE) {
+                address[operands[j]] = i;
+                j++;
+                continue;
+            }
+            int s = fused(j), n = 1, op = ops[j];
+            if (s >= 0) {
+                n = Superinstructions.SEQUENCES[s].length;
+                op = Superinstructions.TOKENS[s];
+            }
+            code[i++] = op;
+            for (int k = j; k < j+n; k++) // operand of the instruction, or of the push or branch fused
+                if (kinds[k] != NONE) {
+                    if (kinds[k] == LABEL) {
+                        if (r == refs.length) refs = Arrays.copyOf(refs, 2*r);
+                        refs[r++] = i;
+                    }
+                    code[i++] = operands[k];
+                }
+            j += n;
+        }
+        while (r > 0) {
+            int ref = refs[--r], a = address[code[ref]];
+            if (a < 0) throw new IllegalArgumentException("Undefined label "+names.get(code[ref]));
+            code[ref] = a;
+        }
+        int[][] frameMaps = new int[i+1][];
+        for (int m = 0; m < maps.size(); m++) {
+            int a = address[mapLabels.get(m)];
+            if (a < 0) throw new IllegalArgumentException("Undefined label "+names.get(mapLabels.get(m)));
+            frameMaps[a] = maps.get(m);
+        }
+        Map<String,Integer> symbols = new HashMap<>();
+        for (int l = 0; l < names.size(); l++) if (address[l] >= 0) symbols.put(names.get(l), address[l]);
+        return new ObjectFile(code, frameMaps, symbols, Map.of());
+    }
+
+    // writes the assembly text listing, an instruction or label per line, a
+    // blank line before each function and before the frame maps
+    public void write(Appendable out) throws IOException {
+        for (int j = 0; j < size; j++) {
+            if (j > 0) out.append('\n');
+            if (kinds[j] == DEFINE) {
+                if (j > 0 && j+1 < size && ops[j+1] == SVMParser.COPYFP) out.append('\n');
+                out.append(names.get(operands[j])).append(':');
+                continue;
+            }
+            out.append(MNEMONICS[ops[j]]);
+            if (kinds[j] == VALUE) out.append(' ').append(Integer.toString(operands[j]));
+            else if (kinds[j] == LABEL) out.append(' ').append(names.get(operands[j]));
+        }
+        if (!maps.isEmpty()) out.append("\n");
+        for (int m = 0; m < maps.size(); m++) {
+            out.append("\ngcmap ").append(names.get(mapLabels.get(m)));
+            for (int e : maps.get(m)) out.append(' ').append(Integer.toString(e));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        try {
+            write(b);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // not thrown by StringBuilder
+        }
+        return b.toString();
+    }
+
+}
@@ -1,26 +1,209 @@
 package svm;
+
+import java.lang.invoke.MethodHandles;
+
 public class ExecuteVM {
     
-    public static final int CODESIZE = 10000;
-    public static final int MEMSIZE = 10000;
-    
-    private int[] code;
-    private int[] memory = new int[MEMSIZE];
-    
-    private int ip = 0;
-    private int sp = MEMSIZE;
-    
-    private int hp = 0;       
-    private int fp = MEMSIZE; 
-    private int ra;           
-    private int tm;
+    public static final int CODESIZE = 10000; // initial size of SVMParser.code, grown as needed
+
+    // Memory is split in two segments, each grown on demand up to its own limit:
+    // the heap holds addresses 0, 1, ... and the stack holds the addresses below
+    // STACK_BASE, growing downwards; STACK_BASE is also the global frame.
+    public static final int STACK_BASE = 1 << 30;
+    public static final int DEFAULT_STACK_SIZE = 1 << 20;
+    public static final int DEFAULT_HEAP_SIZE = 1 << 22;
+    private static final int INITIAL_SEGMENT_SIZE = 1024;
+
+    // the state read by GarbageCollector and Checkpoint is package-private
+    final int[] code;
+    int[] decoded; // see Predecoder, built on first cpuPredecoded()
+    private InlineCache caches; // of the vcall instructions, built with decoded
+
+    final int maxStack;
+    final int maxHeap;
+    int[] stack;
+    int stackLow; // address of stack[0]
+    Memory heap;
+
+    int ip = 0;
+    int sp;           // index in stack (not an address)
+
+    int hp = 0;       
+    int fp = STACK_BASE; 
+    int ra;
+    int tm;
+
+    private ExecutionListener listener; // observes cpu(), if set
+    private int pauseAt = -1;
+    private Trace trace;                // records the instructions executed, if set
+    private Output out;                 // receives print, a TextOutput to System.out if not set
+    private volatile boolean stopped;   // see stop()
+    private long fuel = Long.MAX_VALUE; // instructions left, see setFuel()
+    private boolean metered;
+
+    private JitCompiler jit; // tiers up cpuPredecoded(), if set
+    private int jitDepth;    // compiled functions currently active on the Java stack
+    int[] jitReturns;        // return addresses of the calls made by compiled code, innermost last
+    int jitCalls;
+
+    private final GarbageCollector gc = new GarbageCollector(this);
+
+    static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup(); // defines JitCompiler's classes as nestmates
     
     public ExecuteVM(int[] code) {
+      this(code, null);
+    }
+
+    // decoded must be Predecoder.decode(code): lets runs of the same code share the decoding
+    public ExecuteVM(int[] code, int[] decoded) {
+      this(code, decoded, DEFAULT_STACK_SIZE, DEFAULT_HEAP_SIZE);
+    }
+
+    // stackSize and heapSize (in words) bound the growth of the two segments
+    public ExecuteVM(int[] code, int[] decoded, int stackSize, int heapSize) {
+      this(code, decoded, stackSize, heapSize, new ArrayMemory(Math.min(INITIAL_SEGMENT_SIZE, heapSize)));
+    }
+
+    // runs program, with its frame maps and its JitCompiler if any
+    public ExecuteVM(Program program, int stackSize, int heapSize) {
+      this(program.code, program.decoded, stackSize, heapSize);
+      gc.setFrameMaps(program.frameMaps);
+      if (program.jit != null) setJit(program.jit);
+    }
+
+    // heap is the (empty, or mapped from a file) memory of the heap segment
+    public ExecuteVM(int[] code, int[] decoded, int stackSize, int heapSize, Memory heap) {
+      if (stackSize <= 0 || heapSize <= 0 || heapSize > STACK_BASE) throw new IllegalArgumentException("Invalid memory sizes");
       this.code = code;
+      this.decoded = decoded;
+      maxStack = stackSize;
+      maxHeap = heapSize;
+      stack = new int[Math.min(INITIAL_SEGMENT_SIZE, stackSize)];
+      stackLow = STACK_BASE-stack.length;
+      sp = stack.length;
+      this.heap = heap;
     }
     
-    public void cpu() {
-      while ( true ) {
+    // back to the state of a new VM (with the same JitCompiler), to run the
+    // program again: the segments keep the size they have grown to, and the
+    // words used by the previous run are cleared, so that a run never sees the
+    // memory of another one
+    public void reset() {
+      java.util.Arrays.fill(stack, 0);
+      heap.clear(Math.min(Math.max(hp, gc.written()), heap.size()));
+      ip = 0;
+      sp = stack.length;
+      hp = 0;
+      fp = STACK_BASE;
+      ra = 0;
+      tm = 0;
+      jitDepth = 0;
+      jitCalls = 0;
+      listener = null;
+      trace = null;
+      out = null;
+      fuel = Long.MAX_VALUE;
+      metered = false;
+      stopped = false;
+      if (caches != null) caches.clear();
+      gc.reset();
+    }
+
+    public void setListener(ExecutionListener listener) {
+      this.listener = listener;
+    }
+
+    // trace is dumped if the program fails, and can be dumped at any time
+    public void setTrace(Trace trace) {
+      this.trace = trace;
+      if (trace != null) trace.code = code;
+    }
+
+    public void setOutput(Output out) {
+      this.out = out;
+    }
+
+    // makes the running program (from any thread) fail at its next function call:
+    // FOOL has no loops, so every long computation keeps calling functions
+    public void stop() {
+      stopped = true;
+    }
+
+    // budget of instructions for the following runs, Long.MAX_VALUE (the default)
+    // for none: when it runs out, at a call or a backward branch, cpu() or
+    // cpuPredecoded() returns false, leaving the VM paused before that instruction,
+    // to be resumed after another setFuel(). Compiled functions are not entered
+    // while a budget is set (their callees could not pause)
+    public void setFuel(long instructions) {
+      if (instructions < 0) throw new IllegalArgumentException("Invalid fuel "+instructions);
+      fuel = instructions;
+      metered = instructions != Long.MAX_VALUE;
+    }
+
+    // the fuel left, negative by the instructions run past the budget before a check
+    public long getFuel() {
+      return fuel;
+    }
+
+    // jit must have been created for this code; it can be shared by VMs running it
+    public void setJit(JitCompiler jit) {
+      this.jit = jit;
+      jitReturns = new int[JitCompiler.MAX_DEPTH]; // each compiled function has at most one call in progress
+    }
+
+    // null until cpuPredecoded() runs
+    public InlineCache getInlineCache() {
+      return caches;
+    }
+
+    // allocates the objects created by "new"; collects only when given frame maps
+    public GarbageCollector getCollector() {
+      return gc;
+    }
+
+    // true if the program halted, false if it paused (see setFuel() and cpuUntil());
+    // the output is flushed when the program halts, pauses or fails
+    public boolean cpu() {
+      try {
+        return interpret();
+      } catch (RuntimeException | Error e) {
+        if (trace != null) trace.failed(e);
+        throw e;
+      } finally {
+        if (out != null) out.flush();
+      }
+    }
+
+    // runs the reference loop up to the instruction at address, which is left to
+    // execute (by cpu() or cpuPredecoded()): false if the program halted first.
+    // Brings the VM to the point of a Checkpoint
+    public boolean cpuUntil(int address) {
+      ExecutionListener l = listener;
+      if (listener == null) listener = (a, op) -> {};
+      if (address < 0) throw new IllegalArgumentException("Invalid address "+address);
+      pauseAt = address;
+      try {
+        cpu();
+        return pauseAt < 0;
+      } finally {
+        pauseAt = -1;
+        listener = l;
+      }
+    }
+
+    private boolean interpret() {
+      long fuel = this.fuel; // written back when returning
+      dispatch: while ( true ) {
+        fuel--;
+        if (listener != null) {
+          if (ip == pauseAt) { // see cpuUntil()
+            pauseAt = -1;
+            this.fuel = fuel+1;
+            return false;
+          }
+          listener.instruction(ip, code[ip]);
+        }
+        if (trace != null) record();
         int bytecode = code[ip++]; // fetch
         int v1,v2;
         int address;
@@ -53,23 +236,28 @@ public class ExecuteVM {
             break;
           case SVMParser.STOREW : //
             address = pop();
-            memory[address] = pop();    
+            store(address, pop());
             break;
           case SVMParser.LOADW : //
-            push(memory[pop()]);
+            push(load(pop()));
             break;
           case SVMParser.BRANCH : 
             address = code[ip];
+            if (fuel < 0 && address < ip) break dispatch;
             ip = address;
             break;
           case SVMParser.BRANCHEQ :
-            address = code[ip++];
+            address = code[ip];
+            if (fuel < 0 && address < ip) break dispatch;
+            ip++;
             v1=pop();
             v2=pop();
             if (v2 == v1) ip = address;
             break;
           case SVMParser.BRANCHLESSEQ :
-            address = code[ip++];
+            address = code[ip];
+            if (fuel < 0 && address < ip) break dispatch;
+            ip++;
             v1=pop();
             v2=pop();
             if (v2 <= v1) ip = address;
@@ -98,7 +286,9 @@ public class ExecuteVM {
             fp=pop();
             break;
          case SVMParser.COPYFP : //
-            fp=sp;
+            if (stopped) throw stopped();
+            if (fuel < 0) break dispatch;
+            fp=sp+stackLow;
             break;
          case SVMParser.STOREHP : //
             hp=pop();
@@ -107,20 +297,406 @@ public class ExecuteVM {
             push(hp);
             break;
          case SVMParser.PRINT :
-            System.out.println((sp<MEMSIZE)?memory[sp]:"Empty stack!");
+            print();
             break;
          case SVMParser.HALT :
-            return;
+            this.fuel = fuel;
+            return true;
+         case SVMParser.NEW :
+            newObject(ip-1);
+            break;
+         case SVMParser.VCALL : // the object stays on the stack, as Access Link
+            address = method(stack[sp], code[ip++]);
+            ra = ip;
+            ip = address;
+            break;
+          // BEGIN GENERATED SUPERINSTRUCTIONS cpu (SuperinstructionGenerator)
+          case SVMParser.LFP_PUSH_ADD_LW: { // lfp; push k; add; lw
+            int k = code[ip++];
+            push(load((fp + k)));
+            break;
+          }
+          case SVMParser.POP_SFP_LTM_LRA: { // pop; sfp; ltm; lra
+            pop();
+            int t0 = pop();
+            fp = t0;
+            push(tm);
+            push(ra);
+            break;
+          }
+          case SVMParser.LTM_LTM_PUSH_ADD: { // ltm; ltm; push k; add
+            int k = code[ip++];
+            push(tm);
+            push((tm + k));
+            break;
+          }
+          case SVMParser.PUSH_SUB_LFP_LW: { // push k; sub; lfp; lw
+            int k = code[ip++];
+            int t0 = pop();
+            push((t0 - k));
+            push(load(fp));
+            break;
+          }
+          case SVMParser.STM_SRA_POP: { // stm; sra; pop
+            int t0 = pop();
+            tm = t0;
+            int t1 = pop();
+            ra = t1;
+            pop();
+            break;
+          }
+          case SVMParser.LW_JS: { // lw; js
+            int t0 = pop();
+            int t1 = load(t0);
+            ra = ip;
+            ip = t1;
+            break;
+          }
+          // END GENERATED SUPERINSTRUCTIONS cpu
         }
       }
+      ip--; // out of fuel at the instruction just fetched
+      this.fuel = fuel+1;
+      return false;
     } 
     
+    // same semantics as cpu(), dispatching on the dense opcodes produced by Predecoder
+    // (decoded on first use unless given to the constructor). Pushes are not checked:
+    // the room each function needs (see Verifier) is reserved at its entry, the
+    // largest one here for the code running now; code the Verifier rejects runs on cpu()
+    public boolean cpuPredecoded() {
+      if (decoded == null) decoded = Predecoder.decode(code);
+      int reserve = Predecoder.reserve(decoded);
+      if (reserve < 0) return cpu();
+      if (sp < reserve) growStack(reserve);
+      if (caches == null) caches = new InlineCache(this, decoded);
+      try {
+        return run();
+      } catch (RuntimeException | Error e) {
+        if (trace != null) trace.failed(e);
+        throw e;
+      } finally {
+        if (out != null) out.flush();
+      }
+    }
+
+    // runs until halt, or until a call made by compiled code returns (see callFromJit):
+    // false if out of fuel
+    private boolean run() {
+      final int[] prog = decoded;
+      long fuel = this.fuel; // written back when returning
+      dispatch: while ( true ) {
+        fuel--;
+        int i = ip << 1; // fetch: opcode at prog[i], operand at prog[i+1]
+        if (trace != null) record();
+        int v1,v2;
+        int address;
+        switch ( prog[i] ) {
+          case Predecoder.PUSH:
+            pushReserved( prog[i+1] );
+            ip += 2;
+            break;
+          case Predecoder.POP:
+            pop();
+            ip++;
+            break;
+          case Predecoder.ADD:
+            v1=pop();
+            v2=pop();
+            pushReserved(v2 + v1);
+            ip++;
+            break;
+          case Predecoder.MULT:
+            v1=pop();
+            v2=pop();
+            pushReserved(v2 * v1);
+            ip++;
+            break;
+          case Predecoder.DIV:
+            v1=pop();
+            v2=pop();
+            pushReserved(v2 / v1);
+            ip++;
+            break;
+          case Predecoder.SUB:
+            v1=pop();
+            v2=pop();
+            pushReserved(v2 - v1);
+            ip++;
+            break;
+          case Predecoder.STOREW:
+            address = pop();
+            store(address, pop());
+            ip++;
+            break;
+          case Predecoder.LOADW:
+            pushReserved(load(pop()));
+            ip++;
+            break;
+          case Predecoder.BRANCH:
+            if (fuel < 0 && prog[i+1] <= ip) break dispatch;
+            ip = prog[i+1];
+            break;
+          case Predecoder.BRANCHEQ:
+            if (fuel < 0 && prog[i+1] <= ip) break dispatch;
+            v1=pop();
+            v2=pop();
+            ip = (v2 == v1) ? prog[i+1] : ip+2;
+            break;
+          case Predecoder.BRANCHLESSEQ:
+            if (fuel < 0 && prog[i+1] <= ip) break dispatch;
+            v1=pop();
+            v2=pop();
+            ip = (v2 <= v1) ? prog[i+1] : ip+2;
+            break;
+          case Predecoder.JS:
+            address = pop();
+            ra = ip+1;
+            ip = address;
+            break;
+          case Predecoder.STORERA:
+            ra=pop();
+            ip++;
+            break;
+          case Predecoder.LOADRA:
+            pushReserved(ra);
+            ip++;
+            break;
+          case Predecoder.STORETM:
+            tm=pop();
+            ip++;
+            break;
+          case Predecoder.LOADTM:
+            pushReserved(tm);
+            ip++;
+            break;
+          case Predecoder.LOADFP:
+            pushReserved(fp);
+            ip++;
+            break;
+          case Predecoder.STOREFP:
+            fp=pop();
+            ip++;
+            break;
+          case Predecoder.COPYFP: // cfp starts every function
+            if (stopped) throw stopped();
+            if (fuel < 0) break dispatch;
+            if (jit != null && !metered && enterCompiled()) break;
+            if (sp < prog[i+1]) growStack(prog[i+1]); // the depth of the function
+            fp=sp+stackLow;
+            ip++;
+            break;
+          case Predecoder.STOREHP:
+            hp=pop();
+            ip++;
+            break;
+          case Predecoder.LOADHP:
+            pushReserved(hp);
+            ip++;
+            break;
+          case Predecoder.PRINT:
+            print();
+            ip++;
+            break;
+          case Predecoder.HALT:
+            ip++;
+            this.fuel = fuel;
+            return true;
+          case Predecoder.NEW:
+            newObject(ip);
+            ip++;
+            break;
+          case Predecoder.VCALL: // method offset, then the site number at prog[i+3]
+            address = caches.target(prog[i+3], load(stack[sp]), prog[i+1]);
+            ra = ip+2;
+            ip = address;
+            break;
+          case Predecoder.JITRETURN: // return address of calls made by compiled code
+            this.fuel = fuel;
+            return true;
+          case Predecoder.ADDI: // push k; add
+            stack[sp] += prog[i+1];
+            ip += 3;
+            break;
+          case Predecoder.SUBI: // push k; sub
+            stack[sp] -= prog[i+1];
+            ip += 3;
+            break;
+          case Predecoder.MULTI: // push k; mult
+            stack[sp] *= prog[i+1];
+            ip += 3;
+            break;
+          case Predecoder.BEQI: // push k; beq target
+            if (fuel < 0 && prog[i+5] <= ip) break dispatch;
+            ip = (pop() == prog[i+1]) ? prog[i+5] : ip+4;
+            break;
+          case Predecoder.BLEQI: // push k; bleq target
+            if (fuel < 0 && prog[i+5] <= ip) break dispatch;
+            ip = (pop() <= prog[i+1]) ? prog[i+5] : ip+4;
+            break;
+          // BEGIN GENERATED SUPERINSTRUCTIONS cpuPredecoded (SuperinstructionGenerator)
+          case Predecoder.SUPER+0: { // lfp; push k; add; lw
+            int k = prog[i+1];
+            ip += 2;
+            pushReserved(load((fp + k)));
+            break;
+          }
+          case Predecoder.SUPER+1: { // pop; sfp; ltm; lra
+            ip++;
+            pop();
+            int t0 = pop();
+            fp = t0;
+            pushReserved(tm);
+            pushReserved(ra);
+            break;
+          }
+          case Predecoder.SUPER+2: { // ltm; ltm; push k; add
+            int k = prog[i+1];
+            ip += 2;
+            pushReserved(tm);
+            pushReserved((tm + k));
+            break;
+          }
+          case Predecoder.SUPER+3: { // push k; sub; lfp; lw
+            int k = prog[i+1];
+            ip += 2;
+            int t0 = pop();
+            pushReserved((t0 - k));
+            pushReserved(load(fp));
+            break;
+          }
+          case Predecoder.SUPER+4: { // stm; sra; pop
+            ip++;
+            int t0 = pop();
+            tm = t0;
+            int t1 = pop();
+            ra = t1;
+            pop();
+            break;
+          }
+          case Predecoder.SUPER+5: { // lw; js
+            ip++;
+            int t0 = pop();
+            int t1 = load(t0);
+            ra = ip;
+            ip = t1;
+            break;
+          }
+          // END GENERATED SUPERINSTRUCTIONS cpuPredecoded
+          default:
+            throw new IllegalStateException("Invalid instruction at address "+ip);
+        }
+      }
+      this.fuel = fuel+1; // out of fuel at ip
+      return false;
+    }
+
+    // counts a call to the function starting at ip and, if it has been compiled,
+    // runs it up to its return: false if it must be interpreted
+    private boolean enterCompiled() {
+      JitCompiler.Compiled f = jit.entered(ip);
+      if (f == null || jitDepth >= JitCompiler.MAX_DEPTH) return false;
+      jitDepth++;
+      try {
+        ip = f.run(this);
+      } finally {
+        jitDepth--;
+      }
+      return true;
+    }
+
+    // a call made by compiled code: the callee (interpreted or compiled) returns to
+    // the JITRETURN instruction past the end of the code, which ends this run();
+    // returnAddress, where the call returns in the compiled function, is kept for
+    // the stack walk of the collector
+    private void callFromJit(int target, int returnAddress) {
+      jitReturns[jitCalls++] = returnAddress;
+      ra = code.length; // the JITRETURN
+      ip = target;
+      try {
+        run();
+      } finally {
+        jitCalls--;
+      }
+    }
+
+    // "new" at address site: pops the header (see GarbageCollector), the dispatch
+    // pointer and the fields, last one first, and pushes the object pointer.
+    // Space is reserved first: a collection finds the fields still on the stack
+    private void newObject(int site) {
+      int fields = GarbageCollector.fields(stack[sp]);
+      int object = gc.allocate(fields+2, site)+fields;
+      heap.store(object+1, pop());
+      heap.store(object, pop());
+      for (int a = object-fields; a < object; a++) heap.store(a, pop());
+      push(object);
+    }
+
+    private void record() {
+      trace.record(ip, sp+stackLow, fp, sp < stack.length ? stack[sp] : 0, sp+1 < stack.length ? stack[sp+1] : 0);
+    }
+
+    private IllegalStateException stopped() {
+      return new IllegalStateException("Execution stopped");
+    }
+
+    private void print() {
+      if (out == null) out = new TextOutput(System.out);
+      if (sp < stack.length) out.print(stack[sp]);
+      else out.printEmptyStack();
+    }
+
     private int pop() {
-      return memory[sp++];
+      return stack[sp++];
     }
     
     private void push(int v) {
-      memory[--sp] = v;
+      if (sp == 0) growStack(1);
+      stack[--sp] = v;
+    }
+
+    // run() executes verified code, with room reserved (see cpuPredecoded())
+    private void pushReserved(int v) {
+      stack[--sp] = v;
+    }
+
+    // address of the method at offset in the dispatch table of object
+    int method(int object, int offset) {
+      return load(load(object)+offset);
+    }
+
+    int load(int address) {
+      return (address >= stackLow) ? stack[address-stackLow] : heap.load(address);
+    }
+
+    private void store(int address, int v) {
+      if (address >= stackLow) stack[address-stackLow] = v;
+      else {
+        if (address >= heap.size()) growHeap(address);
+        heap.store(address, v);
+      }
+    }
+
+    // makes room for n more words below sp: stack addresses do not change, sp does
+    private void growStack(int n) {
+      long used = (long) stack.length-sp+n;
+      if (used > maxStack) throw new IllegalStateException("Stack overflow: more than "+maxStack+" words");
+      int length = stack.length;
+      while (length < used) length = (int) Math.min(2L*length, maxStack);
+      int[] grown = new int[length];
+      int delta = length-stack.length;
+      System.arraycopy(stack, 0, grown, delta, stack.length);
+      stack = grown;
+      stackLow -= delta;
+      sp += delta;
+    }
+
+    void growHeap(int address) {
+      if (address >= maxHeap || address >= stackLow)
+        throw new IllegalStateException("Out of heap memory: more than "+maxHeap+" words");
+      int length = Math.max(heap.size(), 1);
+      while (length <= address) length = (int) Math.min(2L*length, maxHeap);
+      heap.grow(length);
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package svm;
+
+// Observes the instructions executed by the reference loop ExecuteVM.cpu():
+// called before each instruction with its address and opcode (SVMLexer token type).
+// The dense loop cpuPredecoded() is never instrumented.
+public interface ExecutionListener {
+
+    void instruction(int ip, int opcode);
+
+}
@@ -0,0 +1,64 @@
+package svm;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reusable ExecuteVMs for one Program, for running it many times, from any number
+// of threads: acquire() hands out an idle VM (or a new one) ready to run,
+// release() resets it (ExecuteVM.reset()) and keeps it for the next acquire(),
+// so repeated runs allocate no memory segments and do not grow them again.
+// At most maxIdle VMs are kept; the others are left to the JVM.
+public class ExecutionPool {
+
+    public static final int DEFAULT_MAX_IDLE = 64;
+
+    private final Program program;
+    private final int stackSize, heapSize, maxIdle;
+    private final ConcurrentLinkedDeque<ExecuteVM> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ExecutionPool(Program program) {
+        this(program, ExecuteVM.DEFAULT_STACK_SIZE, ExecuteVM.DEFAULT_HEAP_SIZE, DEFAULT_MAX_IDLE);
+    }
+
+    public ExecutionPool(Program program, int stackSize, int heapSize, int maxIdle) {
+        if (maxIdle < 0) throw new IllegalArgumentException("Invalid pool size");
+        this.program = program;
+        this.stackSize = stackSize;
+        this.heapSize = heapSize;
+        this.maxIdle = maxIdle;
+    }
+
+    public Program getProgram() {
+        return program;
+    }
+
+    public ExecuteVM acquire() {
+        ExecuteVM vm = idle.pollFirst(); // most recently used: its memory is more likely cached
+        if (vm == null) return new ExecuteVM(program, stackSize, heapSize);
+        idleCount.decrementAndGet();
+        return vm;
+    }
+
+    // vm must come from acquire() of this pool and is not to be used afterwards;
+    // it may be released whether its run completed or failed
+    public void release(ExecuteVM vm) {
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        vm.reset();
+        idle.offerFirst(vm);
+    }
+
+    // runs the program once, on a pooled VM
+    public void run() {
+        ExecuteVM vm = acquire();
+        try {
+            vm.cpuPredecoded();
+        } finally {
+            release(vm);
+        }
+    }
+
+}
@@ -0,0 +1,442 @@
+package svm;
+
+import java.io.*;
+import java.util.*;
+
+// Translates the SVM code of a function into the class file of a
+// JitCompiler.Compiled implementation, whose run(vm) executes the function from
+// its entry (cfp) up to its return (the js ending the function) and returns the
+// address js jumps to.
+// The SVM stack stays in vm.stack (registers are copied into JVM locals), so
+// the translation is a template per instruction: what is gone is the dispatch.
+// The stack is grown on entry by the most the function can push, which needs
+// forward-only branches; lw and sw go through vm.load() and vm.store().
+// A js in the middle of the function is a call: registers are written back and
+// vm.callFromJit() runs the callee; a vcall is a call too, to vm.method() of the
+// object on top of the stack (uncached: see InlineCache); "new" likewise calls
+// vm.newObject().
+// The function extends from its entry to the next cfp (or to the end of the
+// code) and must be closed by a js.
+// Class files are version 49, so no StackMapTable is needed; anything that
+// cannot be translated throws UnsupportedOperationException.
+class FunctionTranslator {
+
+    static final String CLASS_NAME = "svm/JitFunction"; // hidden classes: made unique when defined
+    private static final String VM = "svm/ExecuteVM";
+
+    // JVM locals of run(vm)
+    private static final int THIS = 0, VM_LOCAL = 1, STACK = 2, SP = 3, FP = 4, HP = 5, RA = 6, TM = 7, TMP = 8;
+    private static final int MAX_LOCALS = 9, MAX_STACK = 6;
+
+    // JVM opcodes
+    private static final int ALOAD_0 = 0x2a, ALOAD = 0x19, ASTORE = 0x3a, ILOAD = 0x15, ISTORE = 0x36, IINC = 0x84,
+        IALOAD = 0x2e, IASTORE = 0x4f, IADD = 0x60, ISUB = 0x64, IMUL = 0x68, IDIV = 0x6c, DUP2 = 0x5c,
+        ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, IF_ICMPEQ = 0x9f, IF_ICMPGE = 0xa2, IF_ICMPLE = 0xa4,
+        GOTO = 0xa7, IRETURN = 0xac, RETURN = 0xb1, GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6,
+        INVOKESPECIAL = 0xb7;
+
+    private final int[] code;
+    private final int entry;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String,Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private FunctionTranslator(int[] code, int entry) {
+        this.code = code;
+        this.entry = entry;
+    }
+
+    static byte[] translate(int[] code, int entry) {
+        try {
+            return new FunctionTranslator(code, entry).classFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------------------------------------------------------- SVM side
+
+    // dense opcodes executed by the instruction at address a (several for a superinstruction)
+    private static int[] components(int[] code, int a) {
+        int op = Predecoder.fromToken(code[a]);
+        if (op < Predecoder.SUPER || op >= Predecoder.INVALID) return new int[] {op};
+        int[] seq = Superinstructions.SEQUENCES[op-Predecoder.SUPER];
+        int[] ops = new int[seq.length];
+        for (int j = 0; j < seq.length; j++) ops[j] = Predecoder.fromToken(seq[j]);
+        return ops;
+    }
+
+    private int size(int a) {
+        return Predecoder.hasOperand(Predecoder.fromToken(code[a])) ? 2 : 1;
+    }
+
+    // instruction addresses of the function, in order
+    private List<Integer> instructions() {
+        List<Integer> addresses = new ArrayList<>();
+        int a = entry;
+        while (a < code.length) {
+            int[] ops = components(code, a);
+            if (ops[0] == Predecoder.INVALID || (a != entry && ops[0] == Predecoder.COPYFP)) break;
+            if (a+size(a) > code.length) throw new UnsupportedOperationException("Missing operand at address "+a);
+            addresses.add(a);
+            a += size(a);
+        }
+        if (addresses.isEmpty()) throw new UnsupportedOperationException("No function at address "+entry);
+        int last = addresses.get(addresses.size()-1);
+        int[] ops = components(code, last);
+        if (ops[ops.length-1] != Predecoder.JS)
+            throw new UnsupportedOperationException("Function at address "+entry+" does not end with js");
+        return addresses;
+    }
+
+    // ---------------------------------------------------------------- class file
+
+    private byte[] classFile() throws IOException {
+        byte[] run = runMethod();
+        int thisClass = classRef(CLASS_NAME);
+        int superClass = classRef("java/lang/Object");
+        int compiled = classRef("svm/JitCompiler$Compiled");
+        int objectInit = methodRef("java/lang/Object", "<init>", "()V");
+        byte[] init = {(byte) ALOAD_0, (byte) INVOKESPECIAL, (byte) (objectInit >> 8), (byte) objectInit, (byte) RETURN};
+        int codeName = utf8("Code");
+        int initName = utf8("<init>"), initDesc = utf8("()V");
+        int runName = utf8("run"), runDesc = utf8("(L"+VM+";)I");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(poolCount);
+        pool.writeTo(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(compiled);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        method(out, initName, initDesc, codeName, init, 1, 1);
+        method(out, runName, runDesc, codeName, run, MAX_STACK, MAX_LOCALS);
+        out.writeShort(0); // attributes
+        return bytes.toByteArray();
+    }
+
+    private static void method(DataOutputStream out, int name, int desc, int codeName, byte[] code, int maxStack, int maxLocals) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(desc);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12+code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private int constant(String key, int tag, Writer w) throws IOException {
+        Integer index = poolIndex.get(key);
+        if (index != null) return index;
+        poolOut.writeByte(tag);
+        w.write();
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    private interface Writer {
+        void write() throws IOException;
+    }
+
+    private int utf8(String s) throws IOException {
+        return constant("U"+s, 1, () -> poolOut.writeUTF(s));
+    }
+
+    private int integer(int v) throws IOException {
+        return constant("I"+v, 3, () -> poolOut.writeInt(v));
+    }
+
+    private int classRef(String name) throws IOException {
+        int n = utf8(name);
+        return constant("C"+name, 7, () -> poolOut.writeShort(n));
+    }
+
+    private int nameAndType(String name, String desc) throws IOException {
+        int n = utf8(name), d = utf8(desc);
+        return constant("N"+name+" "+desc, 12, () -> { poolOut.writeShort(n); poolOut.writeShort(d); });
+    }
+
+    private int member(int tag, String owner, String name, String desc) throws IOException {
+        int c = classRef(owner), nt = nameAndType(name, desc);
+        return constant(tag+owner+"."+name+desc, tag, () -> { poolOut.writeShort(c); poolOut.writeShort(nt); });
+    }
+
+    private int fieldRef(String owner, String name, String desc) throws IOException {
+        return member(9, owner, name, desc);
+    }
+
+    private int methodRef(String owner, String name, String desc) throws IOException {
+        return member(10, owner, name, desc);
+    }
+
+    // ---------------------------------------------------------------- bytecode
+
+    private void op(int... bytes) {
+        for (int b : bytes) body.write(b);
+    }
+
+    private void u2(int v) {
+        op(v >> 8, v);
+    }
+
+    private void iload(int local) { op(ILOAD, local); }
+    private void istore(int local) { op(ISTORE, local); }
+    private void aload(int local) { op(ALOAD, local); }
+    private void iinc(int local, int delta) { op(IINC, local, delta); }
+
+    private void iconst(int v) throws IOException {
+        if (v >= -1 && v <= 5) op(ICONST_0+v);
+        else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) op(BIPUSH, v);
+        else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { op(SIPUSH); u2(v); }
+        else { op(LDC_W); u2(integer(v)); }
+    }
+
+    private static final String[] REGISTERS = {null, null, null, "sp", "fp", "hp", "ra", "tm"};
+
+    private void load(int local) throws IOException { // local = vm.register
+        aload(VM_LOCAL);
+        op(GETFIELD);
+        u2(fieldRef(VM, REGISTERS[local], "I"));
+        istore(local);
+    }
+
+    private void store(int local) throws IOException { // vm.register = local
+        aload(VM_LOCAL);
+        iload(local);
+        op(PUTFIELD);
+        u2(fieldRef(VM, REGISTERS[local], "I"));
+    }
+
+    private void loadState() throws IOException {
+        aload(VM_LOCAL);
+        op(GETFIELD);
+        u2(fieldRef(VM, "stack", "[I"));
+        op(ASTORE, STACK);
+        for (int r = SP; r <= TM; r++) load(r);
+    }
+
+    private void storeState() throws IOException {
+        for (int r = SP; r <= TM; r++) store(r);
+    }
+
+    private void push(int local) { // stack[--sp] = local
+        iinc(SP, -1);
+        aload(STACK);
+        iload(SP);
+        iload(local);
+        op(IASTORE);
+    }
+
+    private void pop(int local) { // local = stack[sp++]
+        aload(STACK);
+        iload(SP);
+        op(IALOAD);
+        istore(local);
+        iinc(SP, 1);
+    }
+
+    private void arithmetic(int jvmOp) { // stack[sp+1] = stack[sp+1] op stack[sp]; sp++
+        aload(STACK);
+        iload(SP);
+        op(ICONST_0+1, IADD, DUP2, IALOAD);
+        aload(STACK);
+        iload(SP);
+        op(IALOAD, jvmOp, IASTORE);
+        iinc(SP, 1);
+    }
+
+    private void compareAndBranch(int jvmOp, int target, Map<Integer,Integer> fixups) { // v2 op v1, popped
+        aload(STACK);
+        iload(SP);
+        op(ICONST_0+1, IADD, IALOAD);
+        aload(STACK);
+        iload(SP);
+        op(IALOAD);
+        iinc(SP, 2);
+        branch(jvmOp, target, fixups);
+    }
+
+    private void branch(int jvmOp, int target, Map<Integer,Integer> fixups) {
+        fixups.put(body.size(), target);
+        op(jvmOp, 0, 0);
+    }
+
+    // grows vm.stack, if needed, by the number of pushes in the function: with
+    // forward-only branches each executes at most once between calls, and a
+    // call returns with at least as much room below sp as before
+    private void reserve(List<Integer> addresses) throws IOException {
+        int pushes = 0;
+        for (int a : addresses)
+            for (int op : components(code, a))
+                if (op == Predecoder.PUSH || op == Predecoder.LOADRA || op == Predecoder.LOADTM
+                    || op == Predecoder.LOADFP || op == Predecoder.LOADHP) pushes++;
+        iload(SP);
+        iconst(pushes);
+        int skip = body.size();
+        op(IF_ICMPGE, 0, 0);
+        store(SP);
+        aload(VM_LOCAL);
+        iconst(pushes);
+        op(INVOKEVIRTUAL);
+        u2(methodRef(VM, "growStack", "(I)V"));
+        loadState();
+        int delta = body.size()-skip;
+        byte[] patched = body.toByteArray(); // the branch offset is only known now
+        patched[skip+1] = (byte) (delta >> 8);
+        patched[skip+2] = (byte) delta;
+        body.reset();
+        body.write(patched, 0, patched.length);
+    }
+
+    // call of the function at tmp, returning to next
+    private void call(int next) throws IOException {
+        storeState();
+        aload(VM_LOCAL);
+        iload(TMP);
+        iconst(next);
+        op(INVOKEVIRTUAL);
+        u2(methodRef(VM, "callFromJit", "(II)V"));
+        loadState();
+    }
+
+    private byte[] runMethod() throws IOException {
+        List<Integer> addresses = instructions();
+        int end = addresses.get(addresses.size()-1)+size(addresses.get(addresses.size()-1));
+        Map<Integer,Integer> offsets = new HashMap<>(); // SVM address -> bytecode offset
+        Map<Integer,Integer> fixups = new HashMap<>();  // bytecode offset of a branch -> SVM target
+        loadState();
+        reserve(addresses);
+        for (int a : addresses) {
+            offsets.put(a, body.size());
+            int next = a+size(a);
+            int k = next-a == 2 ? code[a+1] : 0;
+            for (int op : components(code, a)) translate(op, k, next, next == end, fixups);
+        }
+        byte[] bytes = body.toByteArray();
+        for (Map.Entry<Integer,Integer> f : fixups.entrySet()) {
+            Integer target = offsets.get(f.getValue());
+            if (target == null) throw new UnsupportedOperationException("Branch out of the function at address "+entry);
+            if (target <= f.getKey()) throw new UnsupportedOperationException("Backward branch in function at address "+entry);
+            int delta = target-f.getKey();
+            if (delta < Short.MIN_VALUE || delta > Short.MAX_VALUE) throw new UnsupportedOperationException("Function too large");
+            bytes[f.getKey()+1] = (byte) (delta >> 8);
+            bytes[f.getKey()+2] = (byte) delta;
+        }
+        if (bytes.length > 65535) throw new UnsupportedOperationException("Function too large");
+        return bytes;
+    }
+
+    private void translate(int op, int k, int next, boolean last, Map<Integer,Integer> fixups) throws IOException {
+        switch (op) {
+            case Predecoder.PUSH:
+                iinc(SP, -1);
+                aload(STACK);
+                iload(SP);
+                iconst(k);
+                op(IASTORE);
+                break;
+            case Predecoder.POP:
+                iinc(SP, 1);
+                break;
+            case Predecoder.ADD: arithmetic(IADD); break;
+            case Predecoder.SUB: arithmetic(ISUB); break;
+            case Predecoder.MULT: arithmetic(IMUL); break;
+            case Predecoder.DIV: arithmetic(IDIV); break;
+            case Predecoder.STOREW: // vm.store(stack[sp], stack[sp+1]); sp += 2
+                aload(VM_LOCAL);
+                aload(STACK);
+                iload(SP);
+                op(IALOAD);
+                aload(STACK);
+                iload(SP);
+                op(ICONST_0+1, IADD, IALOAD);
+                iinc(SP, 2);
+                op(INVOKEVIRTUAL);
+                u2(methodRef(VM, "store", "(II)V"));
+                break;
+            case Predecoder.LOADW: // stack[sp] = vm.load(stack[sp])
+                aload(STACK);
+                iload(SP);
+                aload(VM_LOCAL);
+                aload(STACK);
+                iload(SP);
+                op(IALOAD, INVOKEVIRTUAL);
+                u2(methodRef(VM, "load", "(I)I"));
+                op(IASTORE);
+                break;
+            case Predecoder.BRANCH: branch(GOTO, k, fixups); break;
+            case Predecoder.BRANCHEQ: compareAndBranch(IF_ICMPEQ, k, fixups); break;
+            case Predecoder.BRANCHLESSEQ: compareAndBranch(IF_ICMPLE, k, fixups); break;
+            case Predecoder.JS:
+                pop(TMP);
+                if (last) { // return: ra is set as the interpreter's js would
+                    iconst(next);
+                    istore(RA);
+                    storeState();
+                    iload(TMP);
+                    op(IRETURN);
+                } else call(next);
+                break;
+            case Predecoder.VCALL: // tmp = vm.method(stack[sp], k), the object stays
+                aload(VM_LOCAL);
+                aload(STACK);
+                iload(SP);
+                op(IALOAD);
+                iconst(k);
+                op(INVOKEVIRTUAL);
+                u2(methodRef(VM, "method", "(II)I"));
+                istore(TMP);
+                call(next);
+                break;
+            case Predecoder.LOADRA: push(RA); break;
+            case Predecoder.STORERA: pop(RA); break;
+            case Predecoder.LOADTM: push(TM); break;
+            case Predecoder.STORETM: pop(TM); break;
+            case Predecoder.LOADFP: push(FP); break;
+            case Predecoder.STOREFP: pop(FP); break;
+            case Predecoder.COPYFP: // fp = sp+vm.stackLow
+                iload(SP);
+                aload(VM_LOCAL);
+                op(GETFIELD);
+                u2(fieldRef(VM, "stackLow", "I"));
+                op(IADD);
+                istore(FP);
+                break;
+            case Predecoder.LOADHP: push(HP); break;
+            case Predecoder.STOREHP: pop(HP); break;
+            case Predecoder.NEW: // may collect, which walks the frames from vm.fp
+                storeState();
+                aload(VM_LOCAL);
+                iconst(next-1);
+                op(INVOKEVIRTUAL);
+                u2(methodRef(VM, "newObject", "(I)V"));
+                loadState();
+                break;
+            case Predecoder.PRINT:
+                store(SP);
+                aload(VM_LOCAL);
+                op(INVOKEVIRTUAL);
+                u2(methodRef(VM, "print", "()V"));
+                break;
+            default:
+                throw new UnsupportedOperationException("Cannot translate "+Predecoder.NAMES[op]+" in function at address "+entry);
+        }
+    }
+
+}
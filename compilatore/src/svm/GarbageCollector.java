@@ -0,0 +1,250 @@
+package svm;
+
+import java.util.Arrays;
+
+// Generational copying collector for the objects created by the "new" instruction.
+// An object is laid out as
+//   field n-1 ... field 0, dispatch pointer, header
+// and the object pointer is the address of the dispatch pointer, so fields keep
+// their offsets -1, -2, ... The header, pushed by the code of NewNode, holds the
+// number of fields and which of them are references (see header()).
+// The heap starts with the dispatch tables (everything below hp at the first
+// "new", never collected), then a nursery where objects are created, then the
+// old generation. The nursery takes a fraction of the heap limit, up to
+// DEFAULT_NURSERY_SIZE words (see setNurserySize()). A minor collection copies
+// the live nursery objects to the end of the old generation and empties the
+// nursery. FOOL fields are never assigned after the object is created, so an
+// object only refers to older ones: the old generation cannot point into the
+// nursery, and the frames on the stack are the only roots (no write barrier, no
+// remembered set). When the old generation could not take every nursery object,
+// a full collection copies all live objects into a fresh memory instead (see
+// Memory.toSpace()), compacted right after the dispatch tables: the nursery
+// follows them, and the old generation goes on after the nursery.
+// Roots are found precisely through the frame maps emitted by the code generator
+// ("gcmap" lines, SVMParser.frameMaps): for each safepoint address (a "new" or
+// the return address of a call) the offset from $fp of the Control Link (0 in
+// the global frame) followed by the offsets of the frame slots holding references.
+// Without frame maps objects are allocated up to the heap limit and never collected.
+public class GarbageCollector {
+
+    public static final int DEFAULT_NURSERY_SIZE = 1 << 16;
+    private static final int MIN_NURSERY_SIZE = 1 << 6; // larger than any object
+
+    // header: number of fields in the low COUNT_BITS, then one bit per field,
+    // set if the field is a reference; headers are never negative, a negative
+    // header marks an object already copied (~ its new address)
+    public static final int MAX_FIELDS = 26;
+    private static final int COUNT_BITS = 5;
+
+    public static int header(int fields, int references) {
+        if (fields < 0 || fields > MAX_FIELDS || (references >>> fields) != 0)
+            throw new IllegalArgumentException("Invalid object layout: "+fields+" fields");
+        return references << COUNT_BITS | fields;
+    }
+
+    static int fields(int header) {
+        return header & ((1 << COUNT_BITS)-1);
+    }
+
+    private final ExecuteVM vm;
+    private int[][] frameMaps;
+    private int nurserySize; // 0: a quarter of the heap limit, up to DEFAULT_NURSERY_SIZE
+
+    private int permanentEnd = -1; // end of the dispatch tables, set by the first allocation
+    private int nurseryStart, nurseryTop, nurseryEnd; // nursery: [nurseryStart, nurseryEnd)
+    private int oldTop; // old generation: [permanentEnd, nurseryStart) and [nurseryEnd, oldTop)
+    private int written;                // end of the words ever written by allocate() or a collection
+
+    // state of a collection: objects in [low, high) of from are copied to to at toTop
+    private Memory from, to;
+    private int low, high, toTop;
+    private int[] grey = new int[256]; // copied objects whose fields are still to be forwarded
+    private int greyCount;
+
+    // statistics
+    private long objects, words, promoted;
+    private int minorCollections, fullCollections;
+    private long minorNanos, fullNanos, maxPauseNanos, startNanos;
+
+    GarbageCollector(ExecuteVM vm) {
+        this.vm = vm;
+    }
+
+    // frameMaps (SVMParser.frameMaps of the running code) enable the collection;
+    // to be set before the program runs
+    public void setFrameMaps(int[][] frameMaps) {
+        this.frameMaps = frameMaps;
+    }
+
+    public void setNurserySize(int words) {
+        if (words <= 0) throw new IllegalArgumentException("Nursery size must be positive");
+        nurserySize = words;
+    }
+
+    private int nurserySize() {
+        if (nurserySize > 0) return nurserySize;
+        return Math.max(MIN_NURSERY_SIZE, Math.min(DEFAULT_NURSERY_SIZE, (vm.maxHeap-permanentEnd)/4));
+    }
+
+    // address of size free words for a new object; the "new" instruction at
+    // address site is executing and its fields are still on the stack
+    int allocate(int size, int site) {
+        if (permanentEnd < 0) start();
+        if (nurseryTop+size > nurseryEnd) collect(size, site);
+        int address = nurseryTop;
+        nurseryTop += size;
+        if (nurseryTop > vm.heap.size()) vm.growHeap(nurseryTop-1);
+        written = Math.max(written, nurseryTop);
+        objects++;
+        words += size;
+        return address;
+    }
+
+    private void start() {
+        permanentEnd = nurseryStart = nurseryTop = vm.hp;
+        nurseryEnd = frameMaps == null ? vm.maxHeap : (int) Math.min((long) permanentEnd+nurserySize(), vm.maxHeap);
+        oldTop = nurseryEnd;
+        startNanos = System.nanoTime();
+    }
+
+    private void collect(int size, int site) {
+        if (frameMaps == null)
+            throw new IllegalStateException("Out of heap memory: more than "+vm.maxHeap+" words");
+        long start = System.nanoTime();
+        int used = nurseryTop-nurseryStart;
+        if ((long) oldTop+used <= vm.maxHeap && nurseryEnd-nurseryStart >= size) { // minor: every survivor fits in the old generation
+            if (oldTop+used > vm.heap.size()) vm.growHeap(oldTop+used-1);
+            from = to = vm.heap;
+            low = nurseryStart;
+            high = nurseryTop;
+            toTop = oldTop;
+            scavenge(site);
+            promoted += toTop-oldTop;
+            oldTop = toTop;
+            minorCollections++;
+            minorNanos += pause(start);
+        } else { // full: the whole heap is copied
+            from = vm.heap;
+            to = from.toSpace();
+            to.grow(from.size());
+            from.copy(0, to, 0, permanentEnd);
+            low = permanentEnd;
+            high = oldTop;
+            toTop = permanentEnd;
+            scavenge(site);
+            vm.heap = from.collected(to, toTop);
+            nurseryStart = toTop;
+            nurseryEnd = oldTop = (int) Math.min((long) nurseryStart+Math.max(nurserySize(), size), vm.maxHeap);
+            fullCollections++;
+            fullNanos += pause(start);
+        }
+        written = Math.max(written, toTop);
+        nurseryTop = nurseryStart;
+        from = to = null;
+        if (nurseryEnd-nurseryStart < size)
+            throw new IllegalStateException("Out of heap memory: more than "+vm.maxHeap+" words");
+    }
+
+    int written() {
+        return written;
+    }
+
+    int[][] frameMaps() {
+        return frameMaps;
+    }
+
+    // allocation state, saved and restored by Checkpoint
+    int[] state() {
+        return new int[] {nurserySize, permanentEnd, nurseryTop, nurseryEnd, oldTop, written, nurseryStart};
+    }
+
+    void restore(int[] state) {
+        nurserySize = state[0];
+        permanentEnd = state[1];
+        nurseryTop = state[2];
+        nurseryEnd = state[3];
+        oldTop = state[4];
+        written = state[5];
+        nurseryStart = state[6];
+        if (permanentEnd >= 0) startNanos = System.nanoTime();
+    }
+
+    // forgets the objects and the statistics, for ExecuteVM.reset()
+    void reset() {
+        permanentEnd = -1;
+        nurseryStart = nurseryTop = nurseryEnd = oldTop = written = 0;
+        objects = words = promoted = 0;
+        minorCollections = fullCollections = 0;
+        minorNanos = fullNanos = maxPauseNanos = 0;
+    }
+
+    private long pause(long start) {
+        long nanos = System.nanoTime()-start;
+        maxPauseNanos = Math.max(maxPauseNanos, nanos);
+        return nanos;
+    }
+
+    // copies the objects reachable from the frames, from the one executing site
+    // down to the global frame, then the objects reachable from the copied ones
+    private void scavenge(int site) {
+        int fp = vm.fp, pc = site, calls = vm.jitCalls;
+        while (true) {
+            if (calls > 0 && pc == vm.code.length) pc = vm.jitReturns[--calls]; // JITRETURN, see ExecuteVM.callFromJit
+            int[] map = pc < frameMaps.length ? frameMaps[pc] : null;
+            if (map == null) throw new IllegalStateException("No frame map for address "+pc);
+            for (int j = 1; j < map.length; j++) {
+                int slot = fp+map[j]-vm.stackLow;
+                int v = forward(vm.stack[slot]);
+                vm.stack[slot] = v;
+            }
+            if (map[0] == 0) break; // global frame
+            pc = vm.stack[fp-1-vm.stackLow];    // Return Address
+            fp = vm.stack[fp+map[0]-vm.stackLow]; // Control Link
+        }
+        while (greyCount > 0) {
+            int object = grey[--greyCount];
+            int references = to.load(object+1) >>> COUNT_BITS;
+            for (int i = 0; references != 0; i++, references >>>= 1)
+                if ((references & 1) != 0) to.store(object-1-i, forward(to.load(object-1-i)));
+        }
+    }
+
+    // new address of the object at p, copying it if needed
+    private int forward(int p) {
+        if (p < low || p >= high) return p; // null, dispatch table or not collected
+        int header = from.load(p+1);
+        if (header < 0) return ~header;
+        int fields = fields(header);
+        reserve(fields+2);
+        from.copy(p-fields, to, toTop, fields+2);
+        int copy = toTop+fields;
+        toTop += fields+2;
+        from.store(p+1, ~copy);
+        if (header >>> COUNT_BITS != 0) {
+            if (greyCount == grey.length) grey = Arrays.copyOf(grey, 2*grey.length);
+            grey[greyCount++] = copy;
+        }
+        return copy;
+    }
+
+    // room for n more words at toTop (a minor collection has it already)
+    private void reserve(int n) {
+        if (toTop+n <= to.size()) return;
+        if ((long) toTop+n > vm.maxHeap)
+            throw new IllegalStateException("Out of heap memory: more than "+vm.maxHeap+" words");
+        to.grow((int) Math.min(Math.max(2L*to.size(), toTop+n), vm.maxHeap));
+    }
+
+    public String report() {
+        if (permanentEnd < 0) return "gc: no objects allocated";
+        long pauses = minorNanos+fullNanos;
+        double mutatorSeconds = Math.max(System.nanoTime()-startNanos-pauses, 1)/1e9;
+        return String.format("gc: %d objects (%d words) allocated, %.1f Mwords/s of mutator time%n"
+            +"  %d minor collections (%.3f ms), %d full collections (%.3f ms), max pause %.3f ms%n"
+            +"  %d words promoted, %d words in the old generation, %d in the nursery",
+            objects, words, words/mutatorSeconds/1e6,
+            minorCollections, minorNanos/1e6, fullCollections, fullNanos/1e6, maxPauseNanos/1e6,
+            promoted, nurseryStart-permanentEnd+oldTop-nurseryEnd, nurseryTop-nurseryStart);
+    }
+
+}
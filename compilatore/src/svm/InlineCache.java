@@ -0,0 +1,98 @@
+package svm;
+
+// Inline caches of the "vcall" instructions (method calls) for
+// ExecuteVM.cpuPredecoded(), one per call site (numbered by Predecoder): each
+// keeps up to WAYS dispatch pointers seen at the site with the method address
+// they lead to, so a call on an object of a cached class costs a comparison
+// instead of the two dependent loads of the dispatch table. A monomorphic site
+// hits on its first entry; a site which has seen more than WAYS classes is
+// megamorphic, and its further classes are looked up at every call.
+// Dispatch tables are built before the first "new" and never move or change
+// (see GarbageCollector), so entries never need to be invalidated.
+// Each ExecuteVM has its own caches: they are not shared between threads.
+public class InlineCache {
+
+    public static final int WAYS = 4;
+
+    private final ExecuteVM vm;
+    private final int[] decoded;
+    private final int[] keys;       // WAYS dispatch pointers per site, -1: free
+    private final int[] targets;    // method address for each key
+    private final long[] hits, misses;
+    private final boolean[] megamorphic;
+
+    InlineCache(ExecuteVM vm, int[] decoded) {
+        this.vm = vm;
+        this.decoded = decoded;
+        int sites = Predecoder.sites(decoded); // not scanning the code: caches are made for each VM
+        keys = new int[sites*WAYS];
+        targets = new int[sites*WAYS];
+        hits = new long[sites];
+        misses = new long[sites];
+        megamorphic = new boolean[sites];
+        clear();
+    }
+
+    void clear() {
+        java.util.Arrays.fill(keys, -1);
+        java.util.Arrays.fill(hits, 0);
+        java.util.Arrays.fill(misses, 0);
+        java.util.Arrays.fill(megamorphic, false);
+    }
+
+    // address of the method at offset in the dispatch table dispatch, called at site
+    int target(int site, int dispatch, int offset) {
+        int e = site*WAYS;
+        if (keys[e] == dispatch) {
+            hits[site]++;
+            return targets[e];
+        }
+        return lookup(site, dispatch, offset);
+    }
+
+    private int lookup(int site, int dispatch, int offset) {
+        int e = site*WAYS;
+        for (int w = 1; w < WAYS; w++)
+            if (keys[e+w] == dispatch) {
+                hits[site]++;
+                return targets[e+w];
+            }
+        misses[site]++;
+        int method = vm.load(dispatch+offset);
+        for (int w = 0; w < WAYS; w++)
+            if (keys[e+w] == -1) {
+                keys[e+w] = dispatch;
+                targets[e+w] = method;
+                return method;
+            }
+        megamorphic[site] = true;
+        return method;
+    }
+
+    public String report() {
+        int[] address = new int[hits.length]; // of each site
+        for (int a = 0; 2*a < decoded.length; a++) if (decoded[2*a] == Predecoder.VCALL) address[decoded[2*a+3]] = a;
+        long calls = 0, hit = 0;
+        int called = 0, polymorphic = 0, mega = 0;
+        StringBuilder sites = new StringBuilder();
+        for (int s = 0; s < address.length; s++) {
+            long n = hits[s]+misses[s];
+            if (n == 0) continue;
+            int classes = 0;
+            for (int w = 0; w < WAYS; w++) if (keys[s*WAYS+w] != -1) classes++;
+            String kind = megamorphic[s] ? "megamorphic" : classes > 1 ? "polymorphic" : "monomorphic";
+            if (megamorphic[s]) mega++;
+            else if (classes > 1) polymorphic++;
+            called++;
+            calls += n;
+            hit += hits[s];
+            sites.append(String.format("  %10d %14d %9.2f%% %s%n", address[s], n, 100.0*hits[s]/n, kind));
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("inline caches: %d of %d call sites used, %d calls, %.2f%% hits (%d monomorphic, %d polymorphic, %d megamorphic)%n",
+            called, address.length, calls, calls == 0 ? 0.0 : 100.0*hit/calls, called-polymorphic-mega, polymorphic, mega));
+        if (called > 0) b.append(String.format("  %10s %14s %10s%n", "address", "calls", "hits")).append(sites);
+        return b.toString();
+    }
+
+}
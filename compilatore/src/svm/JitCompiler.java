@@ -0,0 +1,81 @@
+package svm;
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Second tier of ExecuteVM.cpuPredecoded(): counts the calls of each function
+// (at its cfp) and, when a function reaches the threshold, translates it to JVM
+// bytecode (FunctionTranslator) on a background thread and loads it as a hidden
+// class. Compiled code is entered on the next call of the function; functions
+// that cannot be translated or loaded stay interpreted.
+// One JitCompiler serves one program and can be shared by the VMs running it.
+public class JitCompiler {
+
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    // nesting limit of compiled functions (each also nests an interpreter run()
+    // for its calls) on the Java stack: deeper calls are interpreted
+    static final int MAX_DEPTH = 1000;
+
+    interface Compiled {
+        int run(ExecuteVM vm); // returns the address the function returns to
+    }
+
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "svm-jit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final int[] code;
+    private final int threshold;
+    private final int[] calls;           // per entry address; racy, only used as a heuristic
+    private final Compiled[] compiled;   // per entry address; Compiled objects are immutable
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+    private volatile int compiledCount;
+
+    public JitCompiler(int[] code) {
+        this(code, DEFAULT_THRESHOLD);
+    }
+
+    public JitCompiler(int[] code, int threshold) {
+        this.code = code;
+        this.threshold = threshold;
+        calls = new int[code.length];
+        compiled = new Compiled[code.length];
+    }
+
+    // called by the interpreter at each function entry
+    Compiled entered(int entry) {
+        Compiled f = compiled[entry];
+        if (f == null && ++calls[entry] == threshold) COMPILER.execute(() -> compile(entry));
+        return f;
+    }
+
+    private void compile(int entry) {
+        try {
+            byte[] classFile = FunctionTranslator.translate(code, entry);
+            MethodHandles.Lookup lookup = ExecuteVM.LOOKUP.defineHiddenClass(classFile, true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class));
+            compiled[entry] = (Compiled) constructor.invoke();
+            compiledCount++;
+        } catch (Throwable e) { // fall back to the interpreter
+            failures.add("function at address "+entry+": "+e);
+        }
+    }
+
+    // waits for the compilations requested so far
+    public void awaitCompilations() throws InterruptedException, ExecutionException {
+        COMPILER.submit(() -> {}).get();
+    }
+
+    public String report() {
+        StringBuilder b = new StringBuilder("jit: "+compiledCount+" functions compiled, "+failures.size()+" not compiled");
+        synchronized (failures) {
+            for (String f : failures) b.append("\n  ").append(f);
+        }
+        return b.toString();
+    }
+
+}
@@ -0,0 +1,47 @@
+package svm;
+
+import java.nio.IntBuffer;
+
+// Backing store of the SVM heap, used by ExecuteVM (lw, sw, new) and by
+// GarbageCollector: words addressed from 0, made addressable on demand.
+// ArrayMemory keeps them in an int[]; OffHeapMemory keeps them outside the Java
+// heap, optionally in a memory-mapped file.
+public abstract class Memory {
+
+    abstract int load(int address);
+
+    abstract void store(int address, int value);
+
+    // words currently addressable, from 0
+    abstract int size();
+
+    // makes at least size words addressable, keeping their contents
+    abstract void grow(int size);
+
+    // sets words [0, n) to 0
+    abstract void clear(int n);
+
+    // copies n words from address from to address to of dest (addressable)
+    void copy(int from, Memory dest, int to, int n) {
+        for (int i = 0; i < n; i++) dest.store(to+i, load(from+i));
+    }
+
+    // n words from address to the buffer, and back (see Checkpoint)
+    void get(int address, int n, IntBuffer to) {
+        for (int i = 0; i < n; i++) to.put(load(address+i));
+    }
+
+    void put(IntBuffer from, int address, int n) {
+        for (int i = 0; i < n; i++) store(address+i, from.get());
+    }
+
+    // empty memory receiving the live objects in a full collection
+    abstract Memory toSpace();
+
+    // memory holding the heap after a full collection copied its live words
+    // [0, words) into to: to itself, unless this memory must be kept
+    Memory collected(Memory to, int words) {
+        return to;
+    }
+
+}
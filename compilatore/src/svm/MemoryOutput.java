@@ -0,0 +1,33 @@
+package svm;
+
+import java.util.Arrays;
+
+// Keeps the values, for programs embedded in Java code.
+public class MemoryOutput implements Output {
+
+    private int[] values = new int[16];
+    private int count;
+
+    @Override
+    public void print(int value) {
+        if (count == values.length) values = Arrays.copyOf(values, 2*count);
+        values[count++] = value;
+    }
+
+    public int[] values() {
+        return Arrays.copyOf(values, count);
+    }
+
+    public void clear() {
+        count = 0;
+    }
+
+    // the values as TextOutput would write them
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < count; i++) b.append(values[i]).append('\n');
+        return b.toString();
+    }
+
+}
@@ -0,0 +1,226 @@
+package svm;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Assembled SVM program in binary form (".svmo"), loaded by mapping the file:
+// no lexing or parsing, the code is copied as it is.
+// The file holds little-endian ints:
+//   magic, version, instruction set (see INSTRUCTION_SET), the code (length,
+//   then the number of words up to the last non-zero one, and those words),
+//   the frame maps (count, or -1 if none, then address, length and entries of
+//   each, as in Checkpoint), the symbol table (count, then address and name of
+//   each label) and the debug info (count, then address and name of each
+//   function, e.g. from compiler.CodeGenerationASTVisitor.functions()).
+// A name is its length in bytes, then its UTF-8 bytes padded to a multiple of 4.
+// usage: java svm.ObjectFile assemble file.asm file.svmo
+//        java svm.ObjectFile disassemble file.svmo file.asm
+//        java svm.ObjectFile run file.svmo
+public final class ObjectFile {
+
+    private static final int MAGIC = 0x4f4d5653; // "SVMO"
+    private static final int VERSION = 1;
+
+    // the opcodes are SVMLexer token types, renumbered when instructions (or
+    // superinstructions, see SuperinstructionGenerator) change: files of another
+    // instruction set are rejected
+    static final int INSTRUCTION_SET;
+    static {
+        String[] names = new String[SVMParser.VOCABULARY.getMaxTokenType()+1];
+        for (int t = 0; t < names.length; t++) names[t] = SVMParser.VOCABULARY.getLiteralName(t);
+        INSTRUCTION_SET = Arrays.hashCode(names);
+    }
+
+    private final int[] code;
+    private final int[][] frameMaps;               // null: none
+    private final Map<String,Integer> symbols;     // label -> address
+    private final Map<Integer,String> functions;   // entry address -> name
+
+    public ObjectFile(int[] code, int[][] frameMaps, Map<String,Integer> symbols, Map<Integer,String> functions) {
+        this.code = code;
+        this.frameMaps = frameMaps;
+        this.symbols = new TreeMap<>(symbols);
+        this.functions = new TreeMap<>(functions);
+    }
+
+    // the program of an assembly file, with its labels and no debug info (see Assembler)
+    public static ObjectFile assemble(Path asm) throws IOException {
+        return Assembler.assemble(asm);
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public int[][] getFrameMaps() {
+        return frameMaps;
+    }
+
+    public Map<String,Integer> getSymbols() {
+        return Collections.unmodifiableMap(symbols);
+    }
+
+    public Map<Integer,String> getFunctions() {
+        return Collections.unmodifiableMap(functions);
+    }
+
+    // -1 if undefined
+    public int address(String label) {
+        return symbols.getOrDefault(label, -1);
+    }
+
+    private static int words(String name) {
+        return 1+(name.getBytes(StandardCharsets.UTF_8).length+3)/4;
+    }
+
+    private static void putName(ByteBuffer out, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length).put(bytes);
+        for (int p = bytes.length; p % 4 != 0; p++) out.put((byte) 0);
+    }
+
+    private static String getName(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        in.position(in.position()+(-bytes.length & 3));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void write(Path file) throws IOException {
+        int codeWords = code.length; // SVMParser.code is longer than the program, filled with zeros
+        while (codeWords > 0 && code[codeWords-1] == 0) codeWords--;
+        long size = 3+2+codeWords+1+1+1;
+        if (frameMaps != null)
+            for (int[] map : frameMaps) if (map != null) size += 2+map.length;
+        for (String s : symbols.keySet()) size += 1+words(s);
+        for (String f : functions.values()) size += 1+words(f);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, 4*size);
+            ByteBuffer out = bytes.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(MAGIC).putInt(VERSION).putInt(INSTRUCTION_SET);
+            out.putInt(code.length).putInt(codeWords);
+            out.asIntBuffer().put(code, 0, codeWords);
+            out.position(out.position()+4*codeWords);
+            if (frameMaps == null) out.putInt(-1);
+            else {
+                int count = 0;
+                for (int[] map : frameMaps) if (map != null) count++;
+                out.putInt(count);
+                for (int a = 0; a < frameMaps.length; a++)
+                    if (frameMaps[a] != null) {
+                        out.putInt(a).putInt(frameMaps[a].length);
+                        for (int e : frameMaps[a]) out.putInt(e);
+                    }
+            }
+            out.putInt(symbols.size());
+            for (Map.Entry<String,Integer> s : symbols.entrySet()) putName(out.putInt(s.getValue()), s.getKey());
+            out.putInt(functions.size());
+            for (Map.Entry<Integer,String> f : functions.entrySet()) putName(out.putInt(f.getKey()), f.getValue());
+            bytes.force();
+        }
+    }
+
+    public static ObjectFile read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) throw new IOException("Not an SVM object file: "+file);
+            if (in.getInt() != INSTRUCTION_SET) throw new IOException("SVM object file of another instruction set: "+file);
+            int[] code = new int[in.getInt()];
+            int codeWords = in.getInt();
+            in.asIntBuffer().get(code, 0, codeWords);
+            in.position(in.position()+4*codeWords);
+            int[][] frameMaps = null;
+            int count = in.getInt();
+            if (count >= 0) {
+                frameMaps = new int[code.length+1][];
+                for (int m = 0; m < count; m++) {
+                    int address = in.getInt();
+                    frameMaps[address] = new int[in.getInt()];
+                    in.asIntBuffer().get(frameMaps[address]);
+                    in.position(in.position()+4*frameMaps[address].length);
+                }
+            }
+            Map<String,Integer> symbols = new HashMap<>();
+            for (int s = in.getInt(); s > 0; s--) {
+                int address = in.getInt();
+                symbols.put(getName(in), address);
+            }
+            Map<Integer,String> functions = new HashMap<>();
+            for (int f = in.getInt(); f > 0; f--) {
+                int address = in.getInt();
+                functions.put(address, getName(in));
+            }
+            return new ObjectFile(code, frameMaps, symbols, functions);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupted SVM object file: "+file, e);
+        }
+    }
+
+    // assembly text that assembles back to the same code: the labels of the symbol
+    // table (and new ones where branches and frame maps need them), numeric operands
+    public String disassemble() {
+        int end = code.length;
+        while (end > 0 && code[end-1] == 0) end--;
+        Map<Integer,List<String>> labels = new TreeMap<>();
+        for (Map.Entry<String,Integer> s : symbols.entrySet())
+            labels.computeIfAbsent(s.getValue(), a -> new ArrayList<>()).add(s.getKey());
+        List<Integer> targets = new ArrayList<>();
+        for (int a = 0; a < end; a += size(a)) {
+            int op = Predecoder.fromToken(code[a]);
+            if (op == Predecoder.INVALID) throw new IllegalArgumentException("Invalid instruction at address "+a);
+            if (Predecoder.isBranch(op)) targets.add(code[a+1]);
+        }
+        if (frameMaps != null)
+            for (int a = 0; a < frameMaps.length; a++) if (frameMaps[a] != null) targets.add(a);
+        for (int t : targets)
+            if (!labels.containsKey(t)) {
+                String name = "at"+t;
+                while (symbols.containsKey(name)) name += "x";
+                labels.put(t, new ArrayList<>(List.of(name)));
+            }
+        StringBuilder b = new StringBuilder();
+        for (int a = 0; a < end; a += size(a)) {
+            for (String l : labels.getOrDefault(a, List.of())) b.append(l).append(":\n");
+            String name = SVMParser.VOCABULARY.getLiteralName(code[a]);
+            b.append(name, 1, name.length()-1);
+            int op = Predecoder.fromToken(code[a]);
+            if (Predecoder.isBranch(op)) b.append(' ').append(labels.get(code[a+1]).get(0));
+            else if (Predecoder.hasOperand(op)) b.append(' ').append(code[a+1]);
+            b.append('\n');
+        }
+        for (Map.Entry<Integer,List<String>> l : labels.entrySet())
+            if (l.getKey() >= end) for (String name : l.getValue()) b.append(name).append(":\n");
+        if (frameMaps != null)
+            for (int a = 0; a < frameMaps.length; a++)
+                if (frameMaps[a] != null) {
+                    b.append("gcmap ").append(labels.get(a).get(0));
+                    for (int e : frameMaps[a]) b.append(' ').append(e);
+                    b.append('\n');
+                }
+        return b.toString();
+    }
+
+    private int size(int a) {
+        return Predecoder.hasOperand(Predecoder.fromToken(code[a])) ? 2 : 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("assemble"))
+            assemble(Path.of(args[1])).write(Path.of(args[2]));
+        else if (args.length == 3 && args[0].equals("disassemble"))
+            Files.writeString(Path.of(args[2]), read(Path.of(args[1])).disassemble());
+        else if (args.length == 2 && args[0].equals("run")) {
+            ObjectFile object = read(Path.of(args[1]));
+            new ExecuteVM(new Program(object.code, object.frameMaps), ExecuteVM.DEFAULT_STACK_SIZE, ExecuteVM.DEFAULT_HEAP_SIZE).cpuPredecoded();
+        } else
+            System.out.println("usage: ObjectFile assemble file.asm file.svmo\n"+
+                               "       ObjectFile disassemble file.svmo file.asm\n"+
+                               "       ObjectFile run file.svmo");
+    }
+
+}
@@ -0,0 +1,117 @@
+package svm;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+
+// Heap words outside the Java heap, in chunks of direct buffers added as the
+// heap grows (nothing is copied), so heaps up to ExecuteVM.STACK_BASE words
+// (4 GB) put no load on the JVM garbage collector.
+// With map() the chunks are mapped from a file, which then is the heap: its
+// contents survive the VM (force() writes them out) and a file left by a
+// previous run is mapped back as it is. Words are stored little-endian.
+// Full collections copy the live objects to direct buffers and back to the file.
+public class OffHeapMemory extends Memory implements Closeable {
+
+    private static final int CHUNK_BITS = 20; // 1M words (4 MB) per chunk
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK-1;
+
+    private final FileChannel file; // null: direct buffers
+    private ByteBuffer[] buffers = new ByteBuffer[0];
+    private IntBuffer[] chunks = new IntBuffer[0];
+
+    private OffHeapMemory(FileChannel file) {
+        this.file = file;
+    }
+
+    public static OffHeapMemory allocate() {
+        return new OffHeapMemory(null);
+    }
+
+    public static OffHeapMemory map(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        OffHeapMemory memory = new OffHeapMemory(file);
+        memory.grow((int) Math.min((file.size()+4L*CHUNK-1)/(4L*CHUNK)*CHUNK, ExecuteVM.STACK_BASE));
+        return memory;
+    }
+
+    @Override
+    int load(int address) {
+        return chunks[address >>> CHUNK_BITS].get(address & MASK);
+    }
+
+    @Override
+    void store(int address, int value) {
+        chunks[address >>> CHUNK_BITS].put(address & MASK, value);
+    }
+
+    @Override
+    int size() {
+        return chunks.length << CHUNK_BITS;
+    }
+
+    @Override
+    void grow(int size) {
+        int n = (int) (((long) size+CHUNK-1) >>> CHUNK_BITS);
+        if (n <= chunks.length) return;
+        int old = chunks.length;
+        buffers = Arrays.copyOf(buffers, n);
+        chunks = Arrays.copyOf(chunks, n);
+        try {
+            for (int c = old; c < n; c++) {
+                buffers[c] = file == null ? ByteBuffer.allocateDirect(4*CHUNK)
+                    : file.map(FileChannel.MapMode.READ_WRITE, (long) c*4*CHUNK, 4*CHUNK);
+                chunks[c] = buffers[c].order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    void clear(int n) {
+        for (int a = 0; a < n; a++) store(a, 0);
+    }
+
+    @Override
+    void copy(int from, Memory dest, int to, int n) {
+        if (!(dest instanceof OffHeapMemory)) {
+            super.copy(from, dest, to, n);
+            return;
+        }
+        IntBuffer[] destChunks = ((OffHeapMemory) dest).chunks;
+        while (n > 0) { // bulk copies within chunks
+            int k = Math.min(n, Math.min(CHUNK-(from & MASK), CHUNK-(to & MASK)));
+            destChunks[to >>> CHUNK_BITS].put(to & MASK, chunks[from >>> CHUNK_BITS], from & MASK, k);
+            from += k;
+            to += k;
+            n -= k;
+        }
+    }
+
+    @Override
+    Memory toSpace() {
+        return allocate();
+    }
+
+    @Override
+    Memory collected(Memory to, int words) {
+        if (file == null) return to;
+        to.copy(0, this, 0, words); // the file stays the heap
+        return this;
+    }
+
+    // writes the mapped heap to the file
+    public void force() {
+        if (file != null) for (ByteBuffer b : buffers) ((MappedByteBuffer) b).force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (file != null) file.close();
+    }
+
+}
@@ -0,0 +1,19 @@
+package svm;
+
+// Receives the values printed by the program (print instruction). Sinks may
+// buffer: ExecuteVM flushes its output when cpu() or cpuPredecoded() ends,
+// at halt or on failure.
+// TextOutput writes them as lines of text (the default, to System.out),
+// BinaryOutput as a stream of ints, MemoryOutput keeps them; DISCARD drops them.
+public interface Output {
+
+    Output DISCARD = value -> {};
+
+    void print(int value);
+
+    // print with nothing on the stack (never generated by the compiler)
+    default void printEmptyStack() {}
+
+    default void flush() {}
+
+}
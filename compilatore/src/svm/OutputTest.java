@@ -0,0 +1,37 @@
+package svm;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Checks that TextOutput writes the same lines with any buffer size, in
+// particular when a line only just fits, or does not fit, in the rest of the
+// buffer (a full buffer is flushed first).
+// usage: java svm.OutputTest
+public class OutputTest {
+
+    private static final int[] VALUES = {0, 7, -1, 1234567, Integer.MAX_VALUE, Integer.MIN_VALUE, 42};
+
+    // the lines of VALUES, each followed by an empty stack
+    private static String written(int bufferSize) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        TextOutput output = new TextOutput(bytes, bufferSize);
+        for (int v : VALUES) {
+            output.print(v);
+            output.printEmptyStack();
+        }
+        output.flush();
+        return bytes.toString(StandardCharsets.US_ASCII);
+    }
+
+    public static void main(String[] args) {
+        StringBuilder expected = new StringBuilder();
+        for (int v : VALUES) expected.append(v).append("\nEmpty stack!\n");
+        for (int bufferSize = 1; bufferSize <= 2*expected.length(); bufferSize++) {
+            String written = written(bufferSize);
+            if (!written.equals(expected.toString()))
+                throw new IllegalStateException("TextOutput with a buffer of "+bufferSize+" bytes writes "+written+" instead of "+expected);
+        }
+        System.out.println("TextOutput: ok");
+    }
+
+}
@@ -0,0 +1,295 @@
+package svm;
+
+import java.util.*;
+
+import static svm.SVMParser.*;
+
+// Peephole optimisation of generated code (see Code), before it is assembled:
+// rules, registered by name, match a few entries from a point of the code and
+// give their replacement. A pass looks for matches from the end of the code
+// backwards, skipping those overlapping a match already taken (so the inner of
+// nested patterns, e.g. the "not" of a comparison, is rewritten first), then
+// copies the code with the matches replaced; passes repeat until nothing
+// matches. Rules only remove or retarget the labels of the branches they match
+// (never the labels of frame maps, i.e. safepoints) and keep branches forward,
+// as FunctionTranslator needs them.
+// usage: Peephole.optimise(code).code(), report() for the matches of each rule
+public final class Peephole {
+
+    // if the entries of the code from j match, emits their replacement to out and
+    // returns how many they are; else returns 0 and emits nothing
+    public interface Rule {
+        int rewrite(Peephole p, int j, Code out);
+    }
+
+    // copied on registration, so passes running keep the rules they started with
+    private static volatile Map<String, Rule> rules = new LinkedHashMap<>(); // tried in this order
+
+    public static synchronized void register(String name, Rule rule) {
+        Map<String, Rule> r = new LinkedHashMap<>(rules);
+        r.put(name, rule);
+        rules = r;
+    }
+
+    private Code code; // being optimised, the result when done
+    private final String[] names;
+    private final Rule[] passRules;
+    private final int[] hits;
+    private final boolean[] generated; // per label (see Code.labelId()): referred to by the generated code
+    private boolean[] mapped;          // in the current pass, per label: has a frame map
+    private int[] refs;                // entries referring to it
+    private int[] defined;             // entry defining it, -1 if none
+    private final int before;
+    private int passes;
+
+    private Peephole(Code code) {
+        this.code = code;
+        before = instructions(code);
+        Map<String, Rule> r = rules;
+        names = r.keySet().toArray(new String[0]);
+        passRules = r.values().toArray(new Rule[0]);
+        hits = new int[passRules.length];
+        analyse();
+        generated = new boolean[refs.length];
+        for (int l = 0; l < refs.length; l++) generated[l] = refs[l] > 0;
+    }
+
+    public static Peephole optimise(Code code) {
+        Peephole p = new Peephole(code);
+        while (p.pass()) p.analyse();
+        return p;
+    }
+
+    public Code code() {
+        return code;
+    }
+
+    private static int instructions(Code c) {
+        int n = 0;
+        for (int j = 0; j < c.size(); j++) if (c.op(j) >= 0) n++;
+        return n;
+    }
+
+    private void analyse() {
+        mapped = code.mapped();
+        refs = new int[code.labels()];
+        defined = new int[code.labels()];
+        Arrays.fill(defined, -1);
+        for (int j = 0; j < code.size(); j++) {
+            int l = code.labelId(j);
+            if (l < 0) continue;
+            if (code.op(j) < 0) defined[l] = j;
+            else refs[l]++;
+        }
+    }
+
+    // false if nothing matched
+    private boolean pass() {
+        int size = code.size();
+        Code[] replacement = new Code[size];
+        int[] length = new int[size];
+        int limit = size, matches = 0; // matches taken start from limit
+        Code out = new Code();
+        for (int j = size-1; j >= 0; j--)
+            for (int r = 0; r < passRules.length; r++) {
+                int n = passRules[r].rewrite(this, j, out);
+                if (n == 0) continue;
+                if (j+n <= limit) {
+                    replacement[j] = out;
+                    length[j] = n;
+                    limit = j;
+                    matches++;
+                    hits[r]++;
+                }
+                out = new Code();
+                if (limit == j) break;
+            }
+        if (matches == 0) return false;
+        passes++;
+        Code optimised = code.emptyCopy();
+        for (int j = 0; j < size; ) {
+            if (replacement[j] != null) {
+                optimised.append(replacement[j]);
+                j += length[j];
+                continue;
+            }
+            optimised.copy(code, j++);
+        }
+        code = optimised;
+        return true;
+    }
+
+    // emits entry j of the code to out as it is
+    public void copy(int j, Code out) {
+        String l = code.label(j);
+        if (code.op(j) < 0) out.label(l);
+        else if (code.hasValue(j)) out.emit(code.op(j), code.value(j));
+        else if (l != null) out.emit(code.op(j), l);
+        else out.emit(code.op(j));
+    }
+
+    // opcode of entry j, -1 for a label definition, 0 past the end
+    public int op(int j) {
+        return j < code.size() ? code.op(j) : 0;
+    }
+
+    public boolean isPush(int j) {
+        return op(j) == PUSH && code.hasValue(j);
+    }
+
+    public boolean isLabel(int j) {
+        return op(j) < 0;
+    }
+
+    public boolean isBranch(int j) {
+        int op = op(j);
+        return op == BRANCH || op == BRANCHEQ || op == BRANCHLESSEQ;
+    }
+
+    public int value(int j) {
+        return code.value(j);
+    }
+
+    // the label of entry j (its operand, or the label it defines), null if none
+    public String label(int j) {
+        return code.label(j);
+    }
+
+    // entries i and j have the same label
+    public boolean sameLabel(int i, int j) {
+        int l = code.labelId(i);
+        return l >= 0 && l == code.labelId(j);
+    }
+
+    // of the label of entry j: the entries referring to it (branches and pushes)
+    public int refs(int j) {
+        return refs[code.labelId(j)];
+    }
+
+    // of the label of entry j: a safepoint, its frame map needs it
+    public boolean isMapped(int j) {
+        return mapped[code.labelId(j)];
+    }
+
+    // of the label of entry j: the generated code referred to it (labels never
+    // referred to, e.g. "main", are kept)
+    public boolean isGenerated(int j) {
+        int l = code.labelId(j);
+        return l < generated.length && generated[l];
+    }
+
+    // of the label of entry j: its first instruction, past the labels defined with
+    // it (size() if none), -1 if undefined
+    public int at(int j) {
+        int i = defined[code.labelId(j)];
+        if (i < 0) return -1;
+        while (isLabel(i)) i++;
+        return i;
+    }
+
+    public String report() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("peephole: %d instructions, %d before (%d passes)%n", instructions(code), before, passes));
+        b.append(String.format("  %-24s %8s%n", "rule", "matches"));
+        for (int r = 0; r < names.length; r++) b.append(String.format("  %-24s %8d%n", names[r], hits[r]));
+        return b.toString();
+    }
+
+    private static boolean holds(int op, int a, int b) { // of beq and bleq on a and b pushed in this order
+        return op == BRANCHEQ ? a == b : a <= b;
+    }
+
+    static {
+        // push a, push b, beq/bleq L: always b L, or never
+        register("constant-branch", (p, j, out) -> {
+            if (!p.isPush(j) || !p.isPush(j+1) || p.op(j+2) != BRANCHEQ && p.op(j+2) != BRANCHLESSEQ) return 0;
+            if (holds(p.op(j+2), p.value(j), p.value(j+1))) out.emit(BRANCH, p.label(j+2));
+            return 3;
+        });
+
+        // a boolean materialised by a comparison (or "not", "and", "or") and tested
+        // at once by "if": beq/bleq Lb, push f, b Le, Lb: push t, Le: push k, beq T
+        register("materialised-test", (p, j, out) -> {
+            if (p.op(j) != BRANCHEQ && p.op(j) != BRANCHLESSEQ || !p.isPush(j+1) || p.op(j+2) != BRANCH
+                || !p.isLabel(j+3) || !p.isPush(j+4) || !p.isLabel(j+5) || !p.isPush(j+6) || p.op(j+7) != BRANCHEQ) return 0;
+            if (!p.sameLabel(j, j+3) || !p.sameLabel(j+2, j+5) || p.refs(j+2) != 1 || p.isMapped(j) || p.isMapped(j+2)) return 0;
+            int f = p.value(j+1), t = p.value(j+4), k = p.value(j+6);
+            if (f == t) return 0;
+            if (t == k) { // true where it branches: branches to T, if nothing else branches to Lb
+                if (p.refs(j) != 1) return 0;
+                out.emit(p.op(j), p.label(j+7));
+            } else if (f == k) // true where it falls through: Lb now goes on after the test
+                out.emit(p.op(j), p.label(j)).emit(BRANCH, p.label(j+7)).label(p.label(j));
+            else return 0; // never true
+            return 8;
+        });
+
+        // a branch to b M, or to push c, push k, beq M: branches where that goes
+        register("thread", (p, j, out) -> {
+            if (!p.isBranch(j)) return 0;
+            String target = null;
+            int i = p.at(j);
+            if (i < 0) return 0;
+            if (p.op(i) == BRANCH && !p.sameLabel(i, j)) target = p.label(i);
+            else if (p.isPush(i)) {
+                int k = i+1;
+                while (p.isLabel(k)) k++;
+                if (!p.isPush(k) || p.op(k+1) != BRANCHEQ) return 0;
+                if (p.value(i) == p.value(k)) target = p.label(k+1);
+                else if (p.isLabel(k+2) && p.refs(k+2) > 0) target = p.label(k+2); // kept by its other references
+            }
+            if (target == null) return 0;
+            out.emit(p.op(j), target);
+            return 1;
+        });
+
+        // b L, L: (among the labels right after it)
+        register("branch-to-next", (p, j, out) -> {
+            if (p.op(j) != BRANCH) return 0;
+            for (int i = j+1; p.isLabel(i); i++) if (p.sameLabel(i, j)) return 1;
+            return 0;
+        });
+
+        // the instructions after b or halt, up to the next label
+        register("unreachable", (p, j, out) -> {
+            if (p.op(j) != BRANCH && p.op(j) != HALT) return 0;
+            int i = j+1;
+            while (p.op(i) > 0) i++; // up to a label or the end
+            if (i == j+1) return 0;
+            p.copy(j, out);
+            return i-j;
+        });
+
+        // labels the rewritten code no longer refers to, which break superinstructions
+        register("unused-label", (p, j, out) -> {
+            return p.isLabel(j) && p.refs(j) == 0 && p.isGenerated(j) && !p.isMapped(j) ? 1 : 0;
+        });
+
+        // push a, push b, add/sub/mult: push the result
+        register("constant-arithmetic", (p, j, out) -> {
+            if (!p.isPush(j) || !p.isPush(j+1)) return 0;
+            int a = p.value(j), b = p.value(j+1);
+            switch (p.op(j+2)) {
+                case ADD: out.push(a+b); break;
+                case SUB: out.push(a-b); break;
+                case MULT: out.push(a*b); break;
+                default: return 0;
+            }
+            return 3;
+        });
+
+        // stm, ltm with $tm set again (or the program halting) before it is loaded
+        // on the way after: the value stays on the stack anyway
+        register("dead-tm", (p, j, out) -> {
+            if (p.op(j) != STORETM || p.op(j+1) != LOADTM) return 0;
+            for (int i = j+2; p.op(i) != 0; i++)
+                switch (p.op(i)) {
+                    case STORETM: case HALT: return 2;
+                    case -1: case LOADTM: case BRANCH: case BRANCHEQ: case BRANCHLESSEQ: case JS: case VCALL: return 0;
+                    default:
+                }
+            return 0;
+        });
+    }
+
+}
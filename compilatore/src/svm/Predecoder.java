@@ -0,0 +1,177 @@
+package svm;
+
+// Load-time decode stage for ExecuteVM.cpuPredecoded():
+// rewrites the assembled code (opcodes = SVMLexer token types) into a dense
+// internal opcode space, one (opcode, operand) pair per code address, with
+// operands and branch targets already fetched and validated.
+// Addresses are preserved (decoded[2*a] is the instruction at code address a),
+// so values computed at run time (function labels pushed and jumped to via js,
+// $ra) need no translation.
+// A "push k" feeding an arithmetic operator or a conditional branch is resolved
+// into an immediate-operand form (one dispatch instead of two): the operator
+// keeps its own decoding at its address, so a branch landing on it still works.
+// Each "vcall" gets the number of its call site (0, 1, ...) in the free operand
+// of its operand slot, which indexes its entry in InlineCache.
+// Code accepted by the Verifier gets at each cfp (in its free operand) the stack
+// depth of its function, and in the operand of the JITRETURN the largest of them,
+// -1 for code the Verifier rejects (see reserve()).
+// A JITRETURN instruction is appended at address code.length, followed by the
+// number of call sites (see sites()).
+public class Predecoder {
+
+    // dense internal opcodes, independent from the SVMLexer token numbering
+    public static final int PUSH = 0;
+    public static final int POP = 1;
+    public static final int ADD = 2;
+    public static final int SUB = 3;
+    public static final int MULT = 4;
+    public static final int DIV = 5;
+    public static final int STOREW = 6;
+    public static final int LOADW = 7;
+    public static final int BRANCH = 8;
+    public static final int BRANCHEQ = 9;
+    public static final int BRANCHLESSEQ = 10;
+    public static final int JS = 11;
+    public static final int LOADRA = 12;
+    public static final int STORERA = 13;
+    public static final int LOADTM = 14;
+    public static final int STORETM = 15;
+    public static final int LOADFP = 16;
+    public static final int STOREFP = 17;
+    public static final int COPYFP = 18;
+    public static final int LOADHP = 19;
+    public static final int STOREHP = 20;
+    public static final int PRINT = 21;
+    public static final int HALT = 22;
+    public static final int NEW = 23;
+    // immediate-operand forms of "push k" followed by the operator
+    public static final int ADDI = 24;
+    public static final int SUBI = 25;
+    public static final int MULTI = 26;
+    public static final int BEQI = 27;
+    public static final int BLEQI = 28;
+    public static final int VCALL = 29;
+    public static final int SUPER = 30; // SUPER+j: j-th entry of Superinstructions
+    public static final int INVALID = SUPER+Superinstructions.COUNT; // operand slots and unused code
+    public static final int JITRETURN = INVALID+1; // past the end of the code, see ExecuteVM.callFromJit
+
+    public static final int OPCODES = JITRETURN+1;
+
+    public static final String[] NAMES = new String[OPCODES];
+    static {
+        String[] base = {
+            "push", "pop", "add", "sub", "mult", "div", "sw", "lw", "b", "beq", "bleq", "js",
+            "lra", "sra", "ltm", "stm", "lfp", "sfp", "cfp", "lhp", "shp", "print", "halt", "new",
+            "addi", "subi", "multi", "beqi", "bleqi", "vcall"
+        };
+        System.arraycopy(base, 0, NAMES, 0, SUPER);
+        System.arraycopy(Superinstructions.MNEMONICS, 0, NAMES, SUPER, Superinstructions.COUNT);
+        NAMES[INVALID] = "invalid";
+        NAMES[JITRETURN] = "jitreturn";
+    }
+
+    private static final int[] FROM_TOKEN = new int[SVMParser.VOCABULARY.getMaxTokenType()+1];
+    static {
+        java.util.Arrays.fill(FROM_TOKEN, INVALID);
+        FROM_TOKEN[SVMParser.PUSH] = PUSH;
+        FROM_TOKEN[SVMParser.POP] = POP;
+        FROM_TOKEN[SVMParser.ADD] = ADD;
+        FROM_TOKEN[SVMParser.SUB] = SUB;
+        FROM_TOKEN[SVMParser.MULT] = MULT;
+        FROM_TOKEN[SVMParser.DIV] = DIV;
+        FROM_TOKEN[SVMParser.STOREW] = STOREW;
+        FROM_TOKEN[SVMParser.LOADW] = LOADW;
+        FROM_TOKEN[SVMParser.BRANCH] = BRANCH;
+        FROM_TOKEN[SVMParser.BRANCHEQ] = BRANCHEQ;
+        FROM_TOKEN[SVMParser.BRANCHLESSEQ] = BRANCHLESSEQ;
+        FROM_TOKEN[SVMParser.JS] = JS;
+        FROM_TOKEN[SVMParser.LOADRA] = LOADRA;
+        FROM_TOKEN[SVMParser.STORERA] = STORERA;
+        FROM_TOKEN[SVMParser.LOADTM] = LOADTM;
+        FROM_TOKEN[SVMParser.STORETM] = STORETM;
+        FROM_TOKEN[SVMParser.LOADFP] = LOADFP;
+        FROM_TOKEN[SVMParser.STOREFP] = STOREFP;
+        FROM_TOKEN[SVMParser.COPYFP] = COPYFP;
+        FROM_TOKEN[SVMParser.LOADHP] = LOADHP;
+        FROM_TOKEN[SVMParser.STOREHP] = STOREHP;
+        FROM_TOKEN[SVMParser.PRINT] = PRINT;
+        FROM_TOKEN[SVMParser.HALT] = HALT;
+        FROM_TOKEN[SVMParser.NEW] = NEW;
+        FROM_TOKEN[SVMParser.VCALL] = VCALL;
+        for (int j = 0; j < Superinstructions.COUNT; j++) FROM_TOKEN[Superinstructions.TOKENS[j]] = SUPER+j;
+    }
+
+    public static int fromToken(int token) {
+        return (token >= 0 && token < FROM_TOKEN.length) ? FROM_TOKEN[token] : INVALID;
+    }
+
+    public static boolean hasOperand(int op) {
+        return op == PUSH || op == BRANCH || op == BRANCHEQ || op == BRANCHLESSEQ || op == VCALL
+            || (op >= SUPER && op < INVALID && Superinstructions.hasOperand(op-SUPER));
+    }
+
+    public static boolean isBranch(int op) {
+        return op == BRANCH || op == BRANCHEQ || op == BRANCHLESSEQ
+            || (op >= SUPER && op < INVALID && Superinstructions.isBranch(op-SUPER));
+    }
+
+    static int immediateForm(int op) {
+        switch (op) {
+            case ADD: return ADDI;
+            case SUB: return SUBI;
+            case MULT: return MULTI;
+            case BRANCHEQ: return BEQI;
+            case BRANCHLESSEQ: return BLEQI;
+            default: return INVALID;
+        }
+    }
+
+    public static int[] decode(int[] code) {
+        int[] decoded = new int[2*code.length+4];
+        int a = 0, sites = 0;
+        while (a < code.length) {
+            int op = fromToken(code[a]);
+            decoded[2*a] = op;
+            if (hasOperand(op)) {
+                if (a+1 == code.length)
+                    throw new IllegalArgumentException("Missing operand at address "+a);
+                decoded[2*a+1] = code[a+1];
+                decoded[2*(a+1)] = INVALID;
+                if (op == VCALL) decoded[2*(a+1)+1] = sites++;
+                a += 2;
+            } else
+                a++;
+        }
+        for (a = 0; a < code.length; a++) // branch targets must be instructions
+            if (isBranch(decoded[2*a])) {
+                int target = decoded[2*a+1];
+                if (target < 0 || target >= code.length || decoded[2*target] == INVALID)
+                    throw new IllegalArgumentException("Invalid branch target "+target+" at address "+a);
+            }
+        for (a = 0; a+2 < code.length; a++) // the operand of an immediate branch stays at decoded[2*(a+2)+1]
+            if (decoded[2*a] == PUSH && immediateForm(decoded[2*(a+2)]) != INVALID)
+                decoded[2*a] = immediateForm(decoded[2*(a+2)]);
+        decoded[2*code.length] = JITRETURN;
+        decoded[2*code.length+1] = -1;
+        decoded[2*code.length+2] = INVALID;
+        decoded[2*code.length+3] = sites;
+        try {
+            Verifier v = Verifier.verify(code);
+            for (int e : v.entries()) if (e > 0) decoded[2*e+1] = v.maxDepth(e);
+            decoded[2*code.length+1] = v.maxDepth();
+        } catch (IllegalArgumentException e) {} // unverified
+        return decoded;
+    }
+
+    // stack room to reserve when the predecoded loop starts or resumes: the largest
+    // depth of a function (see Verifier), -1 if the code has not been verified
+    public static int reserve(int[] decoded) {
+        return decoded[decoded.length-3];
+    }
+
+    // number of vcall instructions
+    public static int sites(int[] decoded) {
+        return decoded[decoded.length-1];
+    }
+
+}
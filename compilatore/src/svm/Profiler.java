@@ -0,0 +1,146 @@
+package svm;
+
+import java.io.*;
+import java.util.*;
+
+// Profiling mode of the reference loop ExecuteVM.cpu() (an ExecutionListener,
+// so the other loops and unprofiled runs pay nothing): counts the executed
+// instructions by opcode and, per function, its calls and the instructions
+// executed in it (exclusive) and in it and its callees (inclusive).
+// Functions are known by their entry address, named by the caller (e.g. FOOL
+// names and lines from compiler.CodeGenerationASTVisitor.functions()), else
+// "function@address"; code outside any function is "main".
+// Calls and returns are both js (or vcall): a jump reaching a cfp (which starts
+// every function) is a call, any other jump a return.
+// Instruction counts are kept per calling context, which report() sums per
+// function and writeCollapsed() writes as collapsed stacks ("main;f;g count"
+// lines, for flame graph tools); direct recursion stays in the same context,
+// so recursive functions appear once in a stack.
+public class Profiler implements ExecutionListener {
+
+    private static final boolean[] JUMPS = new boolean[SVMParser.VOCABULARY.getMaxTokenType()+1];
+    static {
+        JUMPS[SVMParser.JS] = true;
+        JUMPS[SVMParser.VCALL] = true;
+        for (int j = 0; j < Superinstructions.COUNT; j++) {
+            int[] s = Superinstructions.SEQUENCES[j];
+            if (s[s.length-1] == SVMParser.JS) JUMPS[Superinstructions.TOKENS[j]] = true;
+        }
+    }
+
+    private final int[] function;         // per code address: function starting there, -1 if none
+    private final List<String> names = new ArrayList<>(List.of("main"));
+    private final long[] opcodes = new long[JUMPS.length];
+
+    // calling context tree: node 0 is main, each other node a function called from its parent
+    private int[] parent = new int[64], node = new int[64];
+    private long[] self = new long[64]; // instructions executed in the node's function in this context
+    private long[] calls = new long[64];
+    private int nodes = 1;
+    private final Map<Long, Integer> children = new HashMap<>();
+
+    private int[] stack = new int[64]; // node of each active call, recursive ones included
+    private int depth;
+    private int current;               // node executing
+    private boolean jumped;            // the previous instruction was a js
+
+    // functions: name of the function starting at each entry address
+    public Profiler(int[] code, Map<Integer, String> functions) {
+        function = new int[code.length+1];
+        Arrays.fill(function, -1);
+        for (Map.Entry<Integer, String> f : functions.entrySet()) {
+            function[f.getKey()] = names.size();
+            names.add(f.getValue());
+        }
+    }
+
+    @Override
+    public void instruction(int ip, int opcode) {
+        if (jumped) {
+            jumped = false;
+            if (opcode == SVMParser.COPYFP) call(ip);
+            else if (depth > 0) current = stack[--depth];
+        }
+        if (opcode >= 0 && opcode < JUMPS.length) {
+            opcodes[opcode]++;
+            jumped = JUMPS[opcode];
+        }
+        self[current]++;
+    }
+
+    private void call(int entry) {
+        if (function[entry] < 0) {
+            function[entry] = names.size();
+            names.add("function@"+entry);
+        }
+        int f = function[entry];
+        if (depth == stack.length) stack = Arrays.copyOf(stack, 2*depth);
+        stack[depth++] = current;
+        if (f != node[current]) current = child(current, f);
+        calls[current]++;
+    }
+
+    private int child(int p, int f) {
+        long key = (long) p << 32 | f;
+        Integer c = children.get(key);
+        if (c != null) return c;
+        if (nodes == parent.length) {
+            parent = Arrays.copyOf(parent, 2*nodes);
+            node = Arrays.copyOf(node, 2*nodes);
+            self = Arrays.copyOf(self, 2*nodes);
+            calls = Arrays.copyOf(calls, 2*nodes);
+        }
+        parent[nodes] = p;
+        node[nodes] = f;
+        children.put(key, nodes);
+        return nodes++;
+    }
+
+    // executed so far, a superinstruction counting as one
+    public long instructions() {
+        long n = 0;
+        for (int c = 0; c < nodes; c++) n += self[c];
+        return n;
+    }
+
+    public String report() {
+        int n = names.size();
+        long[] fCalls = new long[n], exclusive = new long[n], inclusive = new long[n];
+        long[] total = new long[nodes]; // instructions in the subtree of each node
+        for (int c = nodes-1; c >= 0; c--) { // children come after their parent
+            total[c] += self[c];
+            if (c > 0) total[parent[c]] += total[c];
+        }
+        for (int c = 0; c < nodes; c++) {
+            fCalls[node[c]] += calls[c];
+            exclusive[node[c]] += self[c];
+            boolean outermost = true; // contexts within one of the same function are already counted
+            for (int a = c > 0 ? parent[c] : 0; a > 0 && outermost; a = parent[a]) outermost = node[a] != node[c];
+            if (outermost) inclusive[node[c]] += total[c];
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("profile: %d instructions executed%n", total[0]));
+        Integer[] order = new Integer[n];
+        for (int f = 0; f < n; f++) order[f] = f;
+        Arrays.sort(order, (x, y) -> Long.compare(exclusive[y], exclusive[x]));
+        b.append(String.format("  %-40s %10s %14s %14s%n", "function", "calls", "exclusive", "inclusive"));
+        for (int f : order)
+            if (fCalls[f] > 0 || f == 0)
+                b.append(String.format("  %-40s %10d %14d %14d%n", names.get(f), fCalls[f], exclusive[f], inclusive[f]));
+        b.append(String.format("  %-40s %10s%n", "opcode", "count"));
+        for (int op = 0; op < opcodes.length; op++)
+            if (opcodes[op] > 0) b.append(String.format("  %-40s %10d%n", SVMParser.VOCABULARY.getLiteralName(op).replace("'", ""), opcodes[op]));
+        return b.toString();
+    }
+
+    // one "main;f;g count" line per calling context that executed instructions
+    public void writeCollapsed(Writer out) throws IOException {
+        String[] paths = new String[nodes];
+        for (int c = 0; c < nodes; c++) { // children come after their parent
+            paths[c] = c == 0 ? names.get(0) : paths[parent[c]]+";"+names.get(node[c]).replace(';', ',');
+            if (self[c] > 0) out.write(paths[c]+" "+self[c]+"\n");
+        }
+        out.flush();
+    }
+
+}
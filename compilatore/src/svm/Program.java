@@ -0,0 +1,37 @@
+package svm;
+
+// An assembled program, ready to be run by any number of ExecuteVMs, also at the
+// same time on different threads: the code is copied, predecoded once, and never
+// written afterwards. The mutable machine state lives in each ExecuteVM (see
+// ExecutionPool to reuse them); only the JitCompiler, if any, is shared, and it
+// is safe to share.
+public final class Program {
+
+    final int[] code;
+    final int[] decoded;     // Predecoder.decode(code)
+    final int[][] frameMaps; // SVMParser.frameMaps, null: no garbage collection
+    final JitCompiler jit;   // null: interpreted only
+
+    public Program(int[] code, int[][] frameMaps) {
+        this(code, frameMaps, 0);
+    }
+
+    // jitThreshold > 0 compiles the functions called that many times (see JitCompiler),
+    // counting the calls of all the VMs running the program
+    public Program(int[] code, int[][] frameMaps, int jitThreshold) {
+        if (jitThreshold < 0) throw new IllegalArgumentException("Invalid JIT threshold");
+        this.code = code.clone();
+        this.decoded = Predecoder.decode(this.code);
+        if (frameMaps == null) this.frameMaps = null;
+        else {
+            this.frameMaps = new int[frameMaps.length][];
+            for (int a = 0; a < frameMaps.length; a++) if (frameMaps[a] != null) this.frameMaps[a] = frameMaps[a].clone();
+        }
+        this.jit = jitThreshold == 0 ? null : new JitCompiler(this.code, jitThreshold);
+    }
+
+    public JitCompiler getJit() {
+        return jit;
+    }
+
+}
@@ -13,6 +13,10 @@ public int[] code = new int[ExecuteVM.CODESIZE];
 private int i = 0;
 private Map<String,Integer> labelDef = new HashMap<>();
 private Map<Integer,String> labelRef = new HashMap<>();
+private Map<String,int[]> frameMapDef = new HashMap<>();
+public int[][] frameMaps; // frame map of each safepoint address, see GarbageCollector
+public int address(String label) { Integer a = labelDef.get(label); return a == null ? -1 : a; } // -1 if undefined
+public Map<String,Integer> labels() { return Collections.unmodifiableMap(labelDef); } // label -> address
 }
 
 /*------------------------------------------------------------------
@@ -21,9 +25,34 @@ private Map<Integer,String> labelRef = new HashMap<>();
    
 assembly: instruction* EOF 	{ for (Integer j: labelRef.keySet()) 
 								code[j]=labelDef.get(labelRef.get(j)); 
+							  frameMaps = new int[i+1][];
+							  for (String l: frameMapDef.keySet())
+								frameMaps[labelDef.get(l)]=frameMapDef.get(l);
 							} ;
 
-instruction : 
+instruction
+@init { if (i+2 > code.length) code = Arrays.copyOf(code, 2*code.length); } // at most 2 words each
+: 
+/* BEGIN GENERATED SUPERINSTRUCTIONS parser (SuperinstructionGenerator) */
+        LOADFP PUSH n=INTEGER ADD LOADW {code[i++] = LFP_PUSH_ADD_LW;
+                          code[i++] = Integer.parseInt($n.text);} |
+        LFP_PUSH_ADD_LW n=INTEGER {code[i++] = LFP_PUSH_ADD_LW;
+                          code[i++] = Integer.parseInt($n.text);} |
+        POP STOREFP LOADTM LOADRA {code[i++] = POP_SFP_LTM_LRA;} |
+        POP_SFP_LTM_LRA {code[i++] = POP_SFP_LTM_LRA;} |
+        LOADTM LOADTM PUSH n=INTEGER ADD {code[i++] = LTM_LTM_PUSH_ADD;
+                          code[i++] = Integer.parseInt($n.text);} |
+        LTM_LTM_PUSH_ADD n=INTEGER {code[i++] = LTM_LTM_PUSH_ADD;
+                          code[i++] = Integer.parseInt($n.text);} |
+        PUSH n=INTEGER SUB LOADFP LOADW {code[i++] = PUSH_SUB_LFP_LW;
+                          code[i++] = Integer.parseInt($n.text);} |
+        PUSH_SUB_LFP_LW n=INTEGER {code[i++] = PUSH_SUB_LFP_LW;
+                          code[i++] = Integer.parseInt($n.text);} |
+        STORETM STORERA POP {code[i++] = STM_SRA_POP;} |
+        STM_SRA_POP {code[i++] = STM_SRA_POP;} |
+        LOADW JS {code[i++] = LW_JS;} |
+        LW_JS {code[i++] = LW_JS;} |
+/* END GENERATED SUPERINSTRUCTIONS parser */
         PUSH n=INTEGER   {code[i++] = PUSH; 
 			              code[i++] = Integer.parseInt($n.text);}
 	  | PUSH l=LABEL    {code[i++] = PUSH; 
@@ -54,6 +83,12 @@ instruction :
 	  | STOREHP         {code[i++] = STOREHP;}   //
 	  | PRINT           {code[i++] = PRINT;}
 	  | HALT            {code[i++] = HALT;}
+	  | NEW             {code[i++] = NEW;}
+	  | VCALL n=INTEGER {code[i++] = VCALL;
+	                     code[i++] = Integer.parseInt($n.text);}
+	  | GCMAP l=LABEL m+=INTEGER+ {int[] map = new int[$m.size()];
+	                     for (int k = 0; k < map.length; k++) map[k] = Integer.parseInt($m.get(k).getText());
+	                     frameMapDef.put($l.text,map);}
 	  ;
 	  
 /*------------------------------------------------------------------
@@ -83,6 +118,18 @@ LOADHP	 : 'lhp' ;
 STOREHP	 : 'shp' ;	
 PRINT	 : 'print' ;	
 HALT	 : 'halt' ;	
+NEW	 : 'new' ;
+VCALL	 : 'vcall' ;
+GCMAP	 : 'gcmap' ;
+
+/* BEGIN GENERATED SUPERINSTRUCTIONS lexer (SuperinstructionGenerator) */
+LFP_PUSH_ADD_LW : 'lfp_push_add_lw' ;
+POP_SFP_LTM_LRA : 'pop_sfp_ltm_lra' ;
+LTM_LTM_PUSH_ADD : 'ltm_ltm_push_add' ;
+PUSH_SUB_LFP_LW : 'push_sub_lfp_lw' ;
+STM_SRA_POP : 'stm_sra_pop' ;
+LW_JS : 'lw_js' ;
+/* END GENERATED SUPERINSTRUCTIONS lexer */
  
 COL	 : ':' ;
 LABEL	 : ('a'..'z'|'A'..'Z')('a'..'z' | 'A'..'Z' | '0'..'9')* ;
@@ -0,0 +1,54 @@
+package svm;
+
+import java.util.concurrent.*;
+
+// Time slicing of many programs on a few threads: each submitted ExecuteVM runs
+// for a quantum of instructions (see ExecuteVM.setFuel()) and then, unless it
+// halted, goes back to the end of the queue, so that the programs take turns
+// and a long one does not hold a thread.
+// The output of each VM is flushed at the end of each of its slices.
+public class Scheduler implements AutoCloseable {
+
+    public static final long DEFAULT_QUANTUM = 100_000; // instructions
+
+    private final ExecutorService workers;
+    private final long quantum;
+
+    public Scheduler(int threads) {
+        this(threads, DEFAULT_QUANTUM);
+    }
+
+    public Scheduler(int threads, long quantum) {
+        if (quantum <= 0) throw new IllegalArgumentException("Invalid quantum");
+        this.workers = Executors.newFixedThreadPool(threads); // FIFO: round robin
+        this.quantum = quantum;
+    }
+
+    // completes with vm when its program halts, exceptionally if it fails;
+    // cancelling the future drops vm at its next slice
+    public CompletableFuture<ExecuteVM> submit(ExecuteVM vm) {
+        CompletableFuture<ExecuteVM> done = new CompletableFuture<>();
+        workers.execute(() -> slice(vm, done));
+        return done;
+    }
+
+    private void slice(ExecuteVM vm, CompletableFuture<ExecuteVM> done) {
+        if (done.isDone()) return;
+        try {
+            vm.setFuel(quantum);
+            if (vm.cpuPredecoded()) {
+                vm.setFuel(Long.MAX_VALUE);
+                done.complete(vm);
+            } else workers.execute(() -> slice(vm, done));
+        } catch (RuntimeException | StackOverflowError e) {
+            done.completeExceptionally(e);
+        }
+    }
+
+    // the VMs not finished yet are dropped
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+
+}
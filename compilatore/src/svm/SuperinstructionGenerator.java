@@ -0,0 +1,460 @@
+package svm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+// Profile-driven superinstruction generator.
+// "profile" runs assembled programs on the reference loop ExecuteVM.cpu() and
+// accumulates the dynamic counts of the opcode n-grams (operands abstracted)
+// of straight-line code: no branch target inside, control transfers only in
+// last position. Those that could be fused (at most MAXLEN instructions, one
+// operand) are the candidates; the longer ones tell where a candidate is
+// shadowed by another overlapping it.
+// "generate" picks the sequences saving most dispatches and regenerates them in
+// Superinstructions.java and in the marked regions of SVM.g4 and ExecuteVM.java;
+// the SVM lexer/parser must then be regenerated with ANTLR.
+// The assembler fuses a sequence only when no label is defined inside it, so
+// fused code is always equivalent to the original one.
+//
+// usage: java svm.SuperinstructionGenerator profile hist.txt file.asm ...
+//        java svm.SuperinstructionGenerator generate k srcdir hist.txt ...
+public class SuperinstructionGenerator {
+
+    static final int MAXLEN = 4; // longest n-gram considered
+    static final int CONTEXT = 2*MAXLEN-1; // longest n-gram counted: two candidates overlapping
+
+    static final String BEGIN = "BEGIN GENERATED SUPERINSTRUCTIONS";
+    static final String END = "END GENERATED SUPERINSTRUCTIONS";
+
+    static String mnemonic(int token) {
+        String s = SVMParser.VOCABULARY.getLiteralName(token);
+        return s.substring(1, s.length()-1);
+    }
+
+    static String tokenName(int token) {
+        return SVMParser.VOCABULARY.getSymbolicName(token);
+    }
+
+    static int token(String mnemonic) {
+        for (int t = SVMParser.PUSH; t <= SVMParser.HALT; t++)
+            if (mnemonic(t).equals(mnemonic)) return t;
+        throw new IllegalArgumentException("Unknown instruction "+mnemonic);
+    }
+
+    static boolean hasOperand(int token) {
+        return token == SVMParser.PUSH || token == SVMParser.VCALL || isBranch(token);
+    }
+
+    static boolean isBranch(int token) {
+        return token == SVMParser.BRANCH || token == SVMParser.BRANCHEQ || token == SVMParser.BRANCHLESSEQ;
+    }
+
+    // cfp stays alone: it marks function entries (see Verifier, FunctionTranslator)
+    static boolean neverFused(int token) {
+        return token == SVMParser.PRINT || token == SVMParser.HALT || token == SVMParser.NEW || token == SVMParser.VCALL
+            || token == SVMParser.COPYFP;
+    }
+
+    static boolean isControl(int token) {
+        return isBranch(token) || token == SVMParser.JS || token == SVMParser.HALT;
+    }
+
+    // ---------------------------------------------------------------- profiling
+
+    static class NgramProfile implements ExecutionListener {
+
+        final Map<String,Long> counts;
+        private final Set<Integer> targets = new HashSet<>(); // static branch targets
+        private final int[] window = new int[CONTEXT];
+        private int size = 0;
+        private int next = -1; // address of the instruction following the last one
+
+        NgramProfile(int[] code, Map<String,Long> counts) {
+            this.counts = counts;
+            int a = 0;
+            while (a < code.length && code[a] != 0) {
+                int[] seq = components(code[a]);
+                if (isBranch(seq[seq.length-1])) targets.add(code[a+1]);
+                a += length(code[a]);
+            }
+        }
+
+        private static int[] components(int token) {
+            int j = Superinstructions.index(token);
+            return j < 0 ? new int[] {token} : Superinstructions.SEQUENCES[j];
+        }
+
+        private static int length(int token) {
+            int j = Superinstructions.index(token);
+            return (j < 0 ? hasOperand(token) : Superinstructions.hasOperand(j)) ? 2 : 1;
+        }
+
+        @Override
+        public void instruction(int ip, int opcode) {
+            if (ip != next || targets.contains(ip)) size = 0;
+            next = ip + length(opcode);
+            for (int op : components(opcode)) {
+                if (neverFused(op)) {
+                    size = 0;
+                    continue;
+                }
+                if (size == CONTEXT) System.arraycopy(window, 1, window, 0, --size);
+                window[size++] = op;
+                for (int n = 2; n <= size; n++) counts.merge(key(window, size-n, size), 1L, Long::sum);
+                if (isControl(op)) size = 0;
+            }
+        }
+    }
+
+    static String key(int[] ops, int from, int to) {
+        StringBuilder b = new StringBuilder();
+        for (int i = from; i < to; i++) b.append(i > from ? " " : "").append(mnemonic(ops[i]));
+        return b.toString();
+    }
+
+    static Map<String,Long> readHistogram(Path file, Map<String,Long> counts) throws IOException {
+        if (Files.exists(file))
+            for (String line : Files.readAllLines(file)) {
+                if (line.isBlank()) continue;
+                String[] f = line.split("\t");
+                counts.merge(f[1], Long.parseLong(f[0]), Long::sum);
+            }
+        return counts;
+    }
+
+    static void profile(Path hist, String[] asmFiles) throws IOException {
+        Map<String,Long> counts = readHistogram(hist, new HashMap<>());
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // discard program output
+        try {
+            for (String f : asmFiles) {
+                int[] code = Benchmark.assemble(f);
+                ExecuteVM vm = new ExecuteVM(code);
+                vm.setListener(new NgramProfile(code, counts));
+                vm.cpu();
+            }
+        } finally {
+            System.setOut(out);
+        }
+        List<Map.Entry<String,Long>> entries = new ArrayList<>(counts.entrySet());
+        entries.sort(Map.Entry.<String,Long>comparingByValue().reversed());
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(hist))) {
+            for (Map.Entry<String,Long> e : entries) w.println(e.getValue()+"\t"+e.getKey());
+        }
+    }
+
+    // ---------------------------------------------------------------- selection
+
+    static boolean isCandidate(String[] m) {
+        if (m.length > MAXLEN) return false;
+        if (m.length == 2 && m[0].equals("push") && Predecoder.immediateForm(Predecoder.fromToken(token(m[1]))) != Predecoder.INVALID)
+            return false; // already fused by Predecoder
+        int operands = 0;
+        for (String s : m) {
+            if (neverFused(token(s))) return false;
+            if (hasOperand(token(s))) operands++;
+        }
+        return operands <= 1;
+    }
+
+    // greedy choice of the k sequences saving most dispatches, count*(n-1);
+    // occurrences of a candidate inside an already chosen sequence are discounted,
+    // and so are those overlapping one (a suffix of either being a prefix of the
+    // other, counted as the n-gram joining them): the assembler fuses from the
+    // left, so there one of the two is shadowed
+    static List<int[]> select(Map<String,Long> counts, int k) {
+        Map<String,Long> left = new HashMap<>();
+        for (Map.Entry<String,Long> e : counts.entrySet())
+            if (isCandidate(e.getKey().split(" "))) left.put(e.getKey(), e.getValue());
+        List<int[]> chosen = new ArrayList<>();
+        while (chosen.size() < k && !left.isEmpty()) {
+            String best = null;
+            long bestSaving = 0;
+            for (Map.Entry<String,Long> e : left.entrySet()) {
+                long saving = e.getValue() * (e.getKey().split(" ").length - 1);
+                if (saving > bestSaving || (saving == bestSaving && best != null && e.getKey().compareTo(best) < 0)) {
+                    best = e.getKey();
+                    bestSaving = saving;
+                }
+            }
+            if (best == null) break;
+            long times = left.remove(best);
+            for (Map.Entry<String,Long> e : left.entrySet()) {
+                int inside = occurrences(" "+best+" ", " "+e.getKey()+" ");
+                long shadowed = inside > 0 ? inside*times : overlapping(best.split(" "), e.getKey().split(" "), counts);
+                if (shadowed > 0) e.setValue(Math.max(0, e.getValue() - shadowed));
+            }
+            chosen.add(Arrays.stream(best.split(" ")).mapToInt(SuperinstructionGenerator::token).toArray());
+        }
+        chosen.sort((a, b) -> b.length - a.length); // longest first: the assembler prefers earlier alternatives
+        return chosen;
+    }
+
+    // occurrences of a and b overlapping: a proper suffix of either is a prefix of the other
+    private static long overlapping(String[] a, String[] b, Map<String,Long> counts) {
+        long n = 0;
+        for (int o = 1; o < Math.min(a.length, b.length); o++) {
+            if (Arrays.equals(a, a.length-o, a.length, b, 0, o))
+                n += counts.getOrDefault(String.join(" ", a)+" "+String.join(" ", Arrays.copyOfRange(b, o, b.length)), 0L);
+            if (Arrays.equals(b, b.length-o, b.length, a, 0, o))
+                n += counts.getOrDefault(String.join(" ", b)+" "+String.join(" ", Arrays.copyOfRange(a, o, a.length)), 0L);
+        }
+        return n;
+    }
+
+    private static int occurrences(String s, String sub) {
+        int n = 0;
+        for (int i = s.indexOf(sub); i >= 0; i = s.indexOf(sub, i+1)) n++;
+        return n;
+    }
+
+    // ---------------------------------------------------------------- code generation
+
+    static String name(int[] seq) {
+        StringBuilder b = new StringBuilder();
+        for (int t : seq) b.append(b.length() > 0 ? "_" : "").append(mnemonic(t));
+        return b.toString();
+    }
+
+    static String describe(int[] seq) {
+        StringBuilder b = new StringBuilder();
+        for (int t : seq)
+            b.append(b.length() > 0 ? "; " : "").append(mnemonic(t)).append(t == SVMParser.PUSH ? " k" : isBranch(t) ? " k" : "");
+        return b.toString();
+    }
+
+    static boolean seqHasOperand(int[] seq) {
+        for (int t : seq) if (hasOperand(t)) return true;
+        return false;
+    }
+
+    // Java statements with the effect of seq, on ExecuteVM fields, push/pop and load/store:
+    // the operand is in k and ip already addresses the following instruction.
+    // Values stay symbolic on a compile-time stack and are pushed only when needed.
+    static List<String> statements(int[] seq) {
+        Deque<String> stack = new ArrayDeque<>(); // symbolic top of the stack, first = top
+        List<String> out = new ArrayList<>();
+        int[] temps = {0};
+        for (int t : seq) {
+            String a, b;
+            switch (t) {
+                case SVMParser.PUSH: stack.push("k"); break;
+                case SVMParser.POP:
+                    if (stack.isEmpty()) out.add("pop();"); else stack.pop();
+                    break;
+                case SVMParser.ADD: b = pop(stack, out, temps); a = pop(stack, out, temps); stack.push("("+a+" + "+b+")"); break;
+                case SVMParser.SUB: b = pop(stack, out, temps); a = pop(stack, out, temps); stack.push("("+a+" - "+b+")"); break;
+                case SVMParser.MULT: b = pop(stack, out, temps); a = pop(stack, out, temps); stack.push("("+a+" * "+b+")"); break;
+                case SVMParser.DIV: // may throw: evaluated in place
+                    b = pop(stack, out, temps); a = pop(stack, out, temps);
+                    stack.push(temp(a+" / "+b, out, temps));
+                    break;
+                case SVMParser.LOADW: stack.push("load("+pop(stack, out, temps)+")"); break;
+                case SVMParser.STOREW:
+                    a = pop(stack, out, temps); b = pop(stack, out, temps);
+                    if (!stack.isEmpty()) { a = temp(a, out, temps); b = temp(b, out, temps); }
+                    flush(stack, out);
+                    out.add("store("+a+", "+b+");");
+                    break;
+                case SVMParser.LOADRA: stack.push("ra"); break;
+                case SVMParser.LOADTM: stack.push("tm"); break;
+                case SVMParser.LOADFP: stack.push("fp"); break;
+                case SVMParser.LOADHP: stack.push("hp"); break;
+                case SVMParser.STORERA: store("ra", stack, out, temps); break;
+                case SVMParser.STORETM: store("tm", stack, out, temps); break;
+                case SVMParser.STOREFP: store("fp", stack, out, temps); break;
+                case SVMParser.STOREHP: store("hp", stack, out, temps); break;
+                case SVMParser.COPYFP:
+                    flush(stack, out);
+                    out.add("fp = sp+stackLow;");
+                    break;
+                case SVMParser.BRANCH:
+                    flush(stack, out);
+                    out.add("ip = k;");
+                    break;
+                case SVMParser.BRANCHEQ:
+                case SVMParser.BRANCHLESSEQ:
+                    b = temp(pop(stack, out, temps), out, temps); a = temp(pop(stack, out, temps), out, temps);
+                    flush(stack, out);
+                    out.add("if ("+a+(t == SVMParser.BRANCHEQ ? " == " : " <= ")+b+") ip = k;");
+                    break;
+                case SVMParser.JS:
+                    a = temp(pop(stack, out, temps), out, temps);
+                    flush(stack, out);
+                    out.add("ra = ip;");
+                    out.add("ip = "+a+";");
+                    break;
+                default: throw new IllegalArgumentException("Cannot fuse "+mnemonic(t));
+            }
+        }
+        flush(stack, out);
+        return out;
+    }
+
+    private static String pop(Deque<String> stack, List<String> out, int[] temps) {
+        if (!stack.isEmpty()) return stack.pop();
+        String t = "t"+(temps[0]++);
+        out.add("int "+t+" = pop();");
+        return t;
+    }
+
+    private static String temp(String e, List<String> out, int[] temps) {
+        if (e.equals("k") || e.matches("t\\d+")) return e;
+        String t = "t"+(temps[0]++);
+        out.add("int "+t+" = "+e+";");
+        return t;
+    }
+
+    private static void store(String reg, Deque<String> stack, List<String> out, int[] temps) {
+        String v = pop(stack, out, temps);
+        if (!stack.isEmpty()) v = temp(v, out, temps);
+        flush(stack, out);
+        out.add(reg+" = "+v+";");
+    }
+
+    private static void flush(Deque<String> stack, List<String> out) {
+        while (!stack.isEmpty()) out.add("push("+stack.removeLast()+");");
+    }
+
+    static String superinstructionsClass(List<int[]> chosen, Map<String,Long> counts) {
+        StringBuilder b = new StringBuilder();
+        b.append("package svm;\n\n");
+        b.append("// GENERATED by SuperinstructionGenerator from opcode n-gram profiles: do not edit.\n");
+        b.append("// Fused instruction sequences known to the assembler (SVM.g4) and to ExecuteVM,\n");
+        b.append("// listed in assembler priority order (longest first).\n");
+        b.append("public class Superinstructions {\n\n");
+        b.append("    public static final int COUNT = ").append(chosen.size()).append(";\n\n");
+        b.append("    // SVMParser token of each superinstruction\n");
+        b.append("    public static final int[] TOKENS = {");
+        for (int j = 0; j < chosen.size(); j++)
+            b.append(j > 0 ? ", " : "").append("SVMParser.").append(name(chosen.get(j)).toUpperCase());
+        b.append("};\n\n");
+        b.append("    // fused sequences, as SVMParser tokens\n");
+        b.append("    public static final int[][] SEQUENCES = {\n");
+        for (int[] seq : chosen) {
+            b.append("        {");
+            for (int i = 0; i < seq.length; i++) b.append(i > 0 ? ", " : "").append("SVMParser.").append(tokenName(seq[i]));
+            b.append("}, // ").append(counts.get(key(seq, 0, seq.length))).append(" executions in profile\n");
+        }
+        b.append("    };\n\n");
+        b.append("    public static final String[] MNEMONICS = {");
+        for (int j = 0; j < chosen.size(); j++) b.append(j > 0 ? ", " : "").append('"').append(name(chosen.get(j))).append('"');
+        b.append("};\n\n");
+        b.append("    // index of the superinstruction with the given token, -1 if none\n");
+        b.append("    public static int index(int token) {\n");
+        b.append("        for (int j = 0; j < COUNT; j++) if (TOKENS[j] == token) return j;\n");
+        b.append("        return -1;\n");
+        b.append("    }\n\n");
+        b.append("    // the only operand of a superinstruction is that of its push or branch component\n");
+        b.append("    public static boolean hasOperand(int j) {\n");
+        b.append("        for (int t : SEQUENCES[j])\n");
+        b.append("            if (t == SVMParser.PUSH || isBranchToken(t)) return true;\n");
+        b.append("        return false;\n");
+        b.append("    }\n\n");
+        b.append("    // true if the operand is a branch target\n");
+        b.append("    public static boolean isBranch(int j) {\n");
+        b.append("        return isBranchToken(SEQUENCES[j][SEQUENCES[j].length-1]);\n");
+        b.append("    }\n\n");
+        b.append("    private static boolean isBranchToken(int t) {\n");
+        b.append("        return t == SVMParser.BRANCH || t == SVMParser.BRANCHEQ || t == SVMParser.BRANCHLESSEQ;\n");
+        b.append("    }\n\n");
+        b.append("}\n");
+        return b.toString();
+    }
+
+    static String lexerRules(List<int[]> chosen) {
+        StringBuilder b = new StringBuilder();
+        for (int[] seq : chosen)
+            b.append(name(seq).toUpperCase()).append(" : '").append(name(seq)).append("' ;\n");
+        return b.toString();
+    }
+
+    // each superinstruction is assembled both from its fused sequence and from its mnemonic;
+    // every alternative ends with its own '|', so an empty region leaves the grammar valid
+    static String parserAlternatives(List<int[]> chosen) {
+        StringBuilder b = new StringBuilder();
+        for (int[] seq : chosen) {
+            String tok = name(seq).toUpperCase();
+            StringBuilder fused = new StringBuilder();
+            String arg = "", operand = "";
+            for (int t : seq) {
+                fused.append(tokenName(t)).append(' ');
+                if (t == SVMParser.PUSH) {
+                    arg = "n=INTEGER ";
+                    operand = "\n                          code[i++] = Integer.parseInt($n.text);";
+                } else if (isBranch(t)) {
+                    arg = "l=LABEL ";
+                    operand = "\n                          labelRef.put(i++,$l.text);";
+                }
+                if (hasOperand(t)) fused.append(arg);
+            }
+            String action = "{code[i++] = "+tok+";"+operand+"}";
+            b.append("        ").append(fused).append(action).append(" |\n");
+            b.append("        ").append(tok).append(' ').append(arg).append(action).append(" |\n");
+        }
+        return b.toString();
+    }
+
+    static String cases(List<int[]> chosen, boolean predecoded, String indent) {
+        StringBuilder b = new StringBuilder();
+        for (int j = 0; j < chosen.size(); j++) {
+            int[] seq = chosen.get(j);
+            boolean operand = seqHasOperand(seq);
+            b.append(indent).append("case ").append(predecoded ? "Predecoder.SUPER+"+j : "SVMParser."+name(seq).toUpperCase())
+                .append(": { // ").append(describe(seq)).append("\n");
+            String in = indent+"  ";
+            if (predecoded) {
+                if (operand) b.append(in).append("int k = prog[i+1];\n");
+                b.append(in).append(operand ? "ip += 2;\n" : "ip++;\n");
+            } else if (operand)
+                b.append(in).append("int k = code[ip++];\n");
+            for (String s : statements(seq)) // the predecoded loop runs verified code, its room reserved
+                b.append(in).append(predecoded && s.startsWith("push(") ? "pushReserved("+s.substring(5) : s).append("\n");
+            b.append(in).append("break;\n");
+            b.append(indent).append("}\n");
+        }
+        return b.toString();
+    }
+
+    // replaces the text between the lines holding the BEGIN/END markers tagged with region
+    static String replaceRegion(String text, String region, String content) {
+        String begin = BEGIN+" "+region, end = END+" "+region;
+        int b = text.indexOf(begin), e = text.indexOf(end);
+        if (b < 0 || e < 0) throw new IllegalStateException("Missing region "+region);
+        int from = text.indexOf('\n', b)+1;
+        int to = text.lastIndexOf('\n', e)+1;
+        return text.substring(0, from)+content+text.substring(to);
+    }
+
+    static void generate(int k, Path srcDir, String[] histFiles) throws IOException {
+        Map<String,Long> counts = new HashMap<>();
+        for (String h : histFiles) readHistogram(Path.of(h), counts);
+        List<int[]> chosen = select(counts, k);
+        Path svm = srcDir.resolve("svm");
+        Files.writeString(svm.resolve("Superinstructions.java"), superinstructionsClass(chosen, counts));
+        Path grammar = svm.resolve("SVM.g4");
+        String g = Files.readString(grammar);
+        g = replaceRegion(g, "lexer", lexerRules(chosen));
+        g = replaceRegion(g, "parser", parserAlternatives(chosen));
+        Files.writeString(grammar, g);
+        Path vm = svm.resolve("ExecuteVM.java");
+        String v = Files.readString(vm);
+        v = replaceRegion(v, "cpu", cases(chosen, false, "          "));
+        v = replaceRegion(v, "cpuPredecoded", cases(chosen, true, "          "));
+        Files.writeString(vm, v);
+        for (int[] seq : chosen) System.out.println(name(seq)+"\t"+counts.get(key(seq, 0, seq.length)));
+        System.out.println("Regenerate the SVM lexer and parser from "+grammar);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("profile"))
+            profile(Path.of(args[1]), Arrays.copyOfRange(args, 2, args.length));
+        else if (args.length >= 4 && args[0].equals("generate"))
+            generate(Integer.parseInt(args[1]), Path.of(args[2]), Arrays.copyOfRange(args, 3, args.length));
+        else
+            System.out.println("usage: SuperinstructionGenerator profile hist.txt file.asm ...\n"+
+                               "       SuperinstructionGenerator generate k srcdir hist.txt ...");
+    }
+
+}
@@ -0,0 +1,47 @@
+package svm;
+
+// GENERATED by SuperinstructionGenerator from opcode n-gram profiles: do not edit.
+// Fused instruction sequences known to the assembler (SVM.g4) and to ExecuteVM,
+// listed in assembler priority order (longest first).
+public class Superinstructions {
+
+    public static final int COUNT = 6;
+
+    // SVMParser token of each superinstruction
+    public static final int[] TOKENS = {SVMParser.LFP_PUSH_ADD_LW, SVMParser.POP_SFP_LTM_LRA, SVMParser.LTM_LTM_PUSH_ADD, SVMParser.PUSH_SUB_LFP_LW, SVMParser.STM_SRA_POP, SVMParser.LW_JS};
+
+    // fused sequences, as SVMParser tokens
+    public static final int[][] SEQUENCES = {
+        {SVMParser.LOADFP, SVMParser.PUSH, SVMParser.ADD, SVMParser.LOADW}, // 54987 executions in profile
+        {SVMParser.POP, SVMParser.STOREFP, SVMParser.LOADTM, SVMParser.LOADRA}, // 22055 executions in profile
+        {SVMParser.LOADTM, SVMParser.LOADTM, SVMParser.PUSH, SVMParser.ADD}, // 21974 executions in profile
+        {SVMParser.PUSH, SVMParser.SUB, SVMParser.LOADFP, SVMParser.LOADW}, // 21890 executions in profile
+        {SVMParser.STORETM, SVMParser.STORERA, SVMParser.POP}, // 22004 executions in profile
+        {SVMParser.LOADW, SVMParser.JS}, // 21974 executions in profile
+    };
+
+    public static final String[] MNEMONICS = {"lfp_push_add_lw", "pop_sfp_ltm_lra", "ltm_ltm_push_add", "push_sub_lfp_lw", "stm_sra_pop", "lw_js"};
+
+    // index of the superinstruction with the given token, -1 if none
+    public static int index(int token) {
+        for (int j = 0; j < COUNT; j++) if (TOKENS[j] == token) return j;
+        return -1;
+    }
+
+    // the only operand of a superinstruction is that of its push or branch component
+    public static boolean hasOperand(int j) {
+        for (int t : SEQUENCES[j])
+            if (t == SVMParser.PUSH || isBranchToken(t)) return true;
+        return false;
+    }
+
+    // true if the operand is a branch target
+    public static boolean isBranch(int j) {
+        return isBranchToken(SEQUENCES[j][SEQUENCES[j].length-1]);
+    }
+
+    private static boolean isBranchToken(int t) {
+        return t == SVMParser.BRANCH || t == SVMParser.BRANCHEQ || t == SVMParser.BRANCHLESSEQ;
+    }
+
+}
@@ -0,0 +1,70 @@
+package svm;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Values as decimal lines, converted in a byte buffer and written to the stream
+// one buffer at a time: a single (synchronized) write per bufferSize bytes
+// instead of a System.out.println per value.
+public class TextOutput implements Output {
+
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final byte[] EMPTY_STACK = "Empty stack!\n".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_LINE = EMPTY_STACK.length; // longer than any value, "-2147483648\n"
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count;
+
+    public TextOutput(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public TextOutput(OutputStream out, int bufferSize) {
+        this.out = out;
+        buffer = new byte[Math.max(bufferSize, MAX_LINE)];
+    }
+
+    @Override
+    public void print(int value) {
+        if (count > buffer.length-MAX_LINE) flush();
+        long v = value;
+        if (v < 0) {
+            buffer[count++] = '-';
+            v = -v;
+        }
+        int end = count+digits(v);
+        for (int i = end-1; i >= count; i--, v /= 10) buffer[i] = (byte) ('0'+v%10);
+        count = end;
+        buffer[count++] = '\n';
+    }
+
+    private static int digits(long v) {
+        int n = 1;
+        while (v >= 10) {
+            v /= 10;
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public void printEmptyStack() {
+        if (count > buffer.length-EMPTY_STACK.length) flush();
+        System.arraycopy(EMPTY_STACK, 0, buffer, count, EMPTY_STACK.length);
+        count += EMPTY_STACK.length;
+    }
+
+    @Override
+    public void flush() {
+        int n = count;
+        count = 0; // dropped if the stream fails
+        try {
+            out.write(buffer, 0, n);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
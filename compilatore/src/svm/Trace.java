@@ -0,0 +1,74 @@
+package svm;
+
+import java.io.*;
+
+// Ring buffer of the last instructions executed by an ExecuteVM (see setTrace()):
+// for each one its address, sp and fp (as addresses) and the two values on top
+// of the stack (0 if missing), before it executes; the opcodes are read back
+// from the code when dumping.
+// Recording is a few stores in a preallocated int[], so a trace can stay on;
+// the buffer is dumped when the program fails (to the failure stream, System.err
+// unless set) or by dump() at any time. Functions compiled by JitCompiler
+// run untraced: the calls they make are traced again.
+public class Trace {
+
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+    private static final int FIELDS = 5; // ip, sp, fp, top, below top
+
+    int[] code; // of the traced VM
+    private final int[] buffer;
+    private final int mask;
+    private long count; // instructions recorded
+    private PrintStream failures = System.err;
+
+    public Trace() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // capacity (instructions kept) is rounded up to a power of 2
+    public Trace(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 24) throw new IllegalArgumentException("Invalid trace capacity");
+        int size = Integer.highestOneBit((capacity-1) << 1 | 1);
+        buffer = new int[size*FIELDS];
+        mask = size-1;
+    }
+
+    // where the trace is dumped when the program fails, null to keep it
+    public void setFailureStream(PrintStream failures) {
+        this.failures = failures;
+    }
+
+    void record(int ip, int sp, int fp, int top, int belowTop) {
+        int i = (int) (count++ & mask)*FIELDS;
+        buffer[i] = ip;
+        buffer[i+1] = sp;
+        buffer[i+2] = fp;
+        buffer[i+3] = top;
+        buffer[i+4] = belowTop;
+    }
+
+    void failed(Throwable e) {
+        if (failures == null) return;
+        failures.println("SVM failure: "+e);
+        dump(failures);
+        failures.flush();
+    }
+
+    public long recorded() {
+        return count;
+    }
+
+    // the recorded instructions, oldest first: the last one is executing, or failed
+    public void dump(PrintStream out) {
+        long first = Math.max(0, count-mask-1);
+        out.printf("trace: last %d of %d instructions%n", count-first, count);
+        out.printf("%10s %-16s %12s %12s %12s %12s%n", "ip", "opcode", "sp", "fp", "top", "below top");
+        for (long n = first; n < count; n++) {
+            int i = (int) (n & mask)*FIELDS;
+            int ip = buffer[i];
+            String op = code != null && ip >= 0 && ip < code.length ? Predecoder.NAMES[Predecoder.fromToken(code[ip])] : "-";
+            out.printf("%10d %-16s %12d %12d %12d %12d%n", ip, op, buffer[i+1], buffer[i+2], buffer[i+3], buffer[i+4]);
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+package svm;
+
+import java.util.*;
+
+// Load-time verification of assembled code, which lets ExecuteVM.cpuPredecoded()
+// push without checking the room left in the stack (see Predecoder).
+// The code is split in the main code (from address 0) and functions (from each
+// cfp up to the next one); each is interpreted abstractly from its entry, over
+// every path, with stack heights relative to $sp at the entry, proving that:
+// - branches target instructions of the same function or main code;
+// - every path reaching an instruction does so with the same stack height and
+//   the same kinds of values (balance at labels);
+// - the main code never pops more than it pushed, a function never more than
+//   its frame (parameters, Access Link and Control Link);
+// - every return of a function leaves the same height, which gives its number
+//   of parameters;
+// - "new" finds its header (see GarbageCollector) pushed as a constant.
+// Calls follow the convention of the code generator: the Control Link (pushed
+// by lfp), the arguments, the Access Link and, for js, the function address;
+// the callee pops all of them and pushes its result. The Control Link of a call
+// is the nearest $fp below the Access Link (arguments are never $fp); a js is a
+// return when it jumps to the address saved from $ra at the entry (by lra).
+// The result is the maximum stack depth of each function and of the main code,
+// which the predecoded loop reserves once at their entry instead of checking
+// every push. Invalid code throws IllegalArgumentException.
+public class Verifier {
+
+    // abstract values: a kind in the high half, a constant in the low half
+    private static final long UNKNOWN = 0, FP = 1L << 32, RET = 2L << 32, CONSTANT = 3L << 32;
+
+    private static long constant(int k) {
+        return CONSTANT | (k & 0xffffffffL);
+    }
+
+    private static boolean isConstant(long v) {
+        return (v & ~0xffffffffL) == CONSTANT;
+    }
+
+    private static long join(long a, long b, int address) {
+        if (a == b) return a;
+        if (isConstant(a) && isConstant(b) || a == UNKNOWN && isConstant(b) || isConstant(a) && b == UNKNOWN) return UNKNOWN;
+        throw new IllegalArgumentException("Inconsistent stack at address "+address);
+    }
+
+    // stack of a path: the values from height bottom up, the ones below bottom
+    // (popped from the frame of a function) are unknown
+    private static final class State {
+        long[] values;
+        int size, bottom;
+        long ra, tm;
+
+        State(long ra) {
+            values = new long[16];
+            this.ra = ra;
+        }
+
+        State(State s) {
+            values = s.values.clone();
+            size = s.size;
+            bottom = s.bottom;
+            ra = s.ra;
+            tm = s.tm;
+        }
+
+        int height() {
+            return bottom+size;
+        }
+
+        void push(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, 2*size);
+            values[size++] = v;
+        }
+
+        long pop() {
+            if (size > 0) return values[--size];
+            bottom--;
+            return UNKNOWN;
+        }
+
+        // true if s changed this state
+        boolean join(State s, int address) {
+            if (s.height() != height())
+                throw new IllegalArgumentException("Stack height "+s.height()+" instead of "+height()+" at address "+address);
+            boolean changed = false;
+            for (int i = 0; i < size; i++) { // slots below the bottom of s are unknown on s
+                int h = bottom+i;
+                long v = h < s.bottom ? UNKNOWN : s.values[h-s.bottom];
+                long j = Verifier.join(values[i], v, address);
+                changed |= j != values[i];
+                values[i] = j;
+            }
+            if (ra != s.ra) { // e.g. after a call on one path only: the function saved it
+                changed |= ra != UNKNOWN;
+                ra = UNKNOWN;
+            }
+            if (tm != s.tm) {
+                changed |= tm != UNKNOWN;
+                tm = UNKNOWN;
+            }
+            return changed;
+        }
+    }
+
+    private final int[] code;
+    private final int[] owner;   // per code address: entry of its function (0: main), -1 if no instruction
+    private final List<Integer> entries = new ArrayList<>();
+    private final Map<Integer,Integer> depth = new HashMap<>();      // per entry: maximum stack height
+    private final Map<Integer,Integer> parameters = new HashMap<>(); // per function entry
+
+    private Verifier(int[] code) {
+        this.code = code;
+        owner = new int[code.length];
+        Arrays.fill(owner, -1);
+        int entry = 0, a = 0;
+        entries.add(0);
+        while (a < code.length) {
+            int op = Predecoder.fromToken(code[a]);
+            if (op == Predecoder.INVALID) {
+                a++;
+                continue;
+            }
+            if (op == Predecoder.COPYFP && a > 0) {
+                entry = a;
+                entries.add(a);
+            }
+            owner[a] = entry;
+            a += Predecoder.hasOperand(op) ? 2 : 1;
+        }
+    }
+
+    public static Verifier verify(int[] code) {
+        Verifier v = new Verifier(code);
+        for (int e : v.entries) v.analyse(e);
+        return v;
+    }
+
+    public List<Integer> entries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    // words the code of the function at entry (0: the main code) can push above $sp at its entry
+    public int maxDepth(int entry) {
+        return depth.get(entry);
+    }
+
+    public int maxDepth() {
+        return Collections.max(depth.values());
+    }
+
+    // of the function at entry
+    public int parameters(int entry) {
+        return parameters.get(entry);
+    }
+
+    // dense opcodes executed by the instruction at address a (several for a superinstruction)
+    private int[] components(int a) {
+        int op = Predecoder.fromToken(code[a]);
+        if (op < Predecoder.SUPER || op >= Predecoder.INVALID) return new int[] {op};
+        int[] seq = Superinstructions.SEQUENCES[op-Predecoder.SUPER];
+        int[] ops = new int[seq.length];
+        for (int j = 0; j < seq.length; j++) ops[j] = Predecoder.fromToken(seq[j]);
+        return ops;
+    }
+
+    private void analyse(int entry) {
+        boolean function = entry > 0;
+        Map<Integer,State> states = new HashMap<>(); // at each instruction reached
+        Deque<Integer> work = new ArrayDeque<>();
+        states.put(entry, new State(function ? RET : UNKNOWN));
+        work.add(entry);
+        int max = 0, min = 0;
+        Integer exit = null; // height left by the returns
+        while (!work.isEmpty()) {
+            int a = work.poll();
+            State s = new State(states.get(a));
+            int op0 = Predecoder.fromToken(code[a]);
+            int next = a+(Predecoder.hasOperand(op0) ? 2 : 1);
+            int k = next-a == 2 ? code[a+1] : 0;
+            List<Integer> successors = new ArrayList<>(2);
+            boolean falls = true;
+            for (int op : components(a)) {
+                switch (op) {
+                    case Predecoder.PUSH: s.push(constant(k)); break;
+                    case Predecoder.POP: s.pop(); break;
+                    case Predecoder.ADD: case Predecoder.SUB: case Predecoder.MULT: case Predecoder.DIV:
+                        s.pop();
+                        s.pop();
+                        s.push(UNKNOWN);
+                        break;
+                    case Predecoder.STOREW: s.pop(); s.pop(); break;
+                    case Predecoder.LOADW: s.pop(); s.push(UNKNOWN); break;
+                    case Predecoder.BRANCH:
+                        successors.add(k);
+                        falls = false;
+                        break;
+                    case Predecoder.BRANCHEQ: case Predecoder.BRANCHLESSEQ:
+                        s.pop();
+                        s.pop();
+                        successors.add(k);
+                        break;
+                    case Predecoder.JS:
+                        if (s.pop() == RET) {
+                            if (exit == null) exit = s.height();
+                            else if (exit != s.height())
+                                throw new IllegalArgumentException("Return with stack height "+s.height()+" instead of "+exit+" at address "+a);
+                            falls = false;
+                        } else call(s, a);
+                        break;
+                    case Predecoder.VCALL: call(s, a); break;
+                    case Predecoder.LOADRA: s.push(s.ra); break;
+                    case Predecoder.STORERA: s.ra = s.pop(); break;
+                    case Predecoder.LOADTM: s.push(s.tm); break;
+                    case Predecoder.STORETM: s.tm = s.pop(); break;
+                    case Predecoder.LOADFP: s.push(FP); break;
+                    case Predecoder.STOREFP: s.pop(); break;
+                    case Predecoder.COPYFP:
+                        if (a != entry) throw new IllegalArgumentException("cfp out of a function entry at address "+a);
+                        break;
+                    case Predecoder.LOADHP: s.push(UNKNOWN); break;
+                    case Predecoder.STOREHP: s.pop(); break;
+                    case Predecoder.PRINT: break;
+                    case Predecoder.HALT: falls = false; break;
+                    case Predecoder.NEW: {
+                        long header = s.pop();
+                        if (!isConstant(header)) throw new IllegalArgumentException("new without a constant header at address "+a);
+                        for (int f = GarbageCollector.fields((int) header)+1; f > 0; f--) s.pop();
+                        s.push(UNKNOWN);
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Invalid instruction at address "+a);
+                }
+                max = Math.max(max, s.height());
+                min = Math.min(min, s.height());
+                if (!function && s.bottom < 0) throw new IllegalArgumentException("Stack underflow at address "+a);
+            }
+            if (falls) successors.add(next);
+            for (int t : successors) {
+                if (t < 0 || t >= code.length || owner[t] != entry)
+                    throw new IllegalArgumentException("Jump out of the function at address "+a);
+                State old = states.get(t);
+                if (old == null) states.put(t, new State(s));
+                else if (!old.join(s, t)) continue;
+                work.add(t);
+            }
+        }
+        if (function) {
+            if (exit == null || exit > -1) throw new IllegalArgumentException("Function at address "+entry+" does not return");
+            if (min < exit-1) throw new IllegalArgumentException("Function at address "+entry+" pops past its frame");
+            parameters.put(entry, -exit-1);
+        }
+        depth.put(entry, max);
+    }
+
+    // js (the address already popped) or vcall at address a: pops the Access Link,
+    // the arguments and the Control Link, pushes the result
+    private static void call(State s, int a) {
+        s.pop(); // Access Link
+        int cl = s.size-1;
+        while (cl >= 0 && s.values[cl] != FP) cl--;
+        if (cl < 0) throw new IllegalArgumentException("Call without a Control Link at address "+a);
+        s.size = cl;
+        s.push(UNKNOWN);
+        s.ra = UNKNOWN;
+        s.tm = UNKNOWN;
+    }
+
+    public String report() {
+        StringBuilder b = new StringBuilder();
+        b.append(String.format("verifier: %d functions, maximum stack depth %d words%n", entries.size()-1, maxDepth()));
+        b.append(String.format("  %10s %10s %10s%n", "entry", "parameters", "max depth"));
+        for (int e : entries)
+            b.append(String.format("  %10s %10s %10d%n", e == 0 ? "main" : e, e == 0 ? "-" : parameters.get(e), depth.get(e)));
+        return b.toString();
+    }
+
+}